@@ -6,6 +6,7 @@ import android.support.test.runner.AndroidJUnit4;
 import android.app.Activity;
 import android.content.Context;
 import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 
@@ -14,6 +15,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
 /**
  * To work on unit tests, switch the Test Artifact in the Build Variants view.
  */
@@ -71,6 +77,447 @@ public class ModelUnitTest extends ActivityInstrumentationTestCase2<SkillDetailA
         cursor.close();
     }
 
+    @Test
+    public void testGetSkillSamplingList() {
+        Proto.Skill skill = Proto.Skill.newBuilder().setName("A").setPriority(5)
+                .setEstSecondsPracticed100Days(100).build();
+        final long id = model.addSkill(skill);
+        // Updates keep the stored practice fields.
+        model.updateSkill(id, skill.toBuilder().setPriority(3).setEstSecondsPracticed100Days(200).build());
+        Cursor cursor = model.getSkillSamplingList();
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(id, cursor.getLong(0));
+        assertEquals(3, cursor.getInt(1));
+        assertEquals(100, cursor.getLong(2));
+        assertTrue(cursor.isNull(3));
+        cursor.close();
+    }
+
+    @Test
+    public void testAddPracticeSecondsToSkill() {
+        final long id = model.addSkill(Proto.Skill.newBuilder().setName("A").setPriority(5).build());
+        model.addPracticeSecondsToSkill(60, id);
+        model.addPracticeSecondsToSkill(30, id);
+        Proto.Skill skill = model.getSkillById(id);
+        assertEquals(90, skill.getSecondsPracticed());
+        assertEquals(90, skill.getEstSecondsPracticed100Days());
+        assertTrue(skill.hasDateLastPracticed());
+
+        model.compactPracticeEvents();
+        assertEquals(skill, model.getSkillById(id));
+        Cursor cursor = model.getSkillSamplingList();
+        cursor.moveToFirst();
+        assertEquals(90, cursor.getLong(2));
+        cursor.close();
+        // The two increments were coalesced before being written to the log.
+        cursor = model.getPracticeEvents(id);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void testUpdateSkillIncludesPendingPractice() {
+        final long id = model.addSkill(Proto.Skill.newBuilder().setName("A").setPriority(5).build());
+        model.addPracticeSecondsToSkill(60, id);
+        model.updateSkill(id, model.getSkillById(id).toBuilder().setName("B").build());
+        model.flushPendingPractice();
+        model.compactPracticeEvents();
+        assertEquals(60, model.getSkillById(id).getSecondsPracticed());
+        Cursor cursor = model.getPracticeEvents(id);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void testUpdateSkillKeepsPracticeAddedMeanwhile() {
+        final long id = model.addSkill(Proto.Skill.newBuilder().setName("A").setPriority(5).build());
+        model.addPracticeSecondsToSkill(60, id);
+        model.flushPendingPractice();
+        Proto.Skill.Builder skillBuilder = model.getSkillById(id).toBuilder().setName("B");
+        // E.g., a session timer that is still running while the skill is edited.
+        model.addPracticeSecondsToSkill(30, id);
+        model.updateSkill(id, skillBuilder.build());
+        model.addPracticeSecondsToSkill(15, id);
+        model.compactPracticeEvents();
+        Proto.Skill skill = model.getSkillById(id);
+        assertEquals("B", skill.getName());
+        assertEquals(105, skill.getSecondsPracticed());
+        assertEquals(105, model.getSnapshot().getSkillById(id).getSecondsPracticed());
+    }
+
+    @Test
+    public void testPracticeForDeletedSkillIsDropped() {
+        final long id = model.addSkill(Proto.Skill.newBuilder().setName("A").setPriority(5).build());
+        model.deleteSkill(id);
+        // E.g., a session timer that is still running.
+        model.addPracticeSecondsToSkill(60, id);
+        model.flushPendingPractice();
+        model.compactPracticeEvents();
+        Cursor cursor = model.getPracticeEvents(id);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+        assertEquals(0, model.getSnapshot().getSkillCount());
+    }
+
+    @Test
+    public void testGetSkillIdsInGroup() {
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("G").setId(1).build());
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("H").setId(2).build());
+        final long id = model.addSkill(Proto.Skill.newBuilder().setName("A").setPriority(5)
+                .addGroupId(1).addGroupId(2).build());
+        final long id2 = model.addSkill(Proto.Skill.newBuilder().setName("B").setPriority(5)
+                .addGroupId(2).build());
+        assertEquals(1, model.getSkillIdsInGroup(1).length);
+        assertEquals(id, model.getSkillIdsInGroup(1)[0]);
+        assertEquals(2, model.getSkillIdsInGroup(2).length);
+
+        model.updateSkill(id, Proto.Skill.newBuilder().setName("A").setPriority(5).addGroupId(2).build());
+        assertEquals(0, model.getSkillIdsInGroup(1).length);
+        assertEquals(2, model.getSkillIdsInGroup(2).length);
+
+        model.deleteSkill(id);
+        assertEquals(1, model.getSkillIdsInGroup(2).length);
+        assertEquals(id2, model.getSkillIdsInGroup(2)[0]);
+    }
+
+    @Test
+    public void testSnapshotTracksWrites() {
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("G").setId(1).build());
+        final long idB = model.addSkill(Proto.Skill.newBuilder().setName("B").setPriority(5).build());
+        ModelSnapshot snapshot = model.getSnapshot();
+        assertEquals(1, snapshot.getSkillCount());
+        assertEquals(1, snapshot.getSkillGroupCount());
+
+        final long idA = model.addSkill(Proto.Skill.newBuilder().setName("A").setPriority(5).addGroupId(1).build());
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("H").setId(2).addParentId(1).build());
+        // Snapshots are immutable.
+        assertEquals(1, snapshot.getSkillCount());
+        ModelSnapshot updated = model.getSnapshot();
+        assertTrue(updated.getVersion() > snapshot.getVersion());
+        assertEquals(2, updated.getSkillCount());
+        assertEquals(idA, updated.getSkillIdAt(0));
+        assertEquals(idB, updated.getSkillIdAt(1));
+        assertTrue(updated.isAncestorOf(1, 2));
+        // The skill table is patched in the same order.
+        SkillTable table = updated.getSkillTable();
+        assertEquals(idA, table.getId(0));
+        assertEquals(idB, table.getId(1));
+        BitSet groups = new BitSet();
+        updated.addGroupAndDescendantIndices(1, groups);
+        assertTrue(table.isInAnyGroup(0, SkillTable.toGroupMask(groups)));
+        assertFalse(table.isInAnyGroup(1, SkillTable.toGroupMask(groups)));
+
+        model.addPracticeSecondsToSkill(60, idB);
+        model.flushPendingPractice();
+        assertEquals(60, model.getSnapshot().getSkillById(idB).getSecondsPracticed());
+
+        model.deleteSkillGroup(1);
+        model.deleteSkill(idB);
+        updated = model.getSnapshot();
+        assertEquals(1, updated.getSkillCount());
+        assertEquals(0, updated.getSkillAt(0).getGroupIdCount());
+        assertNull(updated.getSkillGroupById(1));
+        assertEquals(0, updated.getSkillGroupById(2).getParentIdCount());
+    }
+
+    @Test
+    public void testSnapshotIsReloadedAfterClear() {
+        model.initWithFakeData();
+        assertEquals(2, model.getSnapshot().getSkillCount());
+        model.clearAllData();
+        assertEquals(0, model.getSnapshot().getSkillCount());
+        assertEquals(0, model.getSnapshot().getScheduleCount());
+    }
+
+    @Test
+    public void testSessionsCanBeReplayed() {
+        model.initWithFakeData();
+        Proto.Schedule schedule = model.getSnapshot().getScheduleAt(0);
+        SkillWeighting weighting = new PriorityStalenessWeighting(0.5f);
+        SampledSession seeded = Session.sampleSession(schedule, model, weighting, 42);
+        assertEquals(42, seeded.getSeed());
+        assertTrue(Arrays.equals(seeded.getSkillIds(),
+                Session.sampleSession(schedule, model, weighting, 42).getSkillIds()));
+        assertTrue(Arrays.equals(seeded.getSkillIds(),
+                Session.replaySession(schedule, model, weighting, seeded)));
+        // The second request for a schedule is drawn from alias tables.
+        Session.sampleSession(schedule, model, weighting);
+        SampledSession reshuffled = Session.sampleSession(schedule, model, weighting);
+        assertTrue(Arrays.equals(reshuffled.getSkillIds(),
+                Session.replaySession(schedule, model, weighting, reshuffled)));
+    }
+
+    @Test
+    public void testOptimalSessionsCanBeReplayed() {
+        model.initWithFakeData();
+        Proto.Schedule schedule = model.getSnapshot().getScheduleAt(0);
+        SkillWeighting weighting = new PriorityStalenessWeighting(0.5f);
+        SampledSession session = Session.sampleSession(schedule, model, weighting, true);
+        assertTrue(session.isOptimalAssignment());
+        assertTrue(Arrays.equals(session.getSkillIds(),
+                Session.replaySession(schedule, model, weighting, session)));
+        for (int slotIndex = 0; slotIndex < schedule.getSlotCount(); ++slotIndex) {
+            final long skillId = session.getSkillIds()[slotIndex];
+            if (skillId == -1) continue;
+            assertTrue(Session.slotCanBeFilledBy(schedule.getSlot(slotIndex),
+                    model.getSkillById(skillId), model));
+        }
+    }
+
+    @Test
+    public void testSessionsWithRecentPicksCanBeReplayed() {
+        model.initWithFakeData();
+        Proto.Schedule schedule = model.getSnapshot().getScheduleAt(0);
+        SkillWeighting weighting = new PriorityStalenessWeighting(0.5f);
+        RecentPicks recentPicks = new RecentPicks(1);
+        recentPicks.add(Session.sampleSession(schedule, model, weighting, false, recentPicks).getSkillIds());
+        SampledSession session = Session.sampleSession(schedule, model, weighting, false, recentPicks);
+        assertTrue(Arrays.equals(recentPicks.getSkillIds(), session.getRecentSkillIds()));
+        // Replaying uses the recent picks recorded with the session, not the current ones.
+        recentPicks.add(session.getSkillIds());
+        assertTrue(Arrays.equals(session.getSkillIds(),
+                Session.replaySession(schedule, model, weighting, session)));
+    }
+
+    @Test
+    public void testSessionsFollowSlotQuotas() {
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Scales").setId(1).build());
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Major").setId(2).addParentId(1).build());
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Minor").setId(3).addParentId(1).build());
+        HashSet<Long> majorSkillIds = new HashSet<>();
+        for (int i = 0; i < 5; ++i) {
+            majorSkillIds.add(model.addSkill(Proto.Skill.newBuilder().setName("Major " + i)
+                    .setPriority(5).addGroupId(2).build()));
+            model.addSkill(Proto.Skill.newBuilder().setName("Minor " + i).setPriority(5).addGroupId(3).build());
+        }
+        Proto.Schedule.Slot slot = Proto.Schedule.Slot.newBuilder().setGroupId(1).setDurationInSecs(60)
+                .addQuota(Proto.Schedule.Slot.Quota.newBuilder().setGroupId(2).setPercent(50))
+                .addQuota(Proto.Schedule.Slot.Quota.newBuilder().setGroupId(3).setPercent(50))
+                .build();
+        final long scheduleId = model.addSchedule(
+                Proto.Schedule.newBuilder().setName("S").addSlot(slot).addSlot(slot).build());
+        Proto.Schedule schedule = model.getScheduleById(scheduleId);
+        SkillWeighting weighting = new PriorityStalenessWeighting(0.5f);
+        for (int i = 0; i < 20; ++i) {
+            // Repeated requests would use alias tables if the schedule had no quotas.
+            SampledSession session = Session.sampleSession(schedule, model, weighting);
+            assertFalse(session.isFromAliasTables());
+            long[] skillIds = session.getSkillIds();
+            assertTrue(majorSkillIds.contains(skillIds[0]) != majorSkillIds.contains(skillIds[1]));
+            assertTrue(Arrays.equals(skillIds, Session.replaySession(schedule, model, weighting, session)));
+        }
+        // Removing references to a quota's group leaves the slot unstratified, since the rest no longer
+        // add up.
+        model.replaceSkillGroup(3, -1);
+        assertEquals(0, model.getScheduleById(scheduleId).getSlot(0).getQuotaCount());
+    }
+
+    @Test
+    public void testSessionsSkipEmptyQuotaGroups() {
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Scales").setId(1).build());
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Major").setId(2).addParentId(1).build());
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Minor").setId(3).addParentId(1).build());
+        for (int i = 0; i < 5; ++i) {
+            model.addSkill(Proto.Skill.newBuilder().setName("Major " + i).setPriority(5).addGroupId(2).build());
+        }
+        Proto.Schedule.Slot slot = Proto.Schedule.Slot.newBuilder().setGroupId(1).setDurationInSecs(60)
+                .addQuota(Proto.Schedule.Slot.Quota.newBuilder().setGroupId(2).setPercent(50))
+                .addQuota(Proto.Schedule.Slot.Quota.newBuilder().setGroupId(3).setPercent(50))
+                .build();
+        Proto.Schedule schedule = model.getScheduleById(model.addSchedule(
+                Proto.Schedule.newBuilder().setName("S").addSlot(slot).addSlot(slot).build()));
+        SkillWeighting weighting = new PriorityStalenessWeighting(0.5f);
+        for (int i = 0; i < 20; ++i) {
+            // Minor has no skills, so both slots are filled from Major.
+            for (long skillId : Session.sampleSession(schedule, model, weighting).getSkillIds()) {
+                assertTrue(skillId != -1);
+            }
+        }
+    }
+
+    @Test
+    public void testAddInvalidScheduleSlotHasBadQuotas() {
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Scales").setId(1).build());
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Major").setId(2).addParentId(1).build());
+        try {
+            model.addSchedule(Proto.Schedule.newBuilder().setName("S").addSlot(
+                    Proto.Schedule.Slot.newBuilder().setGroupId(1).setDurationInSecs(60)
+                            .addQuota(Proto.Schedule.Slot.Quota.newBuilder().setGroupId(2).setPercent(90)))
+                    .build());
+        } catch (IllegalArgumentException x) {
+            assertEquals("schedule_slot has invalid quotas", x.getMessage());
+            return;
+        }
+        fail("did not throw an error");
+    }
+
+    @Test
+    public void testDueSessionsTakeSkillsDueSoonest() {
+        final long idA = model.addSkill(Proto.Skill.newBuilder().setName("A").setPriority(5).build());
+        final long idB = model.addSkill(Proto.Skill.newBuilder().setName("B").setPriority(3).build());
+        final long idC = model.addSkill(Proto.Skill.newBuilder().setName("C").setPriority(7).build());
+        model.addPracticeSecondsToSkill(60, idC);
+        Proto.Schedule.Slot slot = Proto.Schedule.Slot.newBuilder().setDurationInSecs(60).build();
+        Proto.Schedule schedule = Proto.Schedule.newBuilder().setName("S").addSlot(slot).addSlot(slot).build();
+        // Skills that were never practiced are due first, in order of decreasing priority.
+        assertTrue(Arrays.equals(new long[]{idA, idB}, Session.sampleDueSession(schedule, model, false)));
+        Proto.Skill practiced = model.getSkillById(idC);
+        assertEquals(SpacedRepetition.FIRST_INTERVAL_SECS, practiced.getIntervalSecs());
+        Cursor cursor = model.getSkillsByDueDate(0, 3);
+        cursor.moveToLast();
+        assertEquals(idC, cursor.getLong(0));
+        assertEquals(practiced.getNextDue(), cursor.getLong(1));
+        cursor.close();
+    }
+
+    @Test
+    public void testDueSessionsReadEachGroupFromIndex() {
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Scales").setId(1).build());
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Major").setId(2).addParentId(1).build());
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("Minor").setId(3).addParentId(1).build());
+        final long idA = model.addSkill(Proto.Skill.newBuilder().setName("A").setPriority(5).build());
+        final long idB = model.addSkill(Proto.Skill.newBuilder().setName("B").setPriority(3).build());
+        final long idMajor = model.addSkill(
+                Proto.Skill.newBuilder().setName("Major").setPriority(9).addGroupId(2).build());
+        model.addPracticeSecondsToSkill(60, idMajor);
+        // Major is due last, but it is the only skill in the group.
+        Proto.Schedule.Slot any = Proto.Schedule.Slot.newBuilder().setDurationInSecs(60).build();
+        Proto.Schedule.Slot scales = Proto.Schedule.Slot.newBuilder().setGroupId(1).setDurationInSecs(60)
+                .addQuota(Proto.Schedule.Slot.Quota.newBuilder().setGroupId(2).setPercent(50))
+                .addQuota(Proto.Schedule.Slot.Quota.newBuilder().setGroupId(3).setPercent(50))
+                .build();
+        Proto.Schedule schedule = Proto.Schedule.newBuilder().setName("S")
+                .addSlot(scales).addSlot(any).addSlot(any).build();
+        // Minor has no skills, so the quota slot is filled from Major.
+        assertTrue(Arrays.equals(new long[]{idMajor, idA, idB},
+                Session.sampleDueSession(schedule, model, false)));
+        Cursor cursor = model.getSkillsByDueDate(new long[]{2, 3}, 0, 3);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(idMajor, cursor.getLong(0));
+        cursor.close();
+    }
+
+    @Test
+    public void testDataVersionIsNotReusedAfterRestart() {
+        model.addSkill(Proto.Skill.newBuilder().setName("A").setPriority(5).build());
+        final long version = model.getDataVersion();
+        // As if the app were restarted.
+        Model reopened = new Model(context, TEST_DATABASE_NAME);
+        assertTrue(reopened.getDataVersion() > version);
+        reopened.addSkill(Proto.Skill.newBuilder().setName("B").setPriority(5).build());
+        assertTrue(new Model(context, TEST_DATABASE_NAME).getDataVersion() > reopened.getDataVersion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSessionCannotBeReplayedAfterChange() {
+        model.initWithFakeData();
+        Proto.Schedule schedule = model.getSnapshot().getScheduleAt(0);
+        SkillWeighting weighting = new PriorityStalenessWeighting(0.5f);
+        SampledSession session = Session.sampleSession(schedule, model, weighting, 42);
+        model.addSkill(Proto.Skill.newBuilder().setName("New").setPriority(5).build());
+        Session.replaySession(schedule, model, weighting, session);
+    }
+
+    @Test
+    public void testResampleSlot() {
+        model.initWithFakeData();
+        Proto.Schedule schedule = model.getSnapshot().getScheduleAt(0);
+        SkillWeighting weighting = new PriorityStalenessWeighting(0.5f);
+        long[] session = Session.sampleSession(schedule, model, weighting, 1).getSkillIds();
+        for (int slotIndex = 0; slotIndex < session.length; ++slotIndex) {
+            if (session[slotIndex] == -1) continue;
+            final long skillId = Session.resampleSlot(schedule, model, weighting, session, slotIndex);
+            // The new skill is not in any other slot.
+            for (int i = 0; i < session.length; ++i) {
+                if (i != slotIndex) assertTrue(session[i] != skillId);
+            }
+            assertTrue(Session.slotCanBeFilledBy(schedule.getSlot(slotIndex),
+                    model.getSkillById(skillId), model));
+        }
+    }
+
+    @Test
+    public void testPackSchedule() {
+        model.initWithFakeData();
+        Proto.Schedule mix = model.getSnapshot().getScheduleAt(0);
+        SkillWeighting weighting = new PriorityStalenessWeighting(0.5f);
+        final int budgetSecs = (int) TimeUnit.MINUTES.toSeconds(90);
+        Proto.Schedule packed = Session.packSchedule(mix, model, weighting, budgetSecs);
+        assertTrue(packed.getSlotCount() > 0);
+        int totalSecs = 0;
+        for (Proto.Schedule.Slot slot : packed.getSlotList()) {
+            assertTrue(mix.getSlotList().contains(slot));
+            totalSecs += slot.getDurationInSecs();
+        }
+        assertTrue(totalSecs <= budgetSecs);
+        // Every slot of the packed schedule can be filled by a distinct skill.
+        for (long skillId : Session.sampleSession(packed, model, weighting, true).getSkillIds()) {
+            assertTrue(skillId != -1);
+        }
+    }
+
+    @Test
+    public void testPlanSessions() {
+        model.initWithFakeData();
+        final long scheduleId = model.getSnapshot().getScheduleIdAt(0);
+        Proto.Schedule schedule = model.getSnapshot().getScheduleById(scheduleId);
+        long[][] plan = Session.planSessions(schedule, model, new PriorityStalenessWeighting(0.5f), 7);
+        assertEquals(7, plan.length);
+        for (long[] session : plan) {
+            assertEquals(schedule.getSlotCount(), session.length);
+            for (int i = 0; i < session.length; ++i) {
+                for (int j = 0; j < i; ++j) assertTrue(session[i] == -1 || session[i] != session[j]);
+            }
+        }
+        assertNull(model.getPlan(scheduleId));
+        model.savePlan(scheduleId, plan);
+        long[][] saved = model.getPlan(scheduleId);
+        assertEquals(plan.length, saved.length);
+        for (int day = 0; day < plan.length; ++day) assertTrue(Arrays.equals(plan[day], saved[day]));
+        // Changing the schedule discards its plan.
+        model.updateSchedule(scheduleId, schedule);
+        assertNull(model.getPlan(scheduleId));
+    }
+
+    @Test
+    public void testCompiledScheduleIsCachedUntilGroupsChange() {
+        model.initWithFakeData();
+        Proto.Schedule schedule = model.getSnapshot().getScheduleAt(0);
+        CompiledSchedule compiled = CompiledSchedule.get(schedule, model.getSnapshot());
+        assertEquals(schedule.getSlotCount(), compiled.getNumSlots());
+        // Changes to skills leave the compiled schedule valid; changes to groups do not.
+        model.addSkill(Proto.Skill.newBuilder().setName("New").setPriority(5).build());
+        assertSame(compiled, CompiledSchedule.get(schedule, model.getSnapshot()));
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("New group").build());
+        assertNotSame(compiled, CompiledSchedule.get(schedule, model.getSnapshot()));
+    }
+
+    @Test
+    public void testSessionCacheIsInvalidatedBySkillChanges() throws InterruptedException {
+        model.initWithFakeData();
+        final long scheduleId = model.getSnapshot().getScheduleIdAt(0);
+        SkillWeighting weighting = new PriorityStalenessWeighting(0.5f);
+        SessionCache cache = new SessionCache(model);
+        assertNull(cache.take(scheduleId, weighting, false, null));
+        cache.awaitIdle();
+        SampledSession session = cache.take(scheduleId, weighting, false, null);
+        assertNotNull(session);
+        assertEquals(model.getSnapshot().getScheduleById(scheduleId).getSlotCount(),
+                session.getSkillIds().length);
+        // A different weighting or a change to the skills makes the next session stale.
+        cache.awaitIdle();
+        assertNull(cache.take(scheduleId, new PriorityStalenessWeighting(1.0f), false, null));
+        cache.awaitIdle();
+        assertNull(cache.take(scheduleId, weighting, false, null));
+        cache.awaitIdle();
+        assertNotNull(cache.take(scheduleId, weighting, false, null));
+        cache.awaitIdle();
+        model.addSkill(Proto.Skill.newBuilder().setName("New").setPriority(5).build());
+        assertNull(cache.take(scheduleId, weighting, false, null));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testAddInvalidSkillMissingName() {
         model.addSkill(Proto.Skill.newBuilder().setPriority(7).build());
@@ -281,6 +728,63 @@ public class ModelUnitTest extends ActivityInstrumentationTestCase2<SkillDetailA
         assertEquals(replacementGroupId, schedule.getSlot(0).getGroupId());
     }
 
+    @Test
+    public void testReplaceSkillGroupOnlyRewritesAffectedRows() {
+        final long toReplaceGroupId = 1;
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("A").setId(toReplaceGroupId).build());
+        final long otherGroupId = 2;
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("B").setId(otherGroupId).build());
+        final long childGroupId = 3;
+        model.addSkillGroup(Proto.SkillGroup.newBuilder().setName("C").setId(childGroupId)
+                .addParentId(otherGroupId).build());
+        final long skillId = model.addSkill(
+                Proto.Skill.newBuilder().setName("D").setPriority(Model.DEFAULT_PRIORITY)
+                        .addGroupId(otherGroupId).addGroupId(childGroupId).build());
+        model.deleteSkillGroup(toReplaceGroupId);
+        assertFalse(model.isValidSkillGroupId(toReplaceGroupId));
+        assertEquals(2, model.getSkillById(skillId).getGroupIdCount());
+        assertEquals(otherGroupId, model.getSkillGroupById(childGroupId).getParentId(0));
+    }
+
+    /**
+     * Measures replacing and deleting groups in a library of 10k skills and 1k groups.
+     */
+    @Test
+    public void testReplaceSkillGroupPerformance() {
+        final int numGroups = 1000;
+        final int numSkills = 10000;
+        model.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < numGroups; ++i) {
+                    Proto.SkillGroup.Builder skillGroupBuilder =
+                            Proto.SkillGroup.newBuilder().setName("G" + i).setId(i);
+                    if (i > 0) skillGroupBuilder.addParentId((i - 1) / 10);
+                    model.addSkillGroup(skillGroupBuilder.build());
+                }
+                for (int i = 0; i < numSkills; ++i) {
+                    model.addSkill(Proto.Skill.newBuilder().setName("S" + i).setPriority(Model.DEFAULT_PRIORITY)
+                            .addGroupId(i % numGroups).addGroupId((i * 7) % numGroups).build());
+                }
+            }
+        });
+        model.addSchedule(Proto.Schedule.newBuilder().setName("S").addSlot(
+                Proto.Schedule.Slot.newBuilder().setGroupId(5).setDurationInSecs(60)).build());
+
+        long start = System.nanoTime();
+        model.replaceSkillGroup(5, 6);
+        final long replaceMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        start = System.nanoTime();
+        model.deleteSkillGroup(999);
+        final long deleteMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Log.i("ModelUnitTest", "replaceSkillGroup: " + replaceMillis + "ms, deleteSkillGroup: " + deleteMillis + "ms");
+
+        assertEquals(0, model.getSkillIdsInGroup(5).length);
+        assertEquals(0, model.getSkillIdsInGroup(999).length);
+        assertEquals(6, model.getSkillGroupById(51).getParentId(0));
+        assertFalse(model.isValidSkillGroupId(999));
+    }
+
     @Test
     public void testGetScheduleById() {
         final long groupId = 1;
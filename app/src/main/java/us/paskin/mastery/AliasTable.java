@@ -0,0 +1,67 @@
+package us.paskin.mastery;
+
+import java.util.Random;
+
+/**
+ * Samples indices in proportion to a fixed set of weights in constant time, using Vose's version of
+ * Walker's alias method.  Building the table takes time linear in the number of weights.
+ */
+class AliasTable {
+    /**
+     * For each bucket, the probability of returning the bucket itself rather than its alias.
+     */
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * Builds a table for the supplied weights, which must be non-negative.  If they are all zero, the
+     * indices are sampled uniformly.  Throws IllegalArgumentException if there are no weights.
+     */
+    AliasTable(double[] weights) {
+        final int n = weights.length;
+        if (n == 0) throw new IllegalArgumentException("no weights");
+        probability = new double[n];
+        alias = new int[n];
+        double sum = 0.0;
+        for (double weight : weights) {
+            if (weight < 0.0) throw new IllegalArgumentException("negative weight: " + weight);
+            sum += weight;
+        }
+        // Scale the weights so that they average 1, and split them into those below and above 1.
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int numSmall = 0;
+        int numLarge = 0;
+        for (int i = 0; i < n; ++i) {
+            scaled[i] = sum > 0.0 ? weights[i] * n / sum : 1.0;
+            if (scaled[i] < 1.0) small[numSmall++] = i;
+            else large[numLarge++] = i;
+        }
+        // Fill each small bucket with a large one.
+        while (numSmall > 0 && numLarge > 0) {
+            final int less = small[--numSmall];
+            final int more = large[--numLarge];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) small[numSmall++] = more;
+            else large[numLarge++] = more;
+        }
+        // Whatever remains is full, up to rounding error.
+        while (numLarge > 0) probability[large[--numLarge]] = 1.0;
+        while (numSmall > 0) probability[small[--numSmall]] = 1.0;
+    }
+
+    int size() {
+        return probability.length;
+    }
+
+    /**
+     * Returns an index with probability proportional to its weight.
+     */
+    int sample(Random random) {
+        final int bucket = random.nextInt(probability.length);
+        return random.nextDouble() < probability[bucket] ? bucket : alias[bucket];
+    }
+}
@@ -0,0 +1,307 @@
+package us.paskin.mastery;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A schedule prepared for sampling against a particular group hierarchy.  Slots are assigned to
+ * pools of eligible skills, with slots for the same group sharing a pool, and each pool holds a mask
+ * of its group and all the group's descendants (see SkillTable.toGroupMask).  So whether a skill can
+ * fill a slot is a single intersection of bitsets.
+ * <p>
+ * Slots with quotas (see Proto.Schedule.Slot.Quota) are split into strata.  Each quota group gets a
+ * pool of its own, which the skills are offered to in the same pass as the other pools, and slots
+ * with the same group and quotas form a stratum family whose slots are dealt out among the quota
+ * pools each time a session is sampled (see drawSlotPools).
+ * <p>
+ * Compiled schedules are immutable and are cached by get until the skill groups change.
+ */
+final class CompiledSchedule {
+    /**
+     * The maximum number of schedules that are cached.  Edited schedules leave stale entries behind,
+     * so the cache is cleared when it reaches this size.
+     */
+    private static final int MAX_CACHED = 32;
+
+    /**
+     * The compiled schedules, and the skill group version they were compiled against.  These are
+     * guarded by the monitor of this class.
+     */
+    private static final HashMap<Proto.Schedule, CompiledSchedule> cache = new HashMap<>();
+    private static long cachedSkillGroupVersion = -1;
+
+    /**
+     * The index of the pool of each slot.
+     */
+    private final int[] slotPools;
+
+    /**
+     * The group mask of each pool, or null if any skill is eligible.
+     */
+    private final long[][] poolGroupMasks;
+
+    /**
+     * The IDs of the group of each pool and all its descendants, or null if any skill is eligible.
+     */
+    private final long[][] poolGroupIds;
+
+    /**
+     * For each stratum family, the indices of its slots, and the pool and percent of each quota.
+     */
+    private final int[][] familySlots;
+    private final int[][] familyPools;
+    private final int[][] familyPercents;
+
+    private CompiledSchedule(int[] slotPools, long[][] poolGroupMasks, long[][] poolGroupIds,
+                             int[][] familySlots, int[][] familyPools, int[][] familyPercents) {
+        this.slotPools = slotPools;
+        this.poolGroupMasks = poolGroupMasks;
+        this.poolGroupIds = poolGroupIds;
+        this.familySlots = familySlots;
+        this.familyPools = familyPools;
+        this.familyPercents = familyPercents;
+    }
+
+    /**
+     * Returns the compiled form of the schedule for the snapshot's skill groups, compiling it unless
+     * it is cached.
+     */
+    static synchronized CompiledSchedule get(Proto.Schedule schedule, ModelSnapshot snapshot) {
+        if (cachedSkillGroupVersion != snapshot.getSkillGroupVersion() || cache.size() >= MAX_CACHED) {
+            cache.clear();
+            cachedSkillGroupVersion = snapshot.getSkillGroupVersion();
+        }
+        CompiledSchedule result = cache.get(schedule);
+        if (result == null) {
+            result = compile(schedule, snapshot);
+            cache.put(schedule, result);
+        }
+        return result;
+    }
+
+    /**
+     * Compiles the schedule for the snapshot's skill groups.
+     */
+    static CompiledSchedule compile(Proto.Schedule schedule, ModelSnapshot snapshot) {
+        final int numSlots = schedule.getSlotCount();
+        int[] slotPools = new int[numSlots];
+        // The group of each pool, or null for a pool that any skill is eligible for.
+        List<Long> poolGroupIds = new ArrayList<>();
+        List<Proto.Schedule.Slot> families = new ArrayList<>();  // The first slot of each family.
+        List<List<Integer>> familySlotLists = new ArrayList<>();
+        for (int slotIndex = 0; slotIndex < numSlots; ++slotIndex) {
+            Proto.Schedule.Slot slot = schedule.getSlot(slotIndex);
+            slotPools[slotIndex] = getPool(poolGroupIds, slot.hasGroupId() ? slot.getGroupId() : null);
+            if (slot.getQuotaCount() == 0) continue;
+            int family = 0;
+            while (family < families.size() && !sameStratum(families.get(family), slot)) ++family;
+            if (family == families.size()) {
+                families.add(slot);
+                familySlotLists.add(new ArrayList<Integer>());
+            }
+            familySlotLists.get(family).add(slotIndex);
+        }
+        final int numFamilies = families.size();
+        int[][] familySlots = new int[numFamilies][];
+        int[][] familyPools = new int[numFamilies][];
+        int[][] familyPercents = new int[numFamilies][];
+        for (int family = 0; family < numFamilies; ++family) {
+            List<Integer> slotList = familySlotLists.get(family);
+            familySlots[family] = new int[slotList.size()];
+            for (int i = 0; i < slotList.size(); ++i) familySlots[family][i] = slotList.get(i);
+            List<Proto.Schedule.Slot.Quota> quotas = families.get(family).getQuotaList();
+            familyPools[family] = new int[quotas.size()];
+            familyPercents[family] = new int[quotas.size()];
+            for (int i = 0; i < quotas.size(); ++i) {
+                familyPools[family][i] = getPool(poolGroupIds, quotas.get(i).getGroupId());
+                familyPercents[family][i] = quotas.get(i).getPercent();
+            }
+        }
+        final int numPools = poolGroupIds.size();
+        long[][] poolGroupMasks = new long[numPools][];
+        long[][] poolGroupAndDescendantIds = new long[numPools][];
+        BitSet indices = new BitSet(snapshot.getSkillGroupIndexCapacity());
+        for (int pool = 0; pool < numPools; ++pool) {
+            final Long groupId = poolGroupIds.get(pool);
+            if (groupId == null) continue;
+            indices.clear();
+            snapshot.addGroupAndDescendantIndices(groupId, indices);
+            poolGroupMasks[pool] = SkillTable.toGroupMask(indices);
+            poolGroupAndDescendantIds[pool] = getGroupAndDescendantIds(groupId, snapshot);
+        }
+        return new CompiledSchedule(slotPools, poolGroupMasks, poolGroupAndDescendantIds,
+                familySlots, familyPools, familyPercents);
+    }
+
+    /**
+     * Returns the IDs of the group and all its descendants in the snapshot.
+     */
+    private static long[] getGroupAndDescendantIds(long groupId, ModelSnapshot snapshot) {
+        List<Long> ids = new ArrayList<>();
+        ids.add(groupId);
+        for (int position = 0; position < snapshot.getSkillGroupCount(); ++position) {
+            final long id = snapshot.getSkillGroupIdAt(position);
+            if (id != groupId && snapshot.isAncestorOf(groupId, id)) ids.add(id);
+        }
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; ++i) result[i] = ids.get(i);
+        return result;
+    }
+
+    int getNumSlots() {
+        return slotPools.length;
+    }
+
+    int getNumPools() {
+        return poolGroupMasks.length;
+    }
+
+    /**
+     * Returns the index of the pool of each slot.  The caller must not modify the array.
+     */
+    int[] getSlotPools() {
+        return slotPools;
+    }
+
+    /**
+     * Returns true if some slot has quotas, in which case getSlotPools gives the pools of those slots'
+     * own groups, and drawSlotPools must be used to sample them.
+     */
+    boolean hasQuotas() {
+        return familySlots.length > 0;
+    }
+
+    /**
+     * Returns true if the pool is the pool of some quota, so that drawSlotPools needs to know whether
+     * it is empty.
+     */
+    boolean isQuotaPool(int pool) {
+        for (int[] pools : familyPools) {
+            for (int quotaPool : pools) {
+                if (quotaPool == pool) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the IDs of the group of the pool and all its descendants, a skill in any of which is
+     * eligible for the pool, or null if any skill is.  The caller must not modify the array.
+     */
+    @Nullable
+    long[] getPoolGroupIds(int pool) {
+        return poolGroupIds[pool];
+    }
+
+    /**
+     * Returns the index of the pool of each slot for one session, assigning the slots of each stratum
+     * family to the pools of its quotas.  Each quota gets its share of the family's slots, rounded up
+     * or down at random so that it gets exactly its share on average, and the shares are dealt out
+     * among the slots in random order.  Quotas whose pools are empty, e.g., as shown by a pass that
+     * offered every skill to every pool, get no slots, and their share is divided among the others in
+     * proportion to their percents; if all of a family's quota pools are empty, its slots keep the
+     * pool of their own group.  Returns getSlotPools without drawing from random if no slot has
+     * quotas.  The caller must not modify the array.
+     */
+    int[] drawSlotPools(Random random, boolean[] isPoolEmpty) {
+        if (familySlots.length == 0) return slotPools;
+        int[] result = slotPools.clone();
+        for (int family = 0; family < familySlots.length; ++family) {
+            final int[] slots = familySlots[family];
+            final int[] pools = familyPools[family];
+            int[] percents = new int[pools.length];
+            boolean anyNonEmpty = false;
+            for (int i = 0; i < pools.length; ++i) {
+                if (isPoolEmpty[pools[i]]) continue;
+                percents[i] = familyPercents[family][i];
+                anyNonEmpty = true;
+            }
+            if (!anyNonEmpty) continue;
+            int[] counts = new int[pools.length];
+            allocate(slots.length, percents, random, counts);
+            int next = 0;
+            for (int i = 0; i < pools.length; ++i) {
+                for (int j = 0; j < counts[i]; ++j) result[slots[next++]] = pools[i];
+            }
+            // Shuffle the family's pools among its slots.
+            for (int i = slots.length - 1; i > 0; --i) {
+                final int j = random.nextInt(i + 1);
+                final int pool = result[slots[i]];
+                result[slots[i]] = result[slots[j]];
+                result[slots[j]] = pool;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Divides the supplied number of slots among quotas in proportion to the supplied percents, at
+     * least one of which must be positive, setting the number of slots of each quota in counts.  Each
+     * quota gets its exact share rounded either down or up, and the expected number is exactly its
+     * share.  This is systematic sampling: the shares are laid end to end, and a quota gets a slot for
+     * each point of a randomly offset unit grid that falls within its share.
+     */
+    static void allocate(int numSlots, int[] percents, Random random, int[] counts) {
+        int total = 0;
+        for (int percent : percents) total += percent;
+        // Shares are measured in units of 1/total of a slot, so that the arithmetic is exact.
+        final int offset = random.nextInt(total);
+        int cumulative = 0;
+        int previous = 0;
+        for (int i = 0; i < percents.length; ++i) {
+            cumulative += numSlots * percents[i];
+            final int points = (cumulative + offset) / total;
+            counts[i] = points - previous;
+            previous = points;
+        }
+    }
+
+    /**
+     * Returns true if the skill in the supplied row of the table is eligible for the pool.
+     */
+    boolean canBeFilledBy(int pool, SkillTable table, int row) {
+        final long[] mask = poolGroupMasks[pool];
+        return mask == null || table.isInAnyGroup(row, mask);
+    }
+
+    /**
+     * Returns true if the skill, which is in the snapshot, is eligible for the pool.  This reads the
+     * skill's proto, so it is only for skills that are looked up one at a time.
+     */
+    boolean canBeFilledBy(int pool, Proto.Skill skill, ModelSnapshot snapshot) {
+        final long[] mask = poolGroupMasks[pool];
+        if (mask == null) return true;
+        for (long groupId : skill.getGroupIdList()) {
+            final int index = snapshot.getSkillGroupIndex(groupId);
+            if (index >= 0 && SkillTable.isInMask(index, mask)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the pool for the group, adding a pool if there is none.
+     *
+     * @param groupId the group, or null for any skill
+     */
+    private static int getPool(List<Long> poolGroupIds, @Nullable Long groupId) {
+        final int pool = poolGroupIds.indexOf(groupId);
+        if (pool != -1) return pool;
+        poolGroupIds.add(groupId);
+        return poolGroupIds.size() - 1;
+    }
+
+    /**
+     * Returns true if the slots have the same group and the same quotas, so they are stratified
+     * together.
+     */
+    private static boolean sameStratum(Proto.Schedule.Slot a, Proto.Schedule.Slot b) {
+        if (a.hasGroupId() != b.hasGroupId()) return false;
+        if (a.hasGroupId() && a.getGroupId() != b.getGroupId()) return false;
+        return a.getQuotaList().equals(b.getQuotaList());
+    }
+}
@@ -13,6 +13,14 @@ public class DatabaseContract {
         public static final String TABLE_NAME = "skills";
         public static final String COLUMN_NAME_NAME = "name";
         public static final String COLUMN_NAME_PROTO = "proto";
+        // The following columns duplicate fields of the proto so they can be read without parsing it.
+        public static final String COLUMN_NAME_PRIORITY = "priority";
+        public static final String COLUMN_NAME_DATE_LAST_PRACTICED = "date_last_practiced";
+        public static final String COLUMN_NAME_SECONDS_PRACTICED = "seconds_practiced";
+        public static final String COLUMN_NAME_EST_SECONDS_PRACTICED_100_DAYS = "est_seconds_practiced_100_days";
+        // Unlike the other duplicated columns, this is also kept up to date when practice is logged
+        // (see Model.flushPendingPractice), since sessions of due skills are read in its order.
+        public static final String COLUMN_NAME_NEXT_DUE = "next_due";
     }
 
     public static abstract class SkillGroupEntry implements BaseColumns {
@@ -21,9 +29,56 @@ public class DatabaseContract {
         public static final String COLUMN_NAME_PROTO = "proto";
     }
 
+    /**
+     * Each row records that a skill is directly in a group.  This mirrors Skill.group_id.
+     */
+    public static abstract class SkillGroupMembershipEntry {
+        public static final String TABLE_NAME = "skill_group_membership";
+        public static final String COLUMN_NAME_SKILL_ID = "skill_id";
+        public static final String COLUMN_NAME_GROUP_ID = "group_id";
+    }
+
+    /**
+     * Each row records a period during which a skill was practiced.  Rows are only ever appended; a
+     * background compaction folds them into the skill's proto and then marks them as compacted.
+     */
+    public static abstract class PracticeEventEntry implements BaseColumns {
+        public static final String TABLE_NAME = "practice_events";
+        public static final String COLUMN_NAME_SKILL_ID = "skill_id";
+        // When the practice started, in seconds since the epoch.
+        public static final String COLUMN_NAME_START_TS = "start_ts";
+        public static final String COLUMN_NAME_SECONDS = "seconds";
+        // 1 if the event has been folded into the skill, and 0 otherwise.
+        public static final String COLUMN_NAME_COMPACTED = "compacted";
+    }
+
     public static abstract class ScheduleEntry implements BaseColumns {
         public static final String TABLE_NAME = "schedules";
         public static final String COLUMN_NAME_NAME = "name";
         public static final String COLUMN_NAME_PROTO = "proto";
     }
+
+    /**
+     * Each row records the skill planned for a slot of a schedule on a day of a plan made by
+     * Session.planSessions.  A schedule has at most one plan.
+     */
+    public static abstract class PlanEntry {
+        public static final String TABLE_NAME = "plans";
+        public static final String COLUMN_NAME_SCHEDULE_ID = "schedule_id";
+        // The index of the day within the plan, starting at zero.
+        public static final String COLUMN_NAME_DAY = "day";
+        public static final String COLUMN_NAME_SLOT_INDEX = "slot_index";
+        // The ID of the skill, or -1 if the slot could not be filled.
+        public static final String COLUMN_NAME_SKILL_ID = "skill_id";
+    }
+
+    /**
+     * A single row holding the version of the data (see Model.getDataVersion), so that versions
+     * recorded by one process still identify the same data in the next.  It starts at a random value
+     * when the database is created, so that versions of different databases do not collide.
+     */
+    public static abstract class DataVersionEntry {
+        public static final String TABLE_NAME = "data_version";
+        public static final String COLUMN_NAME_VERSION = "version";
+    }
 }
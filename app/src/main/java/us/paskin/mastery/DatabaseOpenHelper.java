@@ -1,20 +1,27 @@
 package us.paskin.mastery;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.util.Random;
+
 /**
  * Helps open or create the database.
  */
 public class DatabaseOpenHelper extends SQLiteOpenHelper {
     // If you change the database schema, you must increment the database version.
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 7;
     public static final String DATABASE_NAME = "Mastery.db";
 
     // Generic constants
     private static final String TEXT_TYPE = " TEXT";
     private static final String BLOB_TYPE = " BLOB";
+    private static final String INTEGER_TYPE = " INTEGER";
     private static final String UNIQUE = " NOT NULL UNIQUE";
     private static final String COMMA_SEP = ",";
 
@@ -24,9 +31,36 @@ public class DatabaseOpenHelper extends SQLiteOpenHelper {
                     DatabaseContract.SkillEntry._ID + " INTEGER PRIMARY KEY" +
                     COMMA_SEP + DatabaseContract.SkillEntry.COLUMN_NAME_NAME + TEXT_TYPE + UNIQUE +
                     COMMA_SEP + DatabaseContract.SkillEntry.COLUMN_NAME_PROTO + BLOB_TYPE +
+                    COMMA_SEP + DatabaseContract.SkillEntry.COLUMN_NAME_PRIORITY + INTEGER_TYPE +
+                    COMMA_SEP + DatabaseContract.SkillEntry.COLUMN_NAME_DATE_LAST_PRACTICED + INTEGER_TYPE +
+                    COMMA_SEP + DatabaseContract.SkillEntry.COLUMN_NAME_SECONDS_PRACTICED + INTEGER_TYPE +
+                    COMMA_SEP + DatabaseContract.SkillEntry.COLUMN_NAME_EST_SECONDS_PRACTICED_100_DAYS + INTEGER_TYPE +
+                    COMMA_SEP + DatabaseContract.SkillEntry.COLUMN_NAME_NEXT_DUE + INTEGER_TYPE +
                     " )";
     private static final String SQL_DROP_SKILLS =
             "DROP TABLE IF EXISTS " + DatabaseContract.SkillEntry.TABLE_NAME;
+    private static final String SQL_CREATE_SKILLS_DATE_LAST_PRACTICED_INDEX =
+            "CREATE INDEX IF NOT EXISTS skills_date_last_practiced_index ON " +
+                    DatabaseContract.SkillEntry.TABLE_NAME + " (" +
+                    DatabaseContract.SkillEntry.COLUMN_NAME_DATE_LAST_PRACTICED + ")";
+    private static final String SQL_CREATE_SKILLS_EST_SECONDS_PRACTICED_INDEX =
+            "CREATE INDEX IF NOT EXISTS skills_est_seconds_practiced_100_days_index ON " +
+                    DatabaseContract.SkillEntry.TABLE_NAME + " (" +
+                    DatabaseContract.SkillEntry.COLUMN_NAME_EST_SECONDS_PRACTICED_100_DAYS + ")";
+    // Skills are read in order of due date and then decreasing priority (see
+    // Session.sampleDueSession), which this index gives without sorting.
+    private static final String SQL_CREATE_SKILLS_NEXT_DUE_INDEX =
+            "CREATE INDEX IF NOT EXISTS skills_next_due_index ON " +
+                    DatabaseContract.SkillEntry.TABLE_NAME + " (" +
+                    DatabaseContract.SkillEntry.COLUMN_NAME_NEXT_DUE + COMMA_SEP +
+                    DatabaseContract.SkillEntry.COLUMN_NAME_PRIORITY + " DESC)";
+
+    // Columns added to the skills table in version 2.
+    private static final String[] SKILL_COLUMNS_ADDED_IN_VERSION_2 = {
+            DatabaseContract.SkillEntry.COLUMN_NAME_PRIORITY,
+            DatabaseContract.SkillEntry.COLUMN_NAME_DATE_LAST_PRACTICED,
+            DatabaseContract.SkillEntry.COLUMN_NAME_SECONDS_PRACTICED,
+            DatabaseContract.SkillEntry.COLUMN_NAME_EST_SECONDS_PRACTICED_100_DAYS};
 
 
     // Skill groups DB statements
@@ -39,6 +73,56 @@ public class DatabaseOpenHelper extends SQLiteOpenHelper {
     private static final String SQL_DROP_SKILL_GROUPS =
             "DROP TABLE IF EXISTS " + DatabaseContract.SkillGroupEntry.TABLE_NAME;
 
+    // Skill group membership DB statements
+    private static final String SQL_CREATE_SKILL_GROUP_MEMBERSHIP =
+            "CREATE TABLE " + DatabaseContract.SkillGroupMembershipEntry.TABLE_NAME + " (" +
+                    DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_SKILL_ID + INTEGER_TYPE + " NOT NULL" +
+                    COMMA_SEP + DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_GROUP_ID + INTEGER_TYPE + " NOT NULL" +
+                    COMMA_SEP + "PRIMARY KEY (" +
+                    DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_SKILL_ID + COMMA_SEP +
+                    DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_GROUP_ID + ")" +
+                    " )";
+    private static final String SQL_CREATE_SKILL_GROUP_MEMBERSHIP_SKILL_INDEX =
+            "CREATE INDEX IF NOT EXISTS skill_group_membership_skill_index ON " +
+                    DatabaseContract.SkillGroupMembershipEntry.TABLE_NAME + " (" +
+                    DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_SKILL_ID + ")";
+    private static final String SQL_CREATE_SKILL_GROUP_MEMBERSHIP_GROUP_INDEX =
+            "CREATE INDEX IF NOT EXISTS skill_group_membership_group_index ON " +
+                    DatabaseContract.SkillGroupMembershipEntry.TABLE_NAME + " (" +
+                    DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_GROUP_ID + ")";
+
+    // Practice event DB statements
+    private static final String SQL_CREATE_PRACTICE_EVENTS =
+            "CREATE TABLE " + DatabaseContract.PracticeEventEntry.TABLE_NAME + " (" +
+                    DatabaseContract.PracticeEventEntry._ID + " INTEGER PRIMARY KEY" +
+                    COMMA_SEP + DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID + INTEGER_TYPE + " NOT NULL" +
+                    COMMA_SEP + DatabaseContract.PracticeEventEntry.COLUMN_NAME_START_TS + INTEGER_TYPE + " NOT NULL" +
+                    COMMA_SEP + DatabaseContract.PracticeEventEntry.COLUMN_NAME_SECONDS + INTEGER_TYPE + " NOT NULL" +
+                    COMMA_SEP + DatabaseContract.PracticeEventEntry.COLUMN_NAME_COMPACTED + INTEGER_TYPE + " NOT NULL DEFAULT 0" +
+                    " )";
+    private static final String SQL_CREATE_PRACTICE_EVENTS_SKILL_INDEX =
+            "CREATE INDEX IF NOT EXISTS practice_events_skill_index ON " +
+                    DatabaseContract.PracticeEventEntry.TABLE_NAME + " (" +
+                    DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID + COMMA_SEP +
+                    DatabaseContract.PracticeEventEntry.COLUMN_NAME_COMPACTED + ")";
+    private static final String SQL_CREATE_PRACTICE_EVENTS_COMPACTED_INDEX =
+            "CREATE INDEX IF NOT EXISTS practice_events_compacted_index ON " +
+                    DatabaseContract.PracticeEventEntry.TABLE_NAME + " (" +
+                    DatabaseContract.PracticeEventEntry.COLUMN_NAME_COMPACTED + ")";
+
+    // Plan DB statements
+    private static final String SQL_CREATE_PLANS =
+            "CREATE TABLE " + DatabaseContract.PlanEntry.TABLE_NAME + " (" +
+                    DatabaseContract.PlanEntry.COLUMN_NAME_SCHEDULE_ID + INTEGER_TYPE + " NOT NULL" +
+                    COMMA_SEP + DatabaseContract.PlanEntry.COLUMN_NAME_DAY + INTEGER_TYPE + " NOT NULL" +
+                    COMMA_SEP + DatabaseContract.PlanEntry.COLUMN_NAME_SLOT_INDEX + INTEGER_TYPE + " NOT NULL" +
+                    COMMA_SEP + DatabaseContract.PlanEntry.COLUMN_NAME_SKILL_ID + INTEGER_TYPE + " NOT NULL" +
+                    COMMA_SEP + "PRIMARY KEY (" +
+                    DatabaseContract.PlanEntry.COLUMN_NAME_SCHEDULE_ID + COMMA_SEP +
+                    DatabaseContract.PlanEntry.COLUMN_NAME_DAY + COMMA_SEP +
+                    DatabaseContract.PlanEntry.COLUMN_NAME_SLOT_INDEX + ")" +
+                    " )";
+
     // Schedule DB statements
     private static final String SQL_CREATE_SCHEDULES =
             "CREATE TABLE " + DatabaseContract.ScheduleEntry.TABLE_NAME + " (" +
@@ -49,6 +133,12 @@ public class DatabaseOpenHelper extends SQLiteOpenHelper {
     private static final String SQL_DROP_SCHEDULES =
             "DROP TABLE IF EXISTS " + DatabaseContract.ScheduleEntry.TABLE_NAME;
 
+    // Data version DB statements
+    private static final String SQL_CREATE_DATA_VERSION =
+            "CREATE TABLE " + DatabaseContract.DataVersionEntry.TABLE_NAME + " (" +
+                    DatabaseContract.DataVersionEntry.COLUMN_NAME_VERSION + INTEGER_TYPE + " NOT NULL" +
+                    " )";
+
     /**
      * Main constructor.
      *
@@ -70,18 +160,158 @@ public class DatabaseOpenHelper extends SQLiteOpenHelper {
 
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(SQL_CREATE_SKILLS);
+        db.execSQL(SQL_CREATE_SKILLS_DATE_LAST_PRACTICED_INDEX);
+        db.execSQL(SQL_CREATE_SKILLS_EST_SECONDS_PRACTICED_INDEX);
+        db.execSQL(SQL_CREATE_SKILLS_NEXT_DUE_INDEX);
         db.execSQL(SQL_CREATE_SKILL_GROUPS);
+        createSkillGroupMembership(db);
+        createPracticeEvents(db);
         db.execSQL(SQL_CREATE_SCHEDULES);
+        db.execSQL(SQL_CREATE_PLANS);
+        createDataVersion(db);
     }
 
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Right now there is only one version.
-        onCreate(db);
+        if (oldVersion < 2) upgradeToVersion2(db);
+        if (oldVersion < 3) upgradeToVersion3(db);
+        if (oldVersion < 4) createPracticeEvents(db);
+        if (oldVersion < 5) db.execSQL(SQL_CREATE_PLANS);
+        if (oldVersion < 6) upgradeToVersion6(db);
+        if (oldVersion < 7) createDataVersion(db);
     }
 
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Right now there is only one version.
-        onUpgrade(db, oldVersion, newVersion);
+        // Later versions only add columns, tables and indices, so the existing schema still works.
+    }
+
+    /**
+     * Adds the denormalized skill columns and fills them in from each skill's proto.
+     */
+    private static void upgradeToVersion2(SQLiteDatabase db) {
+        for (String column : SKILL_COLUMNS_ADDED_IN_VERSION_2) {
+            db.execSQL("ALTER TABLE " + DatabaseContract.SkillEntry.TABLE_NAME +
+                    " ADD COLUMN " + column + INTEGER_TYPE);
+        }
+        String[] projection = {
+                DatabaseContract.SkillEntry._ID,
+                DatabaseContract.SkillEntry.COLUMN_NAME_PROTO};
+        Cursor cursor = db.query(DatabaseContract.SkillEntry.TABLE_NAME, projection,
+                null, null, null, null, null);
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            Proto.Skill skill;
+            try {
+                skill = Proto.Skill.parseFrom(cursor.getBlob(1));
+            } catch (InvalidProtocolBufferException x) {
+                throw new InternalError("cannot parse protocol buffer");
+            }
+            ContentValues values = new ContentValues();
+            putVersion2SkillColumns(skill, values);
+            db.update(DatabaseContract.SkillEntry.TABLE_NAME, values,
+                    DatabaseContract.SkillEntry._ID + " = " + cursor.getLong(0), null);
+        }
+        cursor.close();
+        db.execSQL(SQL_CREATE_SKILLS_DATE_LAST_PRACTICED_INDEX);
+        db.execSQL(SQL_CREATE_SKILLS_EST_SECONDS_PRACTICED_INDEX);
+    }
+
+    /**
+     * Adds the skill group membership table and fills it in from each skill's proto.
+     */
+    private static void upgradeToVersion3(SQLiteDatabase db) {
+        createSkillGroupMembership(db);
+        String[] projection = {
+                DatabaseContract.SkillEntry._ID,
+                DatabaseContract.SkillEntry.COLUMN_NAME_PROTO};
+        Cursor cursor = db.query(DatabaseContract.SkillEntry.TABLE_NAME, projection,
+                null, null, null, null, null);
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            try {
+                insertSkillGroupMembership(db, cursor.getLong(0), Proto.Skill.parseFrom(cursor.getBlob(1)));
+            } catch (InvalidProtocolBufferException x) {
+                throw new InternalError("cannot parse protocol buffer");
+            }
+        }
+        cursor.close();
+    }
+
+    /**
+     * Adds the next-due column of the skills.  Earlier versions had no spaced-repetition state, so
+     * the column is null (i.e., due now) for every skill until it is next practiced.
+     */
+    private static void upgradeToVersion6(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + DatabaseContract.SkillEntry.TABLE_NAME +
+                " ADD COLUMN " + DatabaseContract.SkillEntry.COLUMN_NAME_NEXT_DUE + INTEGER_TYPE);
+        db.execSQL(SQL_CREATE_SKILLS_NEXT_DUE_INDEX);
+    }
+
+    /**
+     * Adds the data version table, starting the version at a random value well below the largest long.
+     */
+    private static void createDataVersion(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_DATA_VERSION);
+        ContentValues values = new ContentValues();
+        values.put(DatabaseContract.DataVersionEntry.COLUMN_NAME_VERSION, new Random().nextLong() >>> 2);
+        db.insert(DatabaseContract.DataVersionEntry.TABLE_NAME, null, values);
+    }
+
+    private static void createSkillGroupMembership(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_SKILL_GROUP_MEMBERSHIP);
+        db.execSQL(SQL_CREATE_SKILL_GROUP_MEMBERSHIP_SKILL_INDEX);
+        db.execSQL(SQL_CREATE_SKILL_GROUP_MEMBERSHIP_GROUP_INDEX);
+    }
+
+    private static void createPracticeEvents(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_PRACTICE_EVENTS);
+        db.execSQL(SQL_CREATE_PRACTICE_EVENTS_SKILL_INDEX);
+        db.execSQL(SQL_CREATE_PRACTICE_EVENTS_COMPACTED_INDEX);
+    }
+
+    /**
+     * Records the groups the skill is directly in.  Any existing rows for the skill must already have
+     * been removed.
+     */
+    static void insertSkillGroupMembership(SQLiteDatabase db, long skillId, Proto.Skill skill) {
+        for (long groupId : skill.getGroupIdList()) {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_SKILL_ID, skillId);
+            values.put(DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_GROUP_ID, groupId);
+            db.insertWithOnConflict(DatabaseContract.SkillGroupMembershipEntry.TABLE_NAME, null, values,
+                    SQLiteDatabase.CONFLICT_IGNORE);
+        }
+    }
+
+    /**
+     * Stores the fields of the skill that are duplicated in their own columns.
+     */
+    static void putSkillColumns(Proto.Skill skill, ContentValues values) {
+        putVersion2SkillColumns(skill, values);
+        putNextDueColumn(skill, values);
+    }
+
+    /**
+     * Stores the fields of the skill whose columns were added in version 2.
+     */
+    private static void putVersion2SkillColumns(Proto.Skill skill, ContentValues values) {
+        values.put(DatabaseContract.SkillEntry.COLUMN_NAME_PRIORITY, skill.getPriority());
+        if (skill.hasDateLastPracticed()) {
+            values.put(DatabaseContract.SkillEntry.COLUMN_NAME_DATE_LAST_PRACTICED, skill.getDateLastPracticed());
+        } else {
+            values.putNull(DatabaseContract.SkillEntry.COLUMN_NAME_DATE_LAST_PRACTICED);
+        }
+        values.put(DatabaseContract.SkillEntry.COLUMN_NAME_SECONDS_PRACTICED, skill.getSecondsPracticed());
+        values.put(DatabaseContract.SkillEntry.COLUMN_NAME_EST_SECONDS_PRACTICED_100_DAYS,
+                skill.getEstSecondsPracticed100Days());
+    }
+
+    /**
+     * Stores the skill's next-due time, or null if it has never been practiced.
+     */
+    static void putNextDueColumn(Proto.Skill skill, ContentValues values) {
+        if (skill.hasNextDue()) {
+            values.put(DatabaseContract.SkillEntry.COLUMN_NAME_NEXT_DUE, skill.getNextDue());
+        } else {
+            values.putNull(DatabaseContract.SkillEntry.COLUMN_NAME_NEXT_DUE);
+        }
     }
 }
 
@@ -0,0 +1,346 @@
+package us.paskin.mastery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains the parents of each skill group along with the transitive closure of that relation.
+ * Each group is assigned a dense index, and its ancestors are stored as a bitset over those indices,
+ * so ancestry queries take constant time.  A group keeps its index until it is removed, after which
+ * the index may be reused by a new group.  The closure is updated incrementally when the parents of
+ * a group change: only that group and its descendants are recomputed.
+ * <p>
+ * Everything is stored in primitive arrays indexed by group index, so queries neither box nor
+ * allocate.  Updates reuse scratch bitsets, so this is not safe for concurrent updates; concurrent
+ * queries are safe while no update is in progress.
+ */
+class GroupHierarchy {
+    private static final int[] NO_PARENTS = new int[0];
+
+    /**
+     * Maps a group ID to its index.
+     */
+    private final LongIntMap indexById;
+
+    /**
+     * The following are indexed by group index, and have room for at least numIndices entries.
+     * The parents and ancestors of removed groups are null.  The arrays and bitsets stored here are
+     * replaced rather than modified, so copies of this object can share them.
+     */
+    private long[] ids;
+    private int[][] parents;
+    private BitSet[] ancestors;
+
+    /**
+     * The number of indices that have been assigned.
+     */
+    private int numIndices = 0;
+
+    /**
+     * The indices of removed groups, which are reused before new indices are assigned.
+     */
+    private int[] freeIndices = new int[16];
+    private int numFreeIndices = 0;
+
+    /**
+     * Scratch space used when recomputing ancestors.
+     */
+    private final BitSet affected = new BitSet();
+    private final BitSet done = new BitSet();
+    private final BitSet inProgress = new BitSet();
+
+    GroupHierarchy() {
+        indexById = new LongIntMap();
+        ids = new long[16];
+        parents = new int[16][];
+        ancestors = new BitSet[16];
+    }
+
+    /**
+     * Returns a copy of other, which assigns the same index to each group.  Later updates of either
+     * object do not affect the other.
+     */
+    GroupHierarchy(GroupHierarchy other) {
+        indexById = new LongIntMap(other.indexById);
+        ids = other.ids.clone();
+        parents = other.parents.clone();
+        ancestors = other.ancestors.clone();
+        numIndices = other.numIndices;
+        freeIndices = other.freeIndices.clone();
+        numFreeIndices = other.numFreeIndices;
+    }
+
+    /**
+     * Removes all groups.
+     */
+    void clear() {
+        indexById.clear();
+        Arrays.fill(parents, 0, numIndices, null);
+        Arrays.fill(ancestors, 0, numIndices, null);
+        numIndices = 0;
+        numFreeIndices = 0;
+    }
+
+    /**
+     * Replaces the contents with the supplied groups, which maps each group ID to its parents' IDs.
+     * Parents that are not themselves keys of the map are ignored.  Throws InternalError if there is
+     * a parent cycle.
+     */
+    void load(Map<Long, List<Long>> parentsById) {
+        clear();
+        for (long id : parentsById.keySet()) {
+            addIndex(id);
+        }
+        for (Map.Entry<Long, List<Long>> entry : parentsById.entrySet()) {
+            parents[indexById.get(entry.getKey())] = toIndices(entry.getValue());
+        }
+        affected.clear();
+        affected.set(0, numIndices);
+        recompute();
+    }
+
+    /**
+     * Returns the number of groups.
+     */
+    int size() {
+        return indexById.size();
+    }
+
+    /**
+     * Returns an upper bound on the indices of groups.
+     */
+    int getIndexCapacity() {
+        return numIndices;
+    }
+
+    /**
+     * Returns the index of the group, or -1 if there is no such group.
+     */
+    int indexOf(long id) {
+        return indexById.get(id);
+    }
+
+    /**
+     * Returns true if there is a group with this ID.
+     */
+    boolean contains(long id) {
+        return indexById.containsKey(id);
+    }
+
+    /**
+     * Returns true if giving the group the supplied parents would make it its own ancestor.
+     */
+    boolean wouldCreateCycle(long id, List<Long> newParentIds) {
+        final int index = indexById.get(id);
+        if (index == LongIntMap.MISSING) return false;  // A new group has no descendants.
+        for (int i = 0; i < newParentIds.size(); ++i) {
+            final long parentId = newParentIds.get(i);
+            if (parentId == id) return true;
+            final int parentIndex = indexById.get(parentId);
+            if (parentIndex != LongIntMap.MISSING && ancestors[parentIndex].get(index)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the group if it is new, and sets its parents.  Throws IllegalArgumentException if a parent
+     * is unknown or if this would create a cycle.
+     */
+    void setParents(long id, List<Long> newParentIds) {
+        for (int i = 0; i < newParentIds.size(); ++i) {
+            final long parentId = newParentIds.get(i);
+            if (!contains(parentId)) throw new IllegalArgumentException("invalid parent: " + parentId);
+        }
+        if (wouldCreateCycle(id, newParentIds)) throw new IllegalArgumentException("parent cycle");
+        int index = indexById.get(id);
+        if (index == LongIntMap.MISSING) index = addIndex(id);
+        parents[index] = toIndices(newParentIds);
+        // The group's descendants are unchanged, but their ancestors must be recomputed.
+        affected.clear();
+        affected.set(index);
+        for (int i = 0; i < numIndices; ++i) {
+            if (ancestors[i] != null && ancestors[i].get(index)) affected.set(i);
+        }
+        recompute();
+    }
+
+    /**
+     * Removes the group.  It should not be the parent of any remaining group.
+     */
+    void remove(long id) {
+        final int index = indexById.remove(id);
+        if (index == LongIntMap.MISSING) return;
+        parents[index] = null;
+        ancestors[index] = null;
+        if (numFreeIndices == freeIndices.length) {
+            freeIndices = Arrays.copyOf(freeIndices, 2 * freeIndices.length);
+        }
+        freeIndices[numFreeIndices++] = index;
+    }
+
+    /**
+     * Returns true if ancestorId is an ancestor of id.
+     */
+    boolean isAncestorOf(long ancestorId, long id) {
+        final int index = indexById.get(id);
+        if (index == LongIntMap.MISSING) return false;
+        final int ancestorIndex = indexById.get(ancestorId);
+        if (ancestorIndex == LongIntMap.MISSING) return false;
+        return ancestors[index].get(ancestorIndex);
+    }
+
+    /**
+     * Sets the indices of the group and all its descendants in result.  This takes time linear in the
+     * number of groups, and does not allocate unless result must grow.
+     */
+    void addGroupAndDescendantIndices(long id, BitSet result) {
+        final int index = indexById.get(id);
+        if (index == LongIntMap.MISSING) return;
+        result.set(index);
+        for (int i = 0; i < numIndices; ++i) {
+            if (ancestors[i] != null && ancestors[i].get(index)) result.set(i);
+        }
+    }
+
+    /**
+     * Returns the IDs of the groups that have this group as a direct parent.
+     */
+    List<Long> getChildren(long id) {
+        List<Long> children = new ArrayList<>();
+        final int index = indexById.get(id);
+        if (index == LongIntMap.MISSING) return children;
+        for (int i = 0; i < numIndices; ++i) {
+            if (parents[i] == null) continue;
+            for (int parentIndex : parents[i]) {
+                if (parentIndex == index) {
+                    children.add(ids[i]);
+                    break;
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Returns the IDs of the ancestors of the group, or null if there are none.
+     */
+    Set<Long> getAncestors(long id) {
+        final int index = indexById.get(id);
+        if (index == LongIntMap.MISSING) return null;
+        BitSet bits = ancestors[index];
+        if (bits.isEmpty()) return null;
+        Set<Long> result = new HashSet<>();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            result.add(ids[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the IDs of the ancestors of the group into buffer, starting at offset, and returns the
+     * offset just past them.  The buffer must have room for size() IDs after offset.  This does not
+     * allocate.
+     */
+    int getAncestorIds(long id, long[] buffer, int offset) {
+        final int index = indexById.get(id);
+        if (index == LongIntMap.MISSING) return offset;
+        BitSet bits = ancestors[index];
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            buffer[offset++] = ids[i];
+        }
+        return offset;
+    }
+
+    /**
+     * Appends the IDs of the group and its ancestors to the first count entries of buffer, skipping
+     * those already present, and returns the new count.  The buffer must have room for size() IDs.
+     * This does not allocate.
+     */
+    int addGroupAndAncestorIds(long id, long[] buffer, int count) {
+        final int index = indexById.get(id);
+        if (index == LongIntMap.MISSING) return count;
+        count = addIfAbsent(id, buffer, count);
+        BitSet bits = ancestors[index];
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            count = addIfAbsent(ids[i], buffer, count);
+        }
+        return count;
+    }
+
+    /**
+     * Groups have few ancestors, so a linear scan is cheaper than a set.
+     */
+    private static int addIfAbsent(long id, long[] buffer, int count) {
+        for (int i = 0; i < count; ++i) {
+            if (buffer[i] == id) return count;
+        }
+        buffer[count] = id;
+        return count + 1;
+    }
+
+    private int addIndex(long id) {
+        final int index;
+        if (numFreeIndices > 0) {
+            index = freeIndices[--numFreeIndices];
+        } else {
+            if (numIndices == ids.length) {
+                final int capacity = 2 * ids.length;
+                ids = Arrays.copyOf(ids, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                ancestors = Arrays.copyOf(ancestors, capacity);
+            }
+            index = numIndices++;
+        }
+        indexById.put(id, index);
+        ids[index] = id;
+        parents[index] = NO_PARENTS;
+        ancestors[index] = new BitSet();
+        return index;
+    }
+
+    /**
+     * Recomputes the ancestors of the affected groups from their parents.  The ancestors of every
+     * other group must already be correct.
+     */
+    private void recompute() {
+        done.clear();
+        inProgress.clear();
+        for (int i = affected.nextSetBit(0); i >= 0; i = affected.nextSetBit(i + 1)) {
+            computeAncestors(i);
+        }
+    }
+
+    private BitSet computeAncestors(int index) {
+        if (!affected.get(index) || done.get(index)) return ancestors[index];
+        if (inProgress.get(index)) throw new InternalError("parent cycle");
+        inProgress.set(index);
+        BitSet result = new BitSet();
+        for (int parentIndex : parents[index]) {
+            if (parents[parentIndex] == null) continue;  // The parent was removed.
+            result.or(computeAncestors(parentIndex));
+            result.set(parentIndex);
+        }
+        ancestors[index] = result;
+        inProgress.clear(index);
+        done.set(index);
+        return result;
+    }
+
+    /**
+     * Converts parent IDs to indices, ignoring unknown parents.
+     */
+    private int[] toIndices(List<Long> parentIds) {
+        int[] result = new int[parentIds.size()];
+        int count = 0;
+        for (int i = 0; i < parentIds.size(); ++i) {
+            final int parentIndex = indexById.get(parentIds.get(i));
+            if (parentIndex != LongIntMap.MISSING) result[count++] = parentIndex;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,137 @@
+package us.paskin.mastery;
+
+import java.util.Arrays;
+
+/**
+ * A map from long keys to non-negative int values, using open addressing with linear probing.
+ * Unlike HashMap<Long, Integer>, lookups do not box their keys, and the map allocates nothing
+ * except when it grows.  This is not thread-safe.
+ */
+class LongIntMap {
+    /**
+     * The value returned by get for a missing key.
+     */
+    static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The slots of the table.  A slot is empty if its value is MISSING.  The capacity is always a
+     * power of two, and at most half of the slots are full.
+     */
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    LongIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    LongIntMap(LongIntMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Returns the value for the key, or MISSING if there is none.
+     */
+    int get(long key) {
+        final int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (values[slot] == MISSING) return MISSING;
+            if (keys[slot] == key) return values[slot];
+        }
+    }
+
+    /**
+     * Sets the value for the key, which must be non-negative.
+     */
+    void put(long key, int value) {
+        if (value < 0) throw new IllegalArgumentException("negative value: " + value);
+        if (2 * (size + 1) > keys.length) resize(2 * keys.length);
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        ++size;
+    }
+
+    /**
+     * Removes the key, returning its value, or MISSING if there was none.
+     */
+    int remove(long key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != key || values[slot] == MISSING) {
+            if (values[slot] == MISSING) return MISSING;
+            slot = (slot + 1) & mask;
+        }
+        final int value = values[slot];
+        // Shift later entries of the probe sequence back, so no lookup stops early at the hole.
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != MISSING; next = (next + 1) & mask) {
+            final int home = hash(keys[next]) & mask;
+            // The entry can fill the hole unless its home slot lies cyclically in (hole, next].
+            final boolean homeBetween = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!homeBetween) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = MISSING;
+        --size;
+        return value;
+    }
+
+    void clear() {
+        if (keys.length > MIN_CAPACITY) {
+            allocate(MIN_CAPACITY);
+        } else {
+            Arrays.fill(values, MISSING);
+        }
+        size = 0;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldValues[i] != MISSING) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    /**
+     * Mixes the bits of the key, since IDs may differ only in their high bits.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
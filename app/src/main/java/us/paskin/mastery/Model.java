@@ -5,19 +5,25 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
 import android.support.annotation.Nullable;
 import android.text.format.DateUtils;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import us.paskin.mastery.Proto.Skill;
 
@@ -35,12 +41,83 @@ public class Model {
     public static final int MAX_SLOT_DURATION_IN_SECS = (int) TimeUnit.MINUTES.toSeconds(60);
     public static final int DEFAULT_SLOT_DURATION_IN_SECS = (int) TimeUnit.MINUTES.toSeconds(10);
 
+    // How long after practice is recorded before it is written to the practice event log.
+    private static final long FLUSH_DELAY_SECS = 5;
+
+    // How long after practice is recorded before it is compacted into the skill.
+    private static final long COMPACTION_DELAY_SECS = 30;
+
     private SQLiteDatabase db = null;
 
     /**
-     * Maps a group ID to the IDs of its parents.  If there are no parents, the value is null.
+     * Runs background work such as compaction of the practice event log.
+     */
+    private final ScheduledExecutorService backgroundExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * True if compactPracticeEvents has been scheduled to run on the background executor.
+     */
+    private boolean compactionScheduled = false;
+
+    /**
+     * Practice that has been recorded but not yet written to the practice event log, keyed by skill ID.
+     * Practice recorded for a skill before the next flush is coalesced into a single event.
+     * This and flushScheduled are guarded by the monitor of this map rather than by lock, so that
+     * recording practice never waits on the database.
+     */
+    private final HashMap<Long, PendingPractice> pendingPractice = new HashMap<>();
+
+    /**
+     * True if flushPendingPractice has been scheduled to run on the background executor.
+     */
+    private boolean flushScheduled = false;
+
+    private static class PendingPractice {
+        long startDateInSecs;
+        long seconds;
+
+        PendingPractice(long startDateInSecs, long seconds) {
+            this.startDateInSecs = startDateInSecs;
+            this.seconds = seconds;
+        }
+    }
+
+    /**
+     * Guards the database and the in-memory caches.  Any number of readers may hold the read lock at
+     * once, so long scans (e.g., sampling a session) do not block the UI thread's reads.  Writers are
+     * serialized.  A writer may also take the read lock, but a reader must not take the write lock.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The parents of each group, and the transitive closure of that relation.
+     */
+    private final GroupHierarchy groupHierarchy = new GroupHierarchy();
+
+    /**
+     * The most recently published snapshot, or null if none has been requested yet.  Once a snapshot
+     * has been requested, a new one is published each time an outermost write completes.
+     */
+    private volatile ModelSnapshot snapshot = null;
+
+    /**
+     * Incremented each time an outermost write that changed data completes.  This is stored in the
+     * database (see DatabaseContract.DataVersionEntry), so versions are never reused for other data.
+     */
+    private volatile long dataVersion;
+
+    /**
+     * The IDs of the rows changed by the current write, which are re-read into the next snapshot.
+     * These are guarded by the write lock.
+     */
+    private final HashSet<Long> changedSkillIds = new HashSet<>();
+    private final HashSet<Long> changedSkillGroupIds = new HashSet<>();
+    private final HashSet<Long> changedScheduleIds = new HashSet<>();
+
+    /**
+     * True if the next snapshot must be loaded from scratch, e.g., because all data was removed.
      */
-    private HashMap<Long, Set<Long>> parentGroups = new HashMap<>();
+    private boolean reloadSnapshot = false;
 
     private static Model singleton;
 
@@ -67,55 +144,416 @@ public class Model {
      *
      * @param openHelper
      */
-    synchronized void init(DatabaseOpenHelper openHelper) {
-        db = openHelper.getWritableDatabase();
-        initCaches();
+    void init(DatabaseOpenHelper openHelper) {
+        lock.writeLock().lock();
+        try {
+            db = openHelper.getWritableDatabase();
+            // With write-ahead logging, readers use their own connections and see a consistent
+            // snapshot while a writer is active.  On older devices they just wait for the writer.
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                db.enableWriteAheadLogging();
+            }
+            initCaches();
+            // The version written by the last process may be behind its last write, e.g., if it was
+            // killed just after the write, so this process starts with a new version.
+            setDataVersion(readDataVersion() + 1);
+            // Load the snapshot off the UI thread, so that the lists need not wait for it.
+            requestSnapshot(null);
+            // Compact any practice recorded by a previous process.
+            scheduleCompaction();
+        } finally {
+            endWrite();
+        }
     }
 
     /**
      * Initializes in-memory caches from the database.
      */
-    private synchronized void initCaches() {
+    private void initCaches() {
         Cursor cursor = getSkillGroupList();
         Proto.SkillGroup skillGroup;
+        HashMap<Long, List<Long>> parentsById = new HashMap<>();
         for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
             try {
                 skillGroup = Proto.SkillGroup.parseFrom(cursor.getBlob(1));
             } catch (InvalidProtocolBufferException x) {
                 throw new InternalError("cannot parse protocol buffer");
             }
-            if (skillGroup.getParentIdCount() > 0) {
-                parentGroups.put(skillGroup.getId(), new TreeSet<>(skillGroup.getParentIdList()));
-            } else {
-                parentGroups.put(skillGroup.getId(), null);
-            }
+            parentsById.put(skillGroup.getId(), skillGroup.getParentIdList());
         }
         cursor.close();
+        groupHierarchy.load(parentsById);
+        reloadSnapshot = true;
+    }
+
+    /**
+     * Releases the write lock.  If this completes the outermost write, its changes are published.
+     */
+    private void endWrite() {
+        try {
+            if (lock.getWriteHoldCount() == 1) publishChanges();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Publishes the changes made by the write that is completing, by advancing the data version and
+     * (if a snapshot has been requested) replacing the snapshot with a copy reflecting the changes.
+     * The changed rows are re-read from the database, so rolled-back changes are never published.
+     */
+    private void publishChanges() {
+        if (!reloadSnapshot && changedSkillIds.isEmpty() && changedSkillGroupIds.isEmpty()
+                && changedScheduleIds.isEmpty()) {
+            return;
+        }
+        try {
+            setDataVersion(dataVersion + 1);
+            if (snapshot == null) return;
+            if (reloadSnapshot) {
+                snapshot = loadSnapshot();
+                return;
+            }
+            HashMap<Long, Skill> skills = new HashMap<>();
+            for (long id : changedSkillIds) skills.put(id, findSkill(id));
+            HashMap<Long, Proto.SkillGroup> skillGroups = new HashMap<>();
+            for (long id : changedSkillGroupIds) skillGroups.put(id, findSkillGroup(id));
+            HashMap<Long, Proto.Schedule> schedules = new HashMap<>();
+            for (long id : changedScheduleIds) schedules.put(id, findSchedule(id));
+            snapshot = snapshot.withChanges(dataVersion, skills, skillGroups,
+                    skillGroups.isEmpty() ? null : new GroupHierarchy(groupHierarchy), schedules);
+        } finally {
+            changedSkillIds.clear();
+            changedSkillGroupIds.clear();
+            changedScheduleIds.clear();
+            reloadSnapshot = false;
+        }
+    }
+
+    private long readDataVersion() {
+        String[] projection = {DatabaseContract.DataVersionEntry.COLUMN_NAME_VERSION};
+        Cursor c = db.query(DatabaseContract.DataVersionEntry.TABLE_NAME, projection,
+                null, null, null, null, null);
+        final int count = c.getCount();
+        if (count != 1) {
+            c.close();
+            throw new InternalError("Expected one data version, got " + count);
+        }
+        c.moveToFirst();
+        final long version = c.getLong(0);
+        c.close();
+        return version;
+    }
+
+    private void setDataVersion(long version) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseContract.DataVersionEntry.COLUMN_NAME_VERSION, version);
+        db.update(DatabaseContract.DataVersionEntry.TABLE_NAME, values, null, null);
+        dataVersion = version;
+    }
+
+    /**
+     * Returns a snapshot of all skills, skill groups and schedules.  Reading it takes no locks and runs
+     * no queries, so it is suitable for the UI thread and for long scans.  The first call loads all data
+     * into memory, which init starts on the background thread (see requestSnapshot); after that, the
+     * model keeps an up-to-date snapshot.  The UI thread should use peekSnapshot, since this blocks
+     * until the data is loaded.
+     */
+    public ModelSnapshot getSnapshot() {
+        ModelSnapshot result = snapshot;
+        if (result != null) return result;
+        lock.writeLock().lock();
+        try {
+            if (snapshot == null) snapshot = loadSnapshot();
+            return snapshot;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Returns the snapshot if it has been loaded, or null if it has not.  Unlike getSnapshot, this
+     * never reads the database, so the UI thread can call it and show a loading state if it is null.
+     */
+    public
+    @Nullable
+    ModelSnapshot peekSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Loads the snapshot on the background thread, unless it is already loaded, and then runs the
+     * callback, if any, on that thread.
+     */
+    public void requestSnapshot(@Nullable final Runnable callback) {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                getSnapshot();
+                if (callback != null) callback.run();
+            }
+        });
+    }
+
+    /**
+     * Returns the version of the data, which increases with every write that changes it.
+     */
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    /**
+     * Reads all data from the database into a new snapshot.
+     */
+    private ModelSnapshot loadSnapshot() {
+        try {
+            HashMap<Long, Skill> skills = new HashMap<>();
+            Cursor cursor = getSkillList();
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                skills.put(cursor.getLong(0), Skill.parseFrom(cursor.getBlob(1)));
+            }
+            cursor.close();
+            // Fold in the practice that has been logged but not yet compacted.
+            String[] projection = {
+                    DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID,
+                    DatabaseContract.PracticeEventEntry.COLUMN_NAME_START_TS,
+                    DatabaseContract.PracticeEventEntry.COLUMN_NAME_SECONDS};
+            String selection = DatabaseContract.PracticeEventEntry.COLUMN_NAME_COMPACTED + " = 0";
+            String sortOrder = DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID + ", " +
+                    DatabaseContract.PracticeEventEntry.COLUMN_NAME_START_TS + " ASC";
+            cursor = db.query(DatabaseContract.PracticeEventEntry.TABLE_NAME, projection, selection,
+                    null, null, null, sortOrder);
+            cursor.moveToFirst();
+            while (!cursor.isAfterLast()) {
+                final long skillId = cursor.getLong(0);
+                // Events of a skill that no longer exists are skipped; compaction deletes them.
+                Skill skill = skills.get(skillId);
+                Skill.Builder skillBuilder = skill == null ? null : skill.toBuilder();
+                do {
+                    if (skillBuilder != null) {
+                        applyPractice(skillBuilder, cursor.getLong(1), cursor.getLong(2));
+                    }
+                } while (cursor.moveToNext() && cursor.getLong(0) == skillId);
+                if (skillBuilder != null) skills.put(skillId, skillBuilder.build());
+            }
+            cursor.close();
+            HashMap<Long, Proto.SkillGroup> skillGroups = new HashMap<>();
+            cursor = getSkillGroupList();
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                skillGroups.put(cursor.getLong(0), Proto.SkillGroup.parseFrom(cursor.getBlob(1)));
+            }
+            cursor.close();
+            HashMap<Long, Proto.Schedule> schedules = new HashMap<>();
+            cursor = getScheduleList();
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                schedules.put(cursor.getLong(0), Proto.Schedule.parseFrom(cursor.getBlob(1)));
+            }
+            cursor.close();
+            return new ModelSnapshot(dataVersion, skills, skillGroups, new GroupHierarchy(groupHierarchy),
+                    schedules);
+        } catch (InvalidProtocolBufferException x) {
+            throw new InternalError("cannot parse protocol buffer");
+        }
     }
 
-    synchronized boolean isValidSkillGroupId(long id) {
-        return parentGroups.containsKey(id);
+    boolean isValidSkillGroupId(long id) {
+        lock.readLock().lock();
+        try {
+            return groupHierarchy.contains(id);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // Returns a cursor with two columns: SkillEntry._ID and SkillEntry.COLUMN_NAME_PROTO.
-    public synchronized Cursor getSkillList() {
+    public Cursor getSkillList() {
+        lock.readLock().lock();
+        try {
+            String[] projection = {
+                    DatabaseContract.SkillEntry._ID,
+                    DatabaseContract.SkillEntry.COLUMN_NAME_PROTO};
+            String sortOrder =
+                    DatabaseContract.SkillEntry.COLUMN_NAME_NAME + " ASC";
+            return db.query(
+                    DatabaseContract.SkillEntry.TABLE_NAME,   // The table to query
+                    projection,                               // The columns to return
+                    null,                                     // The columns for the WHERE clause
+                    null,                                     // The values for the WHERE clause
+                    null,                                     // don't group the rows
+                    null,                                     // don't filter by row groups
+                    sortOrder
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns a cursor with four columns: SkillEntry._ID, SkillEntry.COLUMN_NAME_PRIORITY,
+    // SkillEntry.COLUMN_NAME_EST_SECONDS_PRACTICED_100_DAYS and SkillGroupMembershipEntry.COLUMN_NAME_GROUP_ID.
+    // There is one row for each group a skill is directly in (or a single row with a null group ID if
+    // it is in no groups), and the rows of each skill are adjacent.  This is used for sampling, which
+    // can then run without parsing any protos.
+    public Cursor getSkillSamplingList() {
+        lock.readLock().lock();
+        try {
+            return db.rawQuery("SELECT s." + DatabaseContract.SkillEntry._ID +
+                    ", s." + DatabaseContract.SkillEntry.COLUMN_NAME_PRIORITY +
+                    ", s." + DatabaseContract.SkillEntry.COLUMN_NAME_EST_SECONDS_PRACTICED_100_DAYS +
+                    ", m." + DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_GROUP_ID +
+                    " FROM " + DatabaseContract.SkillEntry.TABLE_NAME + " s" +
+                    " LEFT JOIN " + DatabaseContract.SkillGroupMembershipEntry.TABLE_NAME + " m" +
+                    " ON s." + DatabaseContract.SkillEntry._ID +
+                    " = m." + DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_SKILL_ID +
+                    " ORDER BY s." + DatabaseContract.SkillEntry._ID, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns a cursor with three columns: SkillEntry._ID, SkillEntry.COLUMN_NAME_NEXT_DUE and
+    // SkillEntry.COLUMN_NAME_PRIORITY, over the supplied number of skills starting at offset in order
+    // of due date and then decreasing priority.  Skills that were never practiced have a null due date
+    // and come first.  The order is read from an index, so this takes time logarithmic in the number
+    // of skills, plus linear in offset + limit.  Practice that is still buffered in memory is not
+    // reflected in the order.
+    public Cursor getSkillsByDueDate(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            String[] projection = {
+                    DatabaseContract.SkillEntry._ID,
+                    DatabaseContract.SkillEntry.COLUMN_NAME_NEXT_DUE,
+                    DatabaseContract.SkillEntry.COLUMN_NAME_PRIORITY};
+            String sortOrder = DatabaseContract.SkillEntry.COLUMN_NAME_NEXT_DUE + " ASC, " +
+                    DatabaseContract.SkillEntry.COLUMN_NAME_PRIORITY + " DESC";
+            return db.query(DatabaseContract.SkillEntry.TABLE_NAME, projection, null, null, null, null,
+                    sortOrder, offset + "," + limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns a cursor over the skills directly in any of the supplied groups, with the same columns
+    // and order as getSkillsByDueDate above.  Each skill appears once, however many of the groups it
+    // is in.  This is for reading the skills of one slot's group and its descendants in due order, so
+    // that a small group need not be found among the whole library.
+    public Cursor getSkillsByDueDate(long[] groupIds, int offset, int limit) {
+        StringBuilder groupList = new StringBuilder();
+        for (long groupId : groupIds) {
+            if (groupList.length() > 0) groupList.append(",");
+            groupList.append(groupId);
+        }
+        lock.readLock().lock();
+        try {
+            return db.rawQuery("SELECT DISTINCT s." + DatabaseContract.SkillEntry._ID +
+                    ", s." + DatabaseContract.SkillEntry.COLUMN_NAME_NEXT_DUE +
+                    ", s." + DatabaseContract.SkillEntry.COLUMN_NAME_PRIORITY +
+                    " FROM " + DatabaseContract.SkillEntry.TABLE_NAME + " s" +
+                    " JOIN " + DatabaseContract.SkillGroupMembershipEntry.TABLE_NAME + " m" +
+                    " ON s." + DatabaseContract.SkillEntry._ID +
+                    " = m." + DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_SKILL_ID +
+                    " WHERE m." + DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_GROUP_ID +
+                    " IN (" + groupList + ")" +
+                    " ORDER BY s." + DatabaseContract.SkillEntry.COLUMN_NAME_NEXT_DUE + " ASC" +
+                    ", s." + DatabaseContract.SkillEntry.COLUMN_NAME_PRIORITY + " DESC" +
+                    " LIMIT " + offset + "," + limit, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the skills directly in the supplied group.
+     */
+    public long[] getSkillIdsInGroup(long groupId) {
+        lock.readLock().lock();
+        try {
+            String[] projection = {DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_SKILL_ID};
+            String selection = DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_GROUP_ID + " = " + groupId;
+            Cursor c = db.query(
+                    DatabaseContract.SkillGroupMembershipEntry.TABLE_NAME,  // The table to query
+                    projection,                               // The columns to return
+                    selection,                                // The columns for the WHERE clause
+                    null,                                     // The values for the WHERE clause
+                    null,                                     // don't group the rows
+                    null,                                     // don't filter by row groups
+                    null                                      // The sort order
+            );
+            long[] skillIds = new long[c.getCount()];
+            int i = 0;
+            for (c.moveToFirst(); !c.isAfterLast(); c.moveToNext()) {
+                skillIds[i++] = c.getLong(0);
+            }
+            c.close();
+            return skillIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the skill, including any practice that has not yet been compacted into it.
+     */
+    public Skill getSkillById(long id) {
+        lock.readLock().lock();
+        try {
+            Skill skill = findSkill(id);
+            if (skill == null) {
+                throw new InternalError("Expected one row, got 0");
+            }
+            PendingPractice pending = getPendingPractice(id);
+            if (pending == null) return skill;
+            Skill.Builder skillBuilder = skill.toBuilder();
+            applyPractice(skillBuilder, pending.startDateInSecs, pending.seconds);
+            return skillBuilder.build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the skill, including the practice in the practice event log but not buffered practice,
+     * or null if there is no such skill.
+     */
+    private
+    @Nullable
+    Skill findSkill(long id) {
+        Skill skill = findStoredSkill(id);
+        if (skill == null) return null;
+        Skill.Builder skillBuilder = skill.toBuilder();
+        if (applyPracticeEvents(id, skillBuilder) == -1) return skill;
+        return skillBuilder.build();
+    }
+
+    /**
+     * Applies the skill's uncompacted practice events to the skill in chronological order, and returns
+     * the largest ID among them, or -1 if there are none.
+     */
+    private long applyPracticeEvents(long skillId, Skill.Builder skillBuilder) {
         String[] projection = {
-                DatabaseContract.SkillEntry._ID,
-                DatabaseContract.SkillEntry.COLUMN_NAME_PROTO};
-        String sortOrder =
-                DatabaseContract.SkillEntry.COLUMN_NAME_NAME + " ASC";
-        return db.query(
-                DatabaseContract.SkillEntry.TABLE_NAME,   // The table to query
-                projection,                               // The columns to return
-                null,                                     // The columns for the WHERE clause
-                null,                                     // The values for the WHERE clause
-                null,                                     // don't group the rows
-                null,                                     // don't filter by row groups
-                sortOrder
-        );
+                DatabaseContract.PracticeEventEntry._ID,
+                DatabaseContract.PracticeEventEntry.COLUMN_NAME_START_TS,
+                DatabaseContract.PracticeEventEntry.COLUMN_NAME_SECONDS};
+        String selection = DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID + " = " + skillId +
+                " AND " + DatabaseContract.PracticeEventEntry.COLUMN_NAME_COMPACTED + " = 0";
+        String sortOrder = DatabaseContract.PracticeEventEntry.COLUMN_NAME_START_TS + " ASC";
+        Cursor c = db.query(DatabaseContract.PracticeEventEntry.TABLE_NAME, projection, selection,
+                null, null, null, sortOrder);
+        long lastEventId = -1;
+        for (c.moveToFirst(); !c.isAfterLast(); c.moveToNext()) {
+            lastEventId = Math.max(lastEventId, c.getLong(0));
+            applyPractice(skillBuilder, c.getLong(1), c.getLong(2));
+        }
+        c.close();
+        return lastEventId;
     }
 
-    public synchronized Skill getSkillById(long id) {
+    /**
+     * Returns the skill as stored in the skills table, without any uncompacted practice, or null if
+     * there is no such skill.
+     */
+    private
+    @Nullable
+    Skill findStoredSkill(long id) {
         String[] projection = {DatabaseContract.SkillEntry.COLUMN_NAME_PROTO};
         String selection = DatabaseContract.SkillEntry._ID + " = " + id;
         Cursor c = db.query(
@@ -127,6 +565,10 @@ public class Model {
                 null,                                     // don't filter by row groups
                 null                                      // The sort order
         );
+        if (c.getCount() == 0) {
+            c.close();
+            return null;
+        }
         if (c.getCount() != 1) {
             throw new InternalError("Expected one row, got " + c.getCount());
         }
@@ -143,7 +585,7 @@ public class Model {
         }
     }
 
-    private synchronized void validateSkill(Proto.Skill skill) {
+    private void validateSkill(Proto.Skill skill) {
         if (!skill.hasName() || skill.getName().isEmpty()) {
             throw new IllegalArgumentException("Skill missing name");
         }
@@ -161,86 +603,387 @@ public class Model {
         if (skill.hasDateLastPracticed() && skill.getDateLastPracticed() < 0) {
             throw new IllegalArgumentException("date last practiced is negative");
         }
+        if (skill.getEasePermille() < SpacedRepetition.MIN_EASE_PERMILLE) {
+            throw new IllegalArgumentException("ease factor below minimum: " + skill.getEasePermille());
+        }
     }
 
     /**
      * Returns true if there is a skill with the supplied name in the database.
      * No two skills are permitted to have the same name.
      */
-    public synchronized boolean hasSkillWithName(String name) {
-        String[] projection = {DatabaseContract.SkillEntry._ID};
-        String selection = DatabaseContract.SkillEntry.COLUMN_NAME_NAME + " = ?";
-        String selectionArgs[] = {name};
-        Cursor c = db.query(
-                DatabaseContract.SkillEntry.TABLE_NAME,  // The table to query
-                projection,                               // The columns to return
-                selection,                                // The columns for the WHERE clause
-                selectionArgs,                            // The values for the WHERE clause
-                null,                                     // don't group the rows
-                null,                                     // don't filter by row groups
-                null                                      // The sort order
-        );
-        int count = c.getCount();
-        c.close();
-        return count > 0;
+    public boolean hasSkillWithName(String name) {
+        lock.readLock().lock();
+        try {
+            String[] projection = {DatabaseContract.SkillEntry._ID};
+            String selection = DatabaseContract.SkillEntry.COLUMN_NAME_NAME + " = ?";
+            String selectionArgs[] = {name};
+            Cursor c = db.query(
+                    DatabaseContract.SkillEntry.TABLE_NAME,  // The table to query
+                    projection,                               // The columns to return
+                    selection,                                // The columns for the WHERE clause
+                    selectionArgs,                            // The values for the WHERE clause
+                    null,                                     // don't group the rows
+                    null,                                     // don't filter by row groups
+                    null                                      // The sort order
+            );
+            int count = c.getCount();
+            c.close();
+            return count > 0;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // The ID of the skill is returned.
-    public synchronized long addSkill(Skill skill) {
-        validateSkill(skill);
-        ContentValues values = new ContentValues();
-        values.put(DatabaseContract.SkillEntry.COLUMN_NAME_NAME, skill.getName());
-        values.put(DatabaseContract.SkillEntry.COLUMN_NAME_PROTO, skill.toByteArray());
-        return db.insert(DatabaseContract.SkillEntry.TABLE_NAME, null, values);
+    public long addSkill(Skill skill) {
+        lock.writeLock().lock();
+        try {
+            validateSkill(skill);
+            ContentValues values = new ContentValues();
+            values.put(DatabaseContract.SkillEntry.COLUMN_NAME_NAME, skill.getName());
+            values.put(DatabaseContract.SkillEntry.COLUMN_NAME_PROTO, skill.toByteArray());
+            DatabaseOpenHelper.putSkillColumns(skill, values);
+            db.beginTransaction();
+            try {
+                final long id = db.insert(DatabaseContract.SkillEntry.TABLE_NAME, null, values);
+                if (id != -1) {
+                    DatabaseOpenHelper.insertSkillGroupMembership(db, id, skill);
+                    changedSkillIds.add(id);
+                }
+                db.setTransactionSuccessful();
+                return id;
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            endWrite();
+        }
     }
 
     /**
-     * Updates a skill in the database.
+     * Updates a skill in the database.  Only the fields that describe the skill are taken from the
+     * supplied skill: the fields that reflect practice (e.g., seconds_practiced and next_due) keep
+     * their stored values, and practice that has not yet been folded into them, whether buffered or
+     * in the practice event log, is left to be folded in later.  So practice that is recorded while
+     * the skill is being edited is never lost or counted twice.
      *
      * @param id    the ID of the skill to update.  Throws IllegalArgumentException if this is invalid.
      * @param skill the new skill data.
      */
-    public synchronized void updateSkill(long id, Skill skill) throws IllegalArgumentException {
-        validateSkill(skill);
+    public void updateSkill(long id, Skill skill) throws IllegalArgumentException {
+        lock.writeLock().lock();
+        try {
+            validateSkill(skill);
+            Skill stored = findStoredSkill(id);
+            if (stored == null) throw new IllegalArgumentException("invalid id: " + id);
+            db.beginTransaction();
+            try {
+                writeSkill(id, withPracticeOf(skill, stored));
+                // The next-due column also reflects the practice event log (see flushPendingPractice).
+                updateNextDueColumn(id);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Returns the skill with its practice fields replaced by those of source.
+     */
+    static Skill withPracticeOf(Skill skill, Skill source) {
+        Skill.Builder skillBuilder = skill.toBuilder()
+                .clearDateLastPracticed()
+                .clearSecondsPracticed()
+                .clearEstSecondsPracticed100Days()
+                .clearIntervalSecs()
+                .clearEasePermille()
+                .clearNextDue();
+        if (source.hasDateLastPracticed()) skillBuilder.setDateLastPracticed(source.getDateLastPracticed());
+        if (source.hasSecondsPracticed()) skillBuilder.setSecondsPracticed(source.getSecondsPracticed());
+        if (source.hasEstSecondsPracticed100Days()) {
+            skillBuilder.setEstSecondsPracticed100Days(source.getEstSecondsPracticed100Days());
+        }
+        if (source.hasIntervalSecs()) skillBuilder.setIntervalSecs(source.getIntervalSecs());
+        if (source.hasEasePermille()) skillBuilder.setEasePermille(source.getEasePermille());
+        if (source.hasNextDue()) skillBuilder.setNextDue(source.getNextDue());
+        return skillBuilder.build();
+    }
+
+    /**
+     * Writes the skill's row and group memberships.  This must be called in a transaction, with the
+     * write lock held.
+     */
+    private void writeSkill(long id, Skill skill) {
+        changedSkillIds.add(id);
         ContentValues values = new ContentValues();
         values.put(DatabaseContract.SkillEntry.COLUMN_NAME_NAME, skill.getName());
         values.put(DatabaseContract.SkillEntry.COLUMN_NAME_PROTO, skill.toByteArray());
+        DatabaseOpenHelper.putSkillColumns(skill, values);
         String selection = DatabaseContract.SkillEntry._ID + " = " + id;
-        final int numUpdated = db.update(DatabaseContract.SkillEntry.TABLE_NAME,
-                values, selection, null);
+        final int numUpdated = db.update(DatabaseContract.SkillEntry.TABLE_NAME, values, selection, null);
         switch (numUpdated) {
             case 1:
-                return;
+                break;
             case 0:
                 throw new IllegalArgumentException("invalid id: " + id);
             default:
                 throw new InternalError("id has multiple records");
         }
+        deleteSkillGroupMembership(id);
+        DatabaseOpenHelper.insertSkillGroupMembership(db, id, skill);
     }
 
     /**
-     * Updates the model to reflect that the skill has been practiced for an additional amount of time.
-     * Returns a builder reflecting the skill's post-update state.
+     * Removes the rows recording which groups the skill is in.
      */
-    public synchronized Skill.Builder addPracticeSecondsToSkill(int seconds, long skillId) {
-        Skill.Builder skillBuilder = getSkillById(skillId).toBuilder();
+    private void deleteSkillGroupMembership(long skillId) {
+        db.delete(DatabaseContract.SkillGroupMembershipEntry.TABLE_NAME,
+                DatabaseContract.SkillGroupMembershipEntry.COLUMN_NAME_SKILL_ID + " = " + skillId, null);
+    }
+
+    /**
+     * Updates the model to reflect that the skill has been practiced for an additional amount of time,
+     * ending now.  This does not touch the database: the practice is buffered in memory and written to
+     * the practice event log in a batch on the background thread.  getSkillById reflects it immediately.
+     * The practice also counts as a review of the skill for spaced repetition (see SpacedRepetition),
+     * which updates the skill's next-due time.
+     */
+    public void addPracticeSecondsToSkill(int seconds, long skillId) {
         final long curDateInSecs = TimeUnit.MILLISECONDS.toSeconds(new Date().getTime());
-        skillBuilder.setSecondsPracticed(skillBuilder.getSecondsPracticed() + seconds)
-                .setDateLastPracticed(curDateInSecs);
+        synchronized (pendingPractice) {
+            PendingPractice pending = pendingPractice.get(skillId);
+            if (pending == null) {
+                pendingPractice.put(skillId, new PendingPractice(curDateInSecs - seconds, seconds));
+            } else {
+                pending.seconds += seconds;
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                backgroundExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushPendingPractice();
+                    }
+                }, FLUSH_DELAY_SECS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the buffered practice for the skill, or null if there is none.
+     */
+    private PendingPractice getPendingPractice(long skillId) {
+        synchronized (pendingPractice) {
+            PendingPractice pending = pendingPractice.get(skillId);
+            return pending == null ? null : new PendingPractice(pending.startDateInSecs, pending.seconds);
+        }
+    }
+
+    /**
+     * Returns true if there is practice that is buffered in memory, and so is not yet reflected in the
+     * snapshot.
+     */
+    public boolean hasPendingPractice() {
+        synchronized (pendingPractice) {
+            return !pendingPractice.isEmpty();
+        }
+    }
+
+    /**
+     * Writes buffered practice to the practice event log on the background thread as soon as possible.
+     * This should be called when the app may be about to be stopped, e.g., from onStop.
+     */
+    public void requestFlush() {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushPendingPractice();
+            }
+        });
+    }
+
+    /**
+     * Writes all buffered practice to the practice event log in a single transaction.
+     */
+    public void flushPendingPractice() {
+        lock.writeLock().lock();
+        try {
+            // Readers are excluded until the practice is in the log, so they never miss it.
+            HashMap<Long, PendingPractice> toFlush;
+            synchronized (pendingPractice) {
+                flushScheduled = false;
+                if (pendingPractice.isEmpty()) return;
+                toFlush = new HashMap<>(pendingPractice);
+                pendingPractice.clear();
+            }
+            db.beginTransaction();
+            try {
+                for (Map.Entry<Long, PendingPractice> entry : toFlush.entrySet()) {
+                    // The skill may have been deleted while its practice was buffered, e.g., by a
+                    // session timer that kept running.  Its practice is dropped with it.
+                    if (findStoredSkill(entry.getKey()) == null) continue;
+                    changedSkillIds.add(entry.getKey());
+                    insertPracticeEvent(entry.getKey(), entry.getValue(), false);
+                    updateNextDueColumn(entry.getKey());
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            scheduleCompaction();
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Sets the skill's next-due column from the skill and its uncompacted practice, so that it need
+     * not wait for compaction.
+     */
+    private void updateNextDueColumn(long skillId) {
+        Skill skill = findSkill(skillId);
+        if (skill == null) return;
+        ContentValues values = new ContentValues();
+        DatabaseOpenHelper.putNextDueColumn(skill, values);
+        db.update(DatabaseContract.SkillEntry.TABLE_NAME, values,
+                DatabaseContract.SkillEntry._ID + " = " + skillId, null);
+    }
+
+    private void insertPracticeEvent(long skillId, PendingPractice practice, boolean compacted) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID, skillId);
+        values.put(DatabaseContract.PracticeEventEntry.COLUMN_NAME_START_TS, practice.startDateInSecs);
+        values.put(DatabaseContract.PracticeEventEntry.COLUMN_NAME_SECONDS, practice.seconds);
+        values.put(DatabaseContract.PracticeEventEntry.COLUMN_NAME_COMPACTED, compacted ? 1 : 0);
+        db.insert(DatabaseContract.PracticeEventEntry.TABLE_NAME, null, values);
+    }
+
+    /**
+     * Updates the skill to reflect a practice of the supplied duration, starting at startDateInSecs.
+     */
+    static void applyPractice(Skill.Builder skillBuilder, long startDateInSecs, long seconds) {
+        final long practiceDateInSecs = startDateInSecs + seconds;
         // Update est_seconds_practiced_100_days.  If it's been less than 100 days since the last
         // practice, then we assume the practice time was distributed uniformly across the 100 day
         // period leading up to the last practice.
         if (skillBuilder.hasDateLastPracticed()) {
             final long prevEst = skillBuilder.getEstSecondsPracticed100Days();
             final long secsIn100Days = TimeUnit.DAYS.toSeconds(100);
-            final long secsSinceLastPractice = curDateInSecs - skillBuilder.getDateLastPracticed();
-            final double forgetFrac = Math.max(1.0, (double) secsSinceLastPractice / (double) secsIn100Days);
+            final long secsSinceLastPractice =
+                    Math.max(0, practiceDateInSecs - skillBuilder.getDateLastPracticed());
+            final double forgetFrac = Math.min(1.0, (double) secsSinceLastPractice / (double) secsIn100Days);
             skillBuilder.setEstSecondsPracticed100Days(seconds + (long) ((1.0 - forgetFrac) * prevEst));
         } else {
             skillBuilder.setEstSecondsPracticed100Days(seconds);
         }
-        updateSkill(skillId, skillBuilder.build());
-        return skillBuilder;
+        skillBuilder.setSecondsPracticed(skillBuilder.getSecondsPracticed() + seconds)
+                .setDateLastPracticed(Math.max(skillBuilder.getDateLastPracticed(), practiceDateInSecs));
+        SpacedRepetition.applyReview(skillBuilder, practiceDateInSecs);
+    }
+
+    /**
+     * Marks the skill's practice events up to and including the one with the supplied ID as folded
+     * into the stored skill.
+     */
+    private void markPracticeEventsCompacted(long skillId, long lastEventId) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseContract.PracticeEventEntry.COLUMN_NAME_COMPACTED, 1);
+        db.update(DatabaseContract.PracticeEventEntry.TABLE_NAME, values,
+                DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID + " = " + skillId +
+                        " AND " + DatabaseContract.PracticeEventEntry._ID + " <= " + lastEventId +
+                        " AND " + DatabaseContract.PracticeEventEntry.COLUMN_NAME_COMPACTED + " = 0", null);
+    }
+
+    /**
+     * Removes all of the skill's practice events.
+     */
+    private void deletePracticeEvents(long skillId) {
+        db.delete(DatabaseContract.PracticeEventEntry.TABLE_NAME,
+                DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID + " = " + skillId, null);
+    }
+
+    /**
+     * Arranges for compactPracticeEvents to be run on the background thread, unless it already is.
+     */
+    private void scheduleCompaction() {
+        if (compactionScheduled) return;
+        compactionScheduled = true;
+        backgroundExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                compactPracticeEvents();
+            }
+        }, COMPACTION_DELAY_SECS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Folds all uncompacted practice events into their skills, so that the stored skills (and their
+     * denormalized columns) reflect all practice.  This is done in a single transaction.
+     */
+    public void compactPracticeEvents() {
+        lock.writeLock().lock();
+        try {
+            compactionScheduled = false;
+            flushPendingPractice();
+            String[] projection = {DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID};
+            String selection = DatabaseContract.PracticeEventEntry.COLUMN_NAME_COMPACTED + " = 0";
+            Cursor c = db.query(true, DatabaseContract.PracticeEventEntry.TABLE_NAME, projection, selection,
+                    null, null, null, null, null);
+            long[] skillIds = new long[c.getCount()];
+            int i = 0;
+            for (c.moveToFirst(); !c.isAfterLast(); c.moveToNext()) {
+                skillIds[i++] = c.getLong(0);
+            }
+            c.close();
+            if (skillIds.length == 0) return;
+            db.beginTransaction();
+            try {
+                for (long skillId : skillIds) {
+                    Skill skill = findStoredSkill(skillId);
+                    if (skill == null) {
+                        // Events logged for a skill that no longer exists can never be folded in.
+                        deletePracticeEvents(skillId);
+                        continue;
+                    }
+                    // Only the events that are folded in are marked, and buffered practice is left
+                    // to be flushed as new events.
+                    Skill.Builder skillBuilder = skill.toBuilder();
+                    final long lastEventId = applyPracticeEvents(skillId, skillBuilder);
+                    if (lastEventId == -1) continue;
+                    writeSkill(skillId, skillBuilder.build());
+                    markPracticeEventsCompacted(skillId, lastEventId);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Returns a cursor with two columns, PracticeEventEntry.COLUMN_NAME_START_TS and
+     * PracticeEventEntry.COLUMN_NAME_SECONDS, over all the practice of the skill that has been
+     * recorded, in chronological order.
+     */
+    public Cursor getPracticeEvents(long skillId) {
+        lock.readLock().lock();
+        try {
+            String[] projection = {
+                    DatabaseContract.PracticeEventEntry.COLUMN_NAME_START_TS,
+                    DatabaseContract.PracticeEventEntry.COLUMN_NAME_SECONDS};
+            String selection = DatabaseContract.PracticeEventEntry.COLUMN_NAME_SKILL_ID + " = " + skillId;
+            String sortOrder = DatabaseContract.PracticeEventEntry.COLUMN_NAME_START_TS + " ASC";
+            return db.query(DatabaseContract.PracticeEventEntry.TABLE_NAME, projection, selection,
+                    null, null, null, sortOrder);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -248,16 +991,33 @@ public class Model {
      *
      * @param id the ID of the skill to delete.  Throws IllegalArgumentException if this is invalid.
      */
-    public synchronized void deleteSkill(long id) throws IllegalArgumentException {
-        String selection = DatabaseContract.SkillEntry._ID + " = " + id;
-        final int numDeleted = db.delete(DatabaseContract.SkillEntry.TABLE_NAME, selection, null);
-        switch (numDeleted) {
-            case 1:
-                return;
-            case 0:
-                throw new IllegalArgumentException("invalid id: " + id);
-            default:
-                throw new InternalError("id had multiple records");
+    public void deleteSkill(long id) throws IllegalArgumentException {
+        lock.writeLock().lock();
+        try {
+            changedSkillIds.add(id);
+            String selection = DatabaseContract.SkillEntry._ID + " = " + id;
+            db.beginTransaction();
+            try {
+                final int numDeleted = db.delete(DatabaseContract.SkillEntry.TABLE_NAME, selection, null);
+                switch (numDeleted) {
+                    case 1:
+                        break;
+                    case 0:
+                        throw new IllegalArgumentException("invalid id: " + id);
+                    default:
+                        throw new InternalError("id had multiple records");
+                }
+                deleteSkillGroupMembership(id);
+                synchronized (pendingPractice) {
+                    pendingPractice.remove(id);
+                }
+                deletePracticeEvents(id);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            endWrite();
         }
     }
 
@@ -308,24 +1068,47 @@ public class Model {
     }
 
     // Returns a cursor with two columns: SkillGroupEntry._ID and SkillGroupEntry.COLUMN_NAME_PROTO.
-    public synchronized Cursor getSkillGroupList() {
-        String[] projection = {
-                DatabaseContract.SkillGroupEntry._ID,
-                DatabaseContract.SkillGroupEntry.COLUMN_NAME_PROTO};
-        String sortOrder =
-                DatabaseContract.SkillGroupEntry.COLUMN_NAME_NAME + " ASC";
-        return db.query(
-                DatabaseContract.SkillGroupEntry.TABLE_NAME,   // The table to query
-                projection,                               // The columns to return
-                null,                                     // The columns for the WHERE clause
-                null,                                     // The values for the WHERE clause
-                null,                                     // don't group the rows
-                null,                                     // don't filter by row groups
-                sortOrder
-        );
+    public Cursor getSkillGroupList() {
+        lock.readLock().lock();
+        try {
+            String[] projection = {
+                    DatabaseContract.SkillGroupEntry._ID,
+                    DatabaseContract.SkillGroupEntry.COLUMN_NAME_PROTO};
+            String sortOrder =
+                    DatabaseContract.SkillGroupEntry.COLUMN_NAME_NAME + " ASC";
+            return db.query(
+                    DatabaseContract.SkillGroupEntry.TABLE_NAME,   // The table to query
+                    projection,                               // The columns to return
+                    null,                                     // The columns for the WHERE clause
+                    null,                                     // The values for the WHERE clause
+                    null,                                     // don't group the rows
+                    null,                                     // don't filter by row groups
+                    sortOrder
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Proto.SkillGroup getSkillGroupById(long id) {
+        lock.readLock().lock();
+        try {
+            Proto.SkillGroup skillGroup = findSkillGroup(id);
+            if (skillGroup == null) {
+                throw new InternalError("Expected one row, got 0");
+            }
+            return skillGroup;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    public synchronized Proto.SkillGroup getSkillGroupById(long id) {
+    /**
+     * Returns the skill group with the supplied ID, or null if there is none.
+     */
+    private
+    @Nullable
+    Proto.SkillGroup findSkillGroup(long id) {
         String[] projection = {DatabaseContract.SkillGroupEntry.COLUMN_NAME_PROTO};
         String selection = DatabaseContract.SkillGroupEntry._ID + " = " + id;
         Cursor c = db.query(
@@ -337,6 +1120,10 @@ public class Model {
                 null,                                     // don't filter by row groups
                 null                                      // The sort order
         );
+        if (c.getCount() == 0) {
+            c.close();
+            return null;
+        }
         if (c.getCount() != 1) {
             throw new InternalError("Expected one row, got " + c.getCount());
         }
@@ -353,7 +1140,7 @@ public class Model {
         }
     }
 
-    private synchronized void validateSkillGroup(Proto.SkillGroup skillGroup) {
+    private void validateSkillGroup(Proto.SkillGroup skillGroup) {
         if (!skillGroup.hasId()) {
             throw new IllegalArgumentException("Skill group missing ID");
         }
@@ -365,48 +1152,59 @@ public class Model {
                 throw new IllegalArgumentException("Skill group has invalid parent");
             }
         }
+        if (groupHierarchy.wouldCreateCycle(skillGroup.getId(), skillGroup.getParentIdList())) {
+            throw new IllegalArgumentException("Skill group would be its own ancestor");
+        }
     }
 
-    private synchronized void updateSkillGroupParents(Proto.SkillGroup skillGroup) {
-        if (skillGroup.getParentIdCount() > 0)
-            parentGroups.put(skillGroup.getId(), new TreeSet<>(skillGroup.getParentIdList()));
-        else
-            parentGroups.put(skillGroup.getId(), null);
+    private void updateSkillGroupParents(Proto.SkillGroup skillGroup) {
+        groupHierarchy.setParents(skillGroup.getId(), skillGroup.getParentIdList());
     }
 
     /**
      * Returns true if there is a skill group with the supplied name in the database.
      * No two skill groups are permitted to have the same name.
      */
-    public synchronized boolean hasSkillGroupWithName(String name) {
-        String[] projection = {DatabaseContract.SkillGroupEntry._ID};
-        String selection = DatabaseContract.SkillGroupEntry.COLUMN_NAME_NAME + " = ?";
-        String selectionArgs[] = {name};
-        Cursor c = db.query(
-                DatabaseContract.SkillGroupEntry.TABLE_NAME,  // The table to query
-                projection,                               // The columns to return
-                selection,                                // The columns for the WHERE clause
-                selectionArgs,                            // The values for the WHERE clause
-                null,                                     // don't group the rows
-                null,                                     // don't filter by row groups
-                null                                      // The sort order
-        );
-        int count = c.getCount();
-        c.close();
-        return count > 0;
+    public boolean hasSkillGroupWithName(String name) {
+        lock.readLock().lock();
+        try {
+            String[] projection = {DatabaseContract.SkillGroupEntry._ID};
+            String selection = DatabaseContract.SkillGroupEntry.COLUMN_NAME_NAME + " = ?";
+            String selectionArgs[] = {name};
+            Cursor c = db.query(
+                    DatabaseContract.SkillGroupEntry.TABLE_NAME,  // The table to query
+                    projection,                               // The columns to return
+                    selection,                                // The columns for the WHERE clause
+                    selectionArgs,                            // The values for the WHERE clause
+                    null,                                     // don't group the rows
+                    null,                                     // don't filter by row groups
+                    null                                      // The sort order
+            );
+            int count = c.getCount();
+            c.close();
+            return count > 0;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    public synchronized void addSkillGroup(Proto.SkillGroup skillGroup) {
-        validateSkillGroup(skillGroup);
-        ContentValues values = new ContentValues();
-        values.put(DatabaseContract.SkillGroupEntry._ID, skillGroup.getId());
-        values.put(DatabaseContract.SkillGroupEntry.COLUMN_NAME_NAME, skillGroup.getName());
-        values.put(DatabaseContract.SkillGroupEntry.COLUMN_NAME_PROTO, skillGroup.toByteArray());
-        final long id = db.insert(DatabaseContract.SkillGroupEntry.TABLE_NAME, null, values);
-        if (id != skillGroup.getId()) {
-            throw new InternalError("ID mismatch");
+    public void addSkillGroup(Proto.SkillGroup skillGroup) {
+        lock.writeLock().lock();
+        try {
+            validateSkillGroup(skillGroup);
+            changedSkillGroupIds.add(skillGroup.getId());
+            ContentValues values = new ContentValues();
+            values.put(DatabaseContract.SkillGroupEntry._ID, skillGroup.getId());
+            values.put(DatabaseContract.SkillGroupEntry.COLUMN_NAME_NAME, skillGroup.getName());
+            values.put(DatabaseContract.SkillGroupEntry.COLUMN_NAME_PROTO, skillGroup.toByteArray());
+            final long id = db.insert(DatabaseContract.SkillGroupEntry.TABLE_NAME, null, values);
+            if (id != skillGroup.getId()) {
+                throw new InternalError("ID mismatch");
+            }
+            updateSkillGroupParents(skillGroup);
+        } finally {
+            endWrite();
         }
-        updateSkillGroupParents(skillGroup);
     }
 
 
@@ -415,22 +1213,28 @@ public class Model {
      *
      * @param skillGroup the new skill data.
      */
-    public synchronized void updateSkillGroup(Proto.SkillGroup skillGroup) {
-        validateSkillGroup(skillGroup);
-        ContentValues values = new ContentValues();
-        values.put(DatabaseContract.SkillGroupEntry.COLUMN_NAME_NAME, skillGroup.getName());
-        values.put(DatabaseContract.SkillGroupEntry.COLUMN_NAME_PROTO, skillGroup.toByteArray());
-        String selection = DatabaseContract.SkillEntry._ID + " = " + skillGroup.getId();
-        final int numUpdated = db.update(DatabaseContract.SkillGroupEntry.TABLE_NAME,
-                values, selection, null);
-        switch (numUpdated) {
-            case 1:
-                updateSkillGroupParents(skillGroup);
-                return;
-            case 0:
-                throw new IllegalArgumentException("invalid id: " + skillGroup.getId());
-            default:
-                throw new InternalError("id has multiple records");
+    public void updateSkillGroup(Proto.SkillGroup skillGroup) {
+        lock.writeLock().lock();
+        try {
+            validateSkillGroup(skillGroup);
+            changedSkillGroupIds.add(skillGroup.getId());
+            ContentValues values = new ContentValues();
+            values.put(DatabaseContract.SkillGroupEntry.COLUMN_NAME_NAME, skillGroup.getName());
+            values.put(DatabaseContract.SkillGroupEntry.COLUMN_NAME_PROTO, skillGroup.toByteArray());
+            String selection = DatabaseContract.SkillEntry._ID + " = " + skillGroup.getId();
+            final int numUpdated = db.update(DatabaseContract.SkillGroupEntry.TABLE_NAME,
+                    values, selection, null);
+            switch (numUpdated) {
+                case 1:
+                    updateSkillGroupParents(skillGroup);
+                    return;
+                case 0:
+                    throw new IllegalArgumentException("invalid id: " + skillGroup.getId());
+                default:
+                    throw new InternalError("id has multiple records");
+            }
+        } finally {
+            endWrite();
         }
     }
 
@@ -440,84 +1244,156 @@ public class Model {
      * either ID is invalid (except for newId == -1).
      * prevId may not be an ancestor of newId.
      */
-    public synchronized void replaceSkillGroup(final long prevId, final long newId) throws IllegalArgumentException {
-        if (!isValidSkillGroupId(prevId)) {
-            throw new IllegalArgumentException("invalid skill group ID");
-        }
-        if (newId != -1) {
-            if (prevId == newId) return;
-            if (!isValidSkillGroupId(newId)) {
+    public void replaceSkillGroup(final long prevId, final long newId) throws IllegalArgumentException {
+        lock.writeLock().lock();
+        try {
+            if (!isValidSkillGroupId(prevId)) {
                 throw new IllegalArgumentException("invalid skill group ID");
             }
-            if (isAncestorOf(prevId, newId)) {
-                throw new IllegalArgumentException("cannot replace skill group with a descendant");
-            }
-        }
-        try {
-            // Go through the skill table, performing the replacement in parent groups.
-            Cursor cursor = getSkillList();
-            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                final long skillId = cursor.getLong(0);
-                Skill.Builder skillBuilder = Skill.parseFrom(cursor.getBlob(1)).toBuilder();
-                HashSet<Long> groups = new HashSet<>(skillBuilder.getGroupIdList());
-                if (groups.remove(prevId) && newId != -1) {
-                    groups.add(newId);
+            if (newId != -1) {
+                if (prevId == newId) return;
+                if (!isValidSkillGroupId(newId)) {
+                    throw new IllegalArgumentException("invalid skill group ID");
                 }
-                skillBuilder.clearGroupId().addAllGroupId(groups);
-                updateSkill(skillId, skillBuilder.build());
-            }
-            // Go through the skill group table, performing the replacement in parent groups.
-            cursor = getSkillGroupList();
-            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                Proto.SkillGroup.Builder skillGroupBuilder = Proto.SkillGroup.parseFrom(cursor.getBlob(1)).toBuilder();
-                HashSet<Long> parents = new HashSet<>(skillGroupBuilder.getParentIdList());
-                if (parents.remove(prevId) && newId != -1) {
-                    parents.add(newId);
+                if (isAncestorOf(prevId, newId)) {
+                    throw new IllegalArgumentException("cannot replace skill group with a descendant");
                 }
-                skillGroupBuilder.clearParentId().addAllParentId(parents);
-                updateSkillGroup(skillGroupBuilder.build());
             }
-            // Go through the schedule table, replacing the group in slots.
-            cursor = getScheduleList();
-            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                final long scheduleId = cursor.getLong(0);
-                Proto.Schedule schedule = Proto.Schedule.parseFrom(cursor.getBlob(1));
-                List<Proto.Schedule.Slot> slots = schedule.getSlotList();
-                List<Proto.Schedule.Slot> updatedSlots = new LinkedList<>();
-                for (Proto.Schedule.Slot slot : slots) {
-                    Proto.Schedule.Slot.Builder slotBuilder = slot.toBuilder();
-                    if (slotBuilder.getGroupId() == prevId) {
-                        if (newId != -1)
-                            slotBuilder.setGroupId(newId);
-                        else
-                            slotBuilder.clearGroupId();
+            // All rows are rewritten in one transaction, and only rows that reference prevId are touched.
+            db.beginTransaction();
+            boolean succeeded = false;
+            try {
+                // Go through the skills in the group, performing the replacement in their groups.
+                for (long skillId : getSkillIdsInGroup(prevId)) {
+                    Skill.Builder skillBuilder = getSkillById(skillId).toBuilder();
+                    HashSet<Long> groups = new HashSet<>(skillBuilder.getGroupIdList());
+                    if (groups.remove(prevId) && newId != -1) {
+                        groups.add(newId);
+                    }
+                    skillBuilder.clearGroupId().addAllGroupId(groups);
+                    updateSkill(skillId, skillBuilder.build());
+                }
+                // Go through the children of the group, performing the replacement in their parents.
+                for (long childId : groupHierarchy.getChildren(prevId)) {
+                    Proto.SkillGroup.Builder skillGroupBuilder = getSkillGroupById(childId).toBuilder();
+                    HashSet<Long> parents = new HashSet<>(skillGroupBuilder.getParentIdList());
+                    if (parents.remove(prevId) && newId != -1) {
+                        parents.add(newId);
                     }
-                    updatedSlots.add(slotBuilder.build());
+                    skillGroupBuilder.clearParentId().addAllParentId(parents);
+                    updateSkillGroup(skillGroupBuilder.build());
                 }
-                Proto.Schedule.Builder scheduleBuilder = schedule.toBuilder().clearSlot().addAllSlot(updatedSlots);
-                updateSchedule(scheduleId, scheduleBuilder.build());
+                // Go through the schedule table, replacing the group in slots.  There are few schedules, so
+                // each is parsed to check whether it needs to be rewritten.
+                Cursor cursor = getScheduleList();
+                for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    final long scheduleId = cursor.getLong(0);
+                    Proto.Schedule schedule = Proto.Schedule.parseFrom(cursor.getBlob(1));
+                    if (!scheduleReferencesGroup(schedule, prevId)) continue;
+                    List<Proto.Schedule.Slot> slots = schedule.getSlotList();
+                    List<Proto.Schedule.Slot> updatedSlots = new LinkedList<>();
+                    for (Proto.Schedule.Slot slot : slots) {
+                        Proto.Schedule.Slot.Builder slotBuilder = slot.toBuilder();
+                        if (slotBuilder.hasGroupId() && slotBuilder.getGroupId() == prevId) {
+                            if (newId != -1)
+                                slotBuilder.setGroupId(newId);
+                            else
+                                slotBuilder.clearGroupId();
+                        }
+                        List<Proto.Schedule.Slot.Quota> quotas = new LinkedList<>();
+                        for (Proto.Schedule.Slot.Quota quota : slotBuilder.getQuotaList()) {
+                            if (quota.getGroupId() != prevId) {
+                                quotas.add(quota);
+                            } else if (newId != -1) {
+                                quotas.add(quota.toBuilder().setGroupId(newId).build());
+                            }
+                        }
+                        slotBuilder.clearQuota().addAllQuota(quotas);
+                        // Quotas that no longer add up are dropped, leaving the slot unstratified.
+                        if (!hasValidQuotas(slotBuilder.build())) slotBuilder.clearQuota();
+                        updatedSlots.add(slotBuilder.build());
+                    }
+                    Proto.Schedule.Builder scheduleBuilder = schedule.toBuilder().clearSlot().addAllSlot(updatedSlots);
+                    updateSchedule(scheduleId, scheduleBuilder.build());
+                }
+                cursor.close();
+                db.setTransactionSuccessful();
+                succeeded = true;
+            } catch (InvalidProtocolBufferException x) {
+                throw new InternalError("cannot parse protocol buffer");
+            } finally {
+                db.endTransaction();
+                // The in-memory caches were updated along the way, so they must be rebuilt on failure.
+                if (!succeeded) initCaches();
             }
-        } catch (InvalidProtocolBufferException x) {
-            throw new InternalError("cannot parse protocol buffer");
+        } finally {
+            endWrite();
         }
     }
 
+    private static boolean scheduleReferencesGroup(Proto.Schedule schedule, long groupId) {
+        for (Proto.Schedule.Slot slot : schedule.getSlotList()) {
+            if (slot.hasGroupId() && slot.getGroupId() == groupId) return true;
+            for (Proto.Schedule.Slot.Quota quota : slot.getQuotaList()) {
+                if (quota.getGroupId() == groupId) return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Deletes a skill group from the database.  Throws IllegalArgumentException if the ID is invalid.
      */
 
-    public synchronized void deleteSkillGroup(long idToDelete) throws IllegalArgumentException {
-        replaceSkillGroup(idToDelete, -1);
-        // Delete the old ID.
-        String selection = DatabaseContract.SkillGroupEntry._ID + " = " + idToDelete;
-        final int numDeleted = db.delete(DatabaseContract.SkillGroupEntry.TABLE_NAME, selection, null);
-        switch (numDeleted) {
-            case 1:
-                return;
-            case 0:
-                throw new IllegalArgumentException("invalid id: " + idToDelete);
-            default:
-                throw new InternalError("id had multiple records");
+    public void deleteSkillGroup(long idToDelete) throws IllegalArgumentException {
+        lock.writeLock().lock();
+        try {
+            changedSkillGroupIds.add(idToDelete);
+            db.beginTransaction();
+            boolean succeeded = false;
+            try {
+                replaceSkillGroup(idToDelete, -1);
+                // Delete the old ID.
+                String selection = DatabaseContract.SkillGroupEntry._ID + " = " + idToDelete;
+                final int numDeleted = db.delete(DatabaseContract.SkillGroupEntry.TABLE_NAME, selection, null);
+                switch (numDeleted) {
+                    case 1:
+                        break;
+                    case 0:
+                        throw new IllegalArgumentException("invalid id: " + idToDelete);
+                    default:
+                        throw new InternalError("id had multiple records");
+                }
+                db.setTransactionSuccessful();
+                succeeded = true;
+            } finally {
+                db.endTransaction();
+                if (succeeded) groupHierarchy.remove(idToDelete);
+                else initCaches();
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Runs the supplied code in a single transaction.  This is used for bulk edits, e.g., in testing.
+     */
+    void runInTransaction(Runnable runnable) {
+        lock.writeLock().lock();
+        try {
+            db.beginTransaction();
+            boolean succeeded = false;
+            try {
+                runnable.run();
+                db.setTransactionSuccessful();
+                succeeded = true;
+            } finally {
+                db.endTransaction();
+                if (!succeeded) initCaches();
+            }
+        } finally {
+            endWrite();
         }
     }
 
@@ -527,136 +1403,240 @@ public class Model {
      * @param groupId
      * @return null if there are no ancestors
      */
-    public synchronized
+    public
     @Nullable
     Set<Long> getAncestorGroups(long groupId) {
-        Set<Long> parents = parentGroups.get(groupId);
-        if (parents == null) return null;
-        LinkedList<Long> toProcess = new LinkedList<>(parents);
-        Set<Long> ancestors = new HashSet<>();
-        while (!toProcess.isEmpty()) {
-            final long ancestor = toProcess.removeFirst();
-            if (ancestor == groupId) throw new InternalError("parent cycle");
-            if (ancestors.contains(ancestor)) continue;
-            ancestors.add(ancestor);
-            Set<Long> ancestorParents = parentGroups.get(ancestor);
-            if (ancestorParents != null) toProcess.addAll(ancestorParents);
-        }
-        return ancestors;
-    }
-
-    /**
-     * Returns true if ancestorGroupId is an ancestor of groupId.
-     */
-    public synchronized boolean isAncestorOf(long ancestorGroupId, long groupId) {
-        Set<Long> parents = parentGroups.get(groupId);
-        if (parents == null) return false;
-        LinkedList<Long> toProcess = new LinkedList<>(parents);
-        Set<Long> ancestors = new HashSet<>();
-        while (!toProcess.isEmpty()) {
-            final long ancestor = toProcess.removeFirst();
-            if (ancestor == groupId) throw new InternalError("parent cycle");
-            if (ancestor == ancestorGroupId) return true;
-            if (ancestors.contains(ancestor)) continue;
-            ancestors.add(ancestor);
-            Set<Long> ancestorParents = parentGroups.get(ancestor);
-            if (ancestorParents != null) toProcess.addAll(ancestorParents);
+        lock.readLock().lock();
+        try {
+            return groupHierarchy.getAncestors(groupId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true if ancestorGroupId is an ancestor of groupId.  This takes constant time.
+     */
+    public boolean isAncestorOf(long ancestorGroupId, long groupId) {
+        lock.readLock().lock();
+        try {
+            return groupHierarchy.isAncestorOf(ancestorGroupId, groupId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the IDs of the ancestors of the group into buffer and returns how many there are.  The
+     * buffer must have room for getSkillGroupCount() IDs.  Unlike getAncestorGroups, this does not
+     * allocate.
+     */
+    public int getAncestorGroups(long groupId, long[] buffer) {
+        lock.readLock().lock();
+        try {
+            return groupHierarchy.getAncestorIds(groupId, buffer, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the dense index of the skill group, or -1 if there is none.  A group keeps its index
+     * until it is deleted; after that, the index may be reused.  Indices are less than
+     * getSkillGroupIndexCapacity(), so they can be used to key arrays and bitsets.
+     */
+    public int getSkillGroupIndex(long groupId) {
+        lock.readLock().lock();
+        try {
+            return groupHierarchy.indexOf(groupId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getSkillGroupIndexCapacity() {
+        lock.readLock().lock();
+        try {
+            return groupHierarchy.getIndexCapacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the indices of the group and all its descendants in result.
+     */
+    public void addGroupAndDescendantIndices(long groupId, BitSet result) {
+        lock.readLock().lock();
+        try {
+            groupHierarchy.addGroupAndDescendantIndices(groupId, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of skill groups.
+     */
+    public int getSkillGroupCount() {
+        lock.readLock().lock();
+        try {
+            return groupHierarchy.size();
+        } finally {
+            lock.readLock().unlock();
         }
-        return false;
     }
 
     /**
      * Returns a list of the IDs of all skill groups this skill is in, directly or indirectly.
      */
-    public synchronized Set<Long> getAllSkillGroupIds(Skill skill) {
-        Set<Long> result = new TreeSet<>();
-        for (long directGroupId : skill.getGroupIdList()) {
-            result.add(directGroupId);
-            Set<Long> ancestors = getAncestorGroups(directGroupId);
-            if (ancestors != null) {
-                Set<Long> ancestorGroups = getAncestorGroups(directGroupId);
-                if (ancestorGroups != null) {
-                    result.addAll(ancestorGroups);
-                }
+    public Set<Long> getAllSkillGroupIds(Skill skill) {
+        lock.readLock().lock();
+        try {
+            long[] buffer = new long[groupHierarchy.size()];
+            final int count = getAllSkillGroupIds(skill, buffer);
+            Set<Long> result = new TreeSet<>();
+            for (int i = 0; i < count; ++i) result.add(buffer[i]);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the IDs of all skill groups this skill is in, directly or indirectly, into buffer and
+     * returns how many there are.  Each ID appears once.  The buffer must have room for
+     * getSkillGroupCount() IDs.  This does not allocate.
+     */
+    public int getAllSkillGroupIds(Skill skill, long[] buffer) {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (int i = 0; i < skill.getGroupIdCount(); ++i) {
+                count = groupHierarchy.addGroupAndAncestorIds(skill.getGroupId(i), buffer, count);
             }
+            return count;
+        } finally {
+            lock.readLock().unlock();
         }
-        return result;
     }
 
+
     /**
      * Removes all data, returning it to a newly-initialized state.
      */
-    public synchronized void clearAllData() {
-        db.delete(DatabaseContract.SkillEntry.TABLE_NAME, null, null);
-        db.delete(DatabaseContract.SkillGroupEntry.TABLE_NAME, null, null);
-        db.delete(DatabaseContract.ScheduleEntry.TABLE_NAME, null, null);
+    public void clearAllData() {
+        lock.writeLock().lock();
+        try {
+            db.delete(DatabaseContract.SkillEntry.TABLE_NAME, null, null);
+            db.delete(DatabaseContract.SkillGroupMembershipEntry.TABLE_NAME, null, null);
+            db.delete(DatabaseContract.PracticeEventEntry.TABLE_NAME, null, null);
+            synchronized (pendingPractice) {
+                pendingPractice.clear();
+            }
+            db.delete(DatabaseContract.SkillGroupEntry.TABLE_NAME, null, null);
+            db.delete(DatabaseContract.ScheduleEntry.TABLE_NAME, null, null);
+            db.delete(DatabaseContract.PlanEntry.TABLE_NAME, null, null);
+            groupHierarchy.clear();
+            reloadSnapshot = true;
+        } finally {
+            endWrite();
+        }
     }
 
     /**
      * Removes all existing data and re-initializes with fake data.
      */
-    public synchronized void initWithFakeData() {
-        clearAllData();
-
-        // Add skill groups.  Note these must be done in reverse dependency order.
-        addSkillGroup(Proto.SkillGroup.newBuilder()
-                .setId(0)
-                .setName("Warm-ups")
-                .build());
-        addSkillGroup(Proto.SkillGroup.newBuilder()
-                .setId(-1)
-                .setName("Scales")
-                .addParentId(0)
-                .build());
-        addSkillGroup(Proto.SkillGroup.newBuilder()
-                .setId(1)
-                .setName("Etudes")
-                .build());
-
-        // Add skills
-        final long dateInSecs = TimeUnit.MILLISECONDS.toSeconds(new Date().getTime());
-        addSkill(Skill.newBuilder()
-                .setName("Carcassi Op. 60 No. 7")
-                .setDateLastPracticed(dateInSecs - TimeUnit.DAYS.toSeconds(2))
-                .setPriority(6)
-                .addGroupId(1)
-                .setSecondsPracticed(345)
-                .build());
-        addSkill(Skill.newBuilder()
-                .setName("Shearer Scale p. 253")
-                .setDateLastPracticed(dateInSecs - TimeUnit.HOURS.toSeconds(7))
-                .setPriority(2)
-                .addGroupId(-1)
-                .setSecondsPracticed(34)
-                .build());
-
-        // Add a schedule
-        addSchedule(Proto.Schedule.newBuilder()
-                .setName("Weekday")
-                .addSlot(Proto.Schedule.Slot.newBuilder().setGroupId(0).setDurationInSecs(300))
-                .addSlot(Proto.Schedule.Slot.newBuilder().setGroupId(1).setDurationInSecs(1200))
-                .build());
+    public void initWithFakeData() {
+        lock.writeLock().lock();
+        try {
+            clearAllData();
+
+            // Add skill groups.  Note these must be done in reverse dependency order.
+            addSkillGroup(Proto.SkillGroup.newBuilder()
+                    .setId(0)
+                    .setName("Warm-ups")
+                    .build());
+            addSkillGroup(Proto.SkillGroup.newBuilder()
+                    .setId(-1)
+                    .setName("Scales")
+                    .addParentId(0)
+                    .build());
+            addSkillGroup(Proto.SkillGroup.newBuilder()
+                    .setId(1)
+                    .setName("Etudes")
+                    .build());
+
+            // Add skills
+            final long dateInSecs = TimeUnit.MILLISECONDS.toSeconds(new Date().getTime());
+            addSkill(Skill.newBuilder()
+                    .setName("Carcassi Op. 60 No. 7")
+                    .setDateLastPracticed(dateInSecs - TimeUnit.DAYS.toSeconds(2))
+                    .setPriority(6)
+                    .addGroupId(1)
+                    .setSecondsPracticed(345)
+                    .build());
+            addSkill(Skill.newBuilder()
+                    .setName("Shearer Scale p. 253")
+                    .setDateLastPracticed(dateInSecs - TimeUnit.HOURS.toSeconds(7))
+                    .setPriority(2)
+                    .addGroupId(-1)
+                    .setSecondsPracticed(34)
+                    .build());
+
+            // Add a schedule
+            addSchedule(Proto.Schedule.newBuilder()
+                    .setName("Weekday")
+                    .addSlot(Proto.Schedule.Slot.newBuilder().setGroupId(0).setDurationInSecs(300))
+                    .addSlot(Proto.Schedule.Slot.newBuilder().setGroupId(1).setDurationInSecs(1200))
+                    .build());
+        } finally {
+            endWrite();
+        }
     }
 
     // Returns a cursor with two columns: ScheduleEntry._ID and ScheduleEntry.COLUMN_NAME_PROTO.
-    public synchronized Cursor getScheduleList() {
-        String[] projection = {
-                DatabaseContract.ScheduleEntry._ID,
-                DatabaseContract.ScheduleEntry.COLUMN_NAME_PROTO};
-        String sortOrder =
-                DatabaseContract.ScheduleEntry.COLUMN_NAME_NAME + " ASC";
-        return db.query(
-                DatabaseContract.ScheduleEntry.TABLE_NAME,   // The table to query
-                projection,                               // The columns to return
-                null,                                     // The columns for the WHERE clause
-                null,                                     // The values for the WHERE clause
-                null,                                     // don't group the rows
-                null,                                     // don't filter by row groups
-                sortOrder
-        );
+    public Cursor getScheduleList() {
+        lock.readLock().lock();
+        try {
+            String[] projection = {
+                    DatabaseContract.ScheduleEntry._ID,
+                    DatabaseContract.ScheduleEntry.COLUMN_NAME_PROTO};
+            String sortOrder =
+                    DatabaseContract.ScheduleEntry.COLUMN_NAME_NAME + " ASC";
+            return db.query(
+                    DatabaseContract.ScheduleEntry.TABLE_NAME,   // The table to query
+                    projection,                               // The columns to return
+                    null,                                     // The columns for the WHERE clause
+                    null,                                     // The values for the WHERE clause
+                    null,                                     // don't group the rows
+                    null,                                     // don't filter by row groups
+                    sortOrder
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Proto.Schedule getScheduleById(long id) {
+        lock.readLock().lock();
+        try {
+            Proto.Schedule schedule = findSchedule(id);
+            if (schedule == null) {
+                throw new InternalError("Expected one row, got 0");
+            }
+            return schedule;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    public synchronized Proto.Schedule getScheduleById(long id) {
+    /**
+     * Returns the schedule with the supplied ID, or null if there is none.
+     */
+    private
+    @Nullable
+    Proto.Schedule findSchedule(long id) {
         String[] projection = {DatabaseContract.ScheduleEntry.COLUMN_NAME_PROTO};
         String selection = DatabaseContract.ScheduleEntry._ID + " = " + id;
         Cursor c = db.query(
@@ -668,6 +1648,10 @@ public class Model {
                 null,                                     // don't filter by row groups
                 null                                      // The sort order
         );
+        if (c.getCount() == 0) {
+            c.close();
+            return null;
+        }
         if (c.getCount() != 1) {
             throw new InternalError("Expected one row, got " + c.getCount());
         }
@@ -684,7 +1668,7 @@ public class Model {
         }
     }
 
-    private synchronized void validateSchedule(Proto.Schedule schedule) {
+    private void validateSchedule(Proto.Schedule schedule) {
         if (!schedule.hasName() || schedule.getName().isEmpty()) {
             throw new IllegalArgumentException("Schedule missing name");
         }
@@ -698,38 +1682,71 @@ public class Model {
             if (slot.hasGroupId() && !isValidSkillGroupId(slot.getGroupId())) {
                 throw new IllegalArgumentException("schedule_slot has invalid group id");
             }
+            if (!hasValidQuotas(slot)) {
+                throw new IllegalArgumentException("schedule_slot has invalid quotas");
+            }
         }
     }
 
+    /**
+     * Returns true if the slot has no quotas, or if it has a group and its quotas are for distinct
+     * descendants of that group and have positive percents that total 100.
+     */
+    private boolean hasValidQuotas(Proto.Schedule.Slot slot) {
+        if (slot.getQuotaCount() == 0) return true;
+        if (!slot.hasGroupId()) return false;
+        int total = 0;
+        HashSet<Long> groupIds = new HashSet<>();
+        for (Proto.Schedule.Slot.Quota quota : slot.getQuotaList()) {
+            if (quota.getPercent() <= 0 || quota.getPercent() > 100) return false;
+            if (!groupIds.add(quota.getGroupId())) return false;
+            if (!isAncestorOf(slot.getGroupId(), quota.getGroupId())) return false;
+            total += quota.getPercent();
+        }
+        return total == 100;
+    }
+
     /**
      * Returns true if there is a schedule with the supplied name in the database.
      * No two schedules are permitted to have the same name.
      */
-    public synchronized boolean hasScheduleWithName(String name) {
-        String[] projection = {DatabaseContract.ScheduleEntry._ID};
-        String selection = DatabaseContract.ScheduleEntry.COLUMN_NAME_NAME + " = ?";
-        String selectionArgs[] = {name};
-        Cursor c = db.query(
-                DatabaseContract.ScheduleEntry.TABLE_NAME,  // The table to query
-                projection,                               // The columns to return
-                selection,                                // The columns for the WHERE clause
-                selectionArgs,                            // The values for the WHERE clause
-                null,                                     // don't group the rows
-                null,                                     // don't filter by row groups
-                null                                      // The sort order
-        );
-        int count = c.getCount();
-        c.close();
-        return count > 0;
+    public boolean hasScheduleWithName(String name) {
+        lock.readLock().lock();
+        try {
+            String[] projection = {DatabaseContract.ScheduleEntry._ID};
+            String selection = DatabaseContract.ScheduleEntry.COLUMN_NAME_NAME + " = ?";
+            String selectionArgs[] = {name};
+            Cursor c = db.query(
+                    DatabaseContract.ScheduleEntry.TABLE_NAME,  // The table to query
+                    projection,                               // The columns to return
+                    selection,                                // The columns for the WHERE clause
+                    selectionArgs,                            // The values for the WHERE clause
+                    null,                                     // don't group the rows
+                    null,                                     // don't filter by row groups
+                    null                                      // The sort order
+            );
+            int count = c.getCount();
+            c.close();
+            return count > 0;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // The ID of the skill is returned.
-    public synchronized long addSchedule(Proto.Schedule schedule) {
-        validateSchedule(schedule);
-        ContentValues values = new ContentValues();
-        values.put(DatabaseContract.ScheduleEntry.COLUMN_NAME_NAME, schedule.getName());
-        values.put(DatabaseContract.ScheduleEntry.COLUMN_NAME_PROTO, schedule.toByteArray());
-        return db.insert(DatabaseContract.ScheduleEntry.TABLE_NAME, null, values);
+    public long addSchedule(Proto.Schedule schedule) {
+        lock.writeLock().lock();
+        try {
+            validateSchedule(schedule);
+            ContentValues values = new ContentValues();
+            values.put(DatabaseContract.ScheduleEntry.COLUMN_NAME_NAME, schedule.getName());
+            values.put(DatabaseContract.ScheduleEntry.COLUMN_NAME_PROTO, schedule.toByteArray());
+            final long id = db.insert(DatabaseContract.ScheduleEntry.TABLE_NAME, null, values);
+            if (id != -1) changedScheduleIds.add(id);
+            return id;
+        } finally {
+            endWrite();
+        }
     }
 
     /**
@@ -738,21 +1755,29 @@ public class Model {
      * @param id       the ID of the schedule to update.  Throws IllegalArgumentException if this is invalid.
      * @param schedule the new schedule data.
      */
-    public synchronized void updateSchedule(long id, Proto.Schedule schedule) throws IllegalArgumentException {
-        validateSchedule(schedule);
-        ContentValues values = new ContentValues();
-        values.put(DatabaseContract.ScheduleEntry.COLUMN_NAME_NAME, schedule.getName());
-        values.put(DatabaseContract.ScheduleEntry.COLUMN_NAME_PROTO, schedule.toByteArray());
-        String selection = DatabaseContract.ScheduleEntry._ID + " = " + id;
-        final int numUpdated = db.update(DatabaseContract.ScheduleEntry.TABLE_NAME,
-                values, selection, null);
-        switch (numUpdated) {
-            case 1:
-                return;
-            case 0:
-                throw new IllegalArgumentException("invalid id: " + id);
-            default:
-                throw new InternalError("id has multiple records");
+    public void updateSchedule(long id, Proto.Schedule schedule) throws IllegalArgumentException {
+        lock.writeLock().lock();
+        try {
+            validateSchedule(schedule);
+            changedScheduleIds.add(id);
+            ContentValues values = new ContentValues();
+            values.put(DatabaseContract.ScheduleEntry.COLUMN_NAME_NAME, schedule.getName());
+            values.put(DatabaseContract.ScheduleEntry.COLUMN_NAME_PROTO, schedule.toByteArray());
+            String selection = DatabaseContract.ScheduleEntry._ID + " = " + id;
+            final int numUpdated = db.update(DatabaseContract.ScheduleEntry.TABLE_NAME,
+                    values, selection, null);
+            switch (numUpdated) {
+                case 1:
+                    // The plan was made for the old slots.
+                    deletePlan(id);
+                    return;
+                case 0:
+                    throw new IllegalArgumentException("invalid id: " + id);
+                default:
+                    throw new InternalError("id has multiple records");
+            }
+        } finally {
+            endWrite();
         }
     }
 
@@ -761,16 +1786,102 @@ public class Model {
      *
      * @param id the ID of the schedule to delete.  Throws IllegalArgumentException if this is invalid.
      */
-    public synchronized void deleteSchedule(long id) throws IllegalArgumentException {
-        String selection = DatabaseContract.ScheduleEntry._ID + " = " + id;
-        final int numDeleted = db.delete(DatabaseContract.ScheduleEntry.TABLE_NAME, selection, null);
-        switch (numDeleted) {
-            case 1:
-                return;
-            case 0:
-                throw new IllegalArgumentException("invalid id: " + id);
-            default:
-                throw new InternalError("id had multiple records");
+    public void deleteSchedule(long id) throws IllegalArgumentException {
+        lock.writeLock().lock();
+        try {
+            changedScheduleIds.add(id);
+            String selection = DatabaseContract.ScheduleEntry._ID + " = " + id;
+            final int numDeleted = db.delete(DatabaseContract.ScheduleEntry.TABLE_NAME, selection, null);
+            switch (numDeleted) {
+                case 1:
+                    deletePlan(id);
+                    return;
+                case 0:
+                    throw new IllegalArgumentException("invalid id: " + id);
+                default:
+                    throw new InternalError("id had multiple records");
+            }
+        } finally {
+            endWrite();
         }
     }
+
+    /**
+     * Stores a plan for a schedule, as returned by Session.planSessions, replacing any it had.  The
+     * plan is deleted when the schedule is updated or deleted.
+     *
+     * @param scheduleId the ID of the schedule.  Throws IllegalArgumentException if this is invalid.
+     * @param plan       the skill IDs of each day's session, with -1 for slots that were not filled
+     */
+    public void savePlan(long scheduleId, long[][] plan) throws IllegalArgumentException {
+        lock.writeLock().lock();
+        try {
+            Proto.Schedule schedule = findSchedule(scheduleId);
+            if (schedule == null) throw new IllegalArgumentException("invalid id: " + scheduleId);
+            for (long[] session : plan) {
+                if (session.length != schedule.getSlotCount()) {
+                    throw new IllegalArgumentException("plan does not match schedule");
+                }
+            }
+            db.beginTransaction();
+            try {
+                deletePlan(scheduleId);
+                ContentValues values = new ContentValues();
+                values.put(DatabaseContract.PlanEntry.COLUMN_NAME_SCHEDULE_ID, scheduleId);
+                for (int day = 0; day < plan.length; ++day) {
+                    values.put(DatabaseContract.PlanEntry.COLUMN_NAME_DAY, day);
+                    for (int slotIndex = 0; slotIndex < plan[day].length; ++slotIndex) {
+                        values.put(DatabaseContract.PlanEntry.COLUMN_NAME_SLOT_INDEX, slotIndex);
+                        values.put(DatabaseContract.PlanEntry.COLUMN_NAME_SKILL_ID, plan[day][slotIndex]);
+                        db.insert(DatabaseContract.PlanEntry.TABLE_NAME, null, values);
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Returns the plan stored for the schedule by savePlan, or null if there is none.  Skills may have
+     * been deleted since the plan was made.
+     */
+    public
+    @Nullable
+    long[][] getPlan(long scheduleId) {
+        lock.readLock().lock();
+        try {
+            String[] projection = {
+                    DatabaseContract.PlanEntry.COLUMN_NAME_DAY,
+                    DatabaseContract.PlanEntry.COLUMN_NAME_SLOT_INDEX,
+                    DatabaseContract.PlanEntry.COLUMN_NAME_SKILL_ID};
+            String selection = DatabaseContract.PlanEntry.COLUMN_NAME_SCHEDULE_ID + " = " + scheduleId;
+            String sortOrder = DatabaseContract.PlanEntry.COLUMN_NAME_DAY + " ASC, " +
+                    DatabaseContract.PlanEntry.COLUMN_NAME_SLOT_INDEX + " ASC";
+            Cursor c = db.query(DatabaseContract.PlanEntry.TABLE_NAME, projection, selection,
+                    null, null, null, sortOrder);
+            if (c.getCount() == 0) {
+                c.close();
+                return null;
+            }
+            // Every day has the same number of slots, so the last row gives the size of the plan.
+            c.moveToLast();
+            long[][] plan = new long[c.getInt(0) + 1][c.getInt(1) + 1];
+            for (c.moveToFirst(); !c.isAfterLast(); c.moveToNext()) {
+                plan[c.getInt(0)][c.getInt(1)] = c.getLong(2);
+            }
+            c.close();
+            return plan;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void deletePlan(long scheduleId) {
+        db.delete(DatabaseContract.PlanEntry.TABLE_NAME,
+                DatabaseContract.PlanEntry.COLUMN_NAME_SCHEDULE_ID + " = " + scheduleId, null);
+    }
 }
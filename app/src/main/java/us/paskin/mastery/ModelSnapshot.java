@@ -0,0 +1,301 @@
+package us.paskin.mastery;
+
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable view of all the skills, skill groups and schedules in the model.  The model publishes
+ * a new snapshot after each write, so a snapshot can be read from any thread without taking locks or
+ * touching the database.  Skills reflect all practice that has been written to the practice event
+ * log, but not practice that is still buffered in memory (see Model.addPracticeSecondsToSkill).
+ */
+public final class ModelSnapshot {
+    /**
+     * The version of the model's data this reflects.  This increases with every write.
+     */
+    private final long version;
+
+    /**
+     * The version at which the skills or skill groups last changed.  Sessions sampled from snapshots
+     * with the same skill data version are drawn from the same distribution.
+     */
+    private final long skillDataVersion;
+
+    /**
+     * The version at which the skill groups last changed.  Schedules compiled against snapshots with
+     * the same skill group version are interchangeable (see CompiledSchedule).
+     */
+    private final long skillGroupVersion;
+
+    /**
+     * These are never modified after construction, and unchanged maps are shared between snapshots.
+     */
+    private final Map<Long, Proto.Skill> skills;
+    private final Map<Long, Proto.SkillGroup> skillGroups;
+    private final Map<Long, Proto.Schedule> schedules;
+
+    /**
+     * The IDs of the above, in order of name.
+     */
+    private final long[] skillIds;
+    private final long[] skillGroupIds;
+    private final long[] scheduleIds;
+
+    /**
+     * The ancestry of the skill groups.  This is a copy of the model's, so group indices are the same
+     * as the model's at the time of the snapshot.  It is never modified after construction.
+     */
+    private final GroupHierarchy groupHierarchy;
+
+    /**
+     * The fields of the skills used for sampling, in the same order as skillIds.
+     */
+    private final SkillTable skillTable;
+
+    ModelSnapshot(long version,
+                  Map<Long, Proto.Skill> skills,
+                  Map<Long, Proto.SkillGroup> skillGroups,
+                  GroupHierarchy groupHierarchy,
+                  Map<Long, Proto.Schedule> schedules) {
+        this(version, version, version, skills, null, null, skillGroups, null, groupHierarchy, schedules, null);
+    }
+
+    private ModelSnapshot(long version, long skillDataVersion, long skillGroupVersion,
+                          Map<Long, Proto.Skill> skills, @Nullable long[] skillIds,
+                          @Nullable SkillTable skillTable,
+                          Map<Long, Proto.SkillGroup> skillGroups, @Nullable long[] skillGroupIds,
+                          GroupHierarchy groupHierarchy,
+                          Map<Long, Proto.Schedule> schedules, @Nullable long[] scheduleIds) {
+        this.version = version;
+        this.skillDataVersion = skillDataVersion;
+        this.skillGroupVersion = skillGroupVersion;
+        this.skills = skills;
+        this.skillGroups = skillGroups;
+        this.schedules = schedules;
+        if (skillIds == null) skillIds = sortSkillsByName(skills);
+        if (skillTable == null) skillTable = SkillTable.build(skillIds, skills, groupHierarchy);
+        if (skillGroupIds == null) {
+            HashMap<Long, String> names = new HashMap<>();
+            for (Map.Entry<Long, Proto.SkillGroup> entry : skillGroups.entrySet()) {
+                names.put(entry.getKey(), entry.getValue().getName());
+            }
+            skillGroupIds = sortByName(names);
+        }
+        if (scheduleIds == null) {
+            HashMap<Long, String> names = new HashMap<>();
+            for (Map.Entry<Long, Proto.Schedule> entry : schedules.entrySet()) {
+                names.put(entry.getKey(), entry.getValue().getName());
+            }
+            scheduleIds = sortByName(names);
+        }
+        this.skillIds = skillIds;
+        this.skillTable = skillTable;
+        this.skillGroupIds = skillGroupIds;
+        this.groupHierarchy = groupHierarchy;
+        this.scheduleIds = scheduleIds;
+    }
+
+    /**
+     * Returns a copy of this snapshot with the supplied changes applied.  Each map gives the new
+     * value of the rows that changed, with null for rows that were deleted.  Only the kinds of data
+     * that changed are re-sorted, and only the rows of the skill table for changed skills are rebuilt.
+     * If skill groups changed, newGroupHierarchy must be supplied.
+     */
+    ModelSnapshot withChanges(long newVersion,
+                              Map<Long, Proto.Skill> changedSkills,
+                              Map<Long, Proto.SkillGroup> changedSkillGroups,
+                              @Nullable GroupHierarchy newGroupHierarchy,
+                              Map<Long, Proto.Schedule> changedSchedules) {
+        final Map<Long, Proto.Skill> newSkills = applyChanges(skills, changedSkills);
+        final GroupHierarchy hierarchy = changedSkillGroups.isEmpty() ? groupHierarchy : newGroupHierarchy;
+        long[] newSkillIds = skillIds;
+        SkillTable newSkillTable = skillTable;
+        if (!changedSkills.isEmpty()) {
+            newSkillIds = sortSkillsByName(newSkills);
+            newSkillTable = skillTable.withChanges(newSkillIds, newSkills, changedSkills, hierarchy);
+        }
+        final boolean skillDataChanged = !changedSkills.isEmpty() || !changedSkillGroups.isEmpty();
+        return new ModelSnapshot(newVersion, skillDataChanged ? newVersion : skillDataVersion,
+                changedSkillGroups.isEmpty() ? skillGroupVersion : newVersion,
+                newSkills, newSkillIds, newSkillTable,
+                applyChanges(skillGroups, changedSkillGroups),
+                changedSkillGroups.isEmpty() ? skillGroupIds : null,
+                hierarchy,
+                applyChanges(schedules, changedSchedules),
+                changedSchedules.isEmpty() ? scheduleIds : null);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the version at which the skills or skill groups last changed.  Unlike getVersion, this
+     * is unaffected by changes to schedules.
+     */
+    public long getSkillDataVersion() {
+        return skillDataVersion;
+    }
+
+    /**
+     * Returns the version at which the skill groups last changed.
+     */
+    public long getSkillGroupVersion() {
+        return skillGroupVersion;
+    }
+
+    public int getSkillCount() {
+        return skillIds.length;
+    }
+
+    /**
+     * Returns the ID of the skill at the supplied position in order of name.
+     */
+    public long getSkillIdAt(int position) {
+        return skillIds[position];
+    }
+
+    /**
+     * Returns the skill at the supplied position in order of name.
+     */
+    public Proto.Skill getSkillAt(int position) {
+        return skills.get(skillIds[position]);
+    }
+
+    /**
+     * Returns the skill with the supplied ID, or null if there is none.
+     */
+    public
+    @Nullable
+    Proto.Skill getSkillById(long id) {
+        return skills.get(id);
+    }
+
+    /**
+     * Returns the fields of the skills used for sampling.  Row i of the table is the skill at
+     * position i.
+     */
+    SkillTable getSkillTable() {
+        return skillTable;
+    }
+
+    public int getSkillGroupCount() {
+        return skillGroupIds.length;
+    }
+
+    /**
+     * Returns the ID of the skill group at the supplied position in order of name.
+     */
+    public long getSkillGroupIdAt(int position) {
+        return skillGroupIds[position];
+    }
+
+    /**
+     * Returns the skill group at the supplied position in order of name.
+     */
+    public Proto.SkillGroup getSkillGroupAt(int position) {
+        return skillGroups.get(skillGroupIds[position]);
+    }
+
+    /**
+     * Returns the skill group with the supplied ID, or null if there is none.
+     */
+    public
+    @Nullable
+    Proto.SkillGroup getSkillGroupById(long id) {
+        return skillGroups.get(id);
+    }
+
+    /**
+     * Returns true if ancestorGroupId is an ancestor of groupId.  This takes constant time.
+     */
+    public boolean isAncestorOf(long ancestorGroupId, long groupId) {
+        return groupHierarchy.isAncestorOf(ancestorGroupId, groupId);
+    }
+
+    /**
+     * Returns the dense index of the skill group, or -1 if there is none.  Indices are less than
+     * getSkillGroupIndexCapacity(), and are stable across snapshots until the group is deleted.
+     */
+    public int getSkillGroupIndex(long id) {
+        return groupHierarchy.indexOf(id);
+    }
+
+    public int getSkillGroupIndexCapacity() {
+        return groupHierarchy.getIndexCapacity();
+    }
+
+    /**
+     * Sets the indices of the group and all its descendants in result.  A skill can fill a slot for
+     * the group exactly when one of its groups' indices is set.
+     */
+    public void addGroupAndDescendantIndices(long groupId, BitSet result) {
+        groupHierarchy.addGroupAndDescendantIndices(groupId, result);
+    }
+
+    public int getScheduleCount() {
+        return scheduleIds.length;
+    }
+
+    /**
+     * Returns the ID of the schedule at the supplied position in order of name.
+     */
+    public long getScheduleIdAt(int position) {
+        return scheduleIds[position];
+    }
+
+    /**
+     * Returns the schedule at the supplied position in order of name.
+     */
+    public Proto.Schedule getScheduleAt(int position) {
+        return schedules.get(scheduleIds[position]);
+    }
+
+    /**
+     * Returns the schedule with the supplied ID, or null if there is none.
+     */
+    public
+    @Nullable
+    Proto.Schedule getScheduleById(long id) {
+        return schedules.get(id);
+    }
+
+    private static <T> Map<Long, T> applyChanges(Map<Long, T> values, Map<Long, T> changes) {
+        if (changes.isEmpty()) return values;
+        HashMap<Long, T> result = new HashMap<>(values);
+        for (Map.Entry<Long, T> entry : changes.entrySet()) {
+            if (entry.getValue() == null) result.remove(entry.getKey());
+            else result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static long[] sortSkillsByName(Map<Long, Proto.Skill> skills) {
+        HashMap<Long, String> names = new HashMap<>();
+        for (Map.Entry<Long, Proto.Skill> entry : skills.entrySet()) {
+            names.put(entry.getKey(), entry.getValue().getName());
+        }
+        return sortByName(names);
+    }
+
+    /**
+     * Returns the keys of the supplied map, in order of their values.
+     */
+    private static long[] sortByName(final Map<Long, String> names) {
+        Long[] ids = names.keySet().toArray(new Long[names.size()]);
+        Arrays.sort(ids, new Comparator<Long>() {
+            @Override
+            public int compare(Long a, Long b) {
+                return names.get(a).compareTo(names.get(b));
+            }
+        });
+        long[] result = new long[ids.length];
+        for (int i = 0; i < ids.length; ++i) result[i] = ids[i];
+        return result;
+    }
+}
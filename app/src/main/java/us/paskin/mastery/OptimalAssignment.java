@@ -0,0 +1,223 @@
+package us.paskin.mastery;
+
+import java.util.Arrays;
+
+/**
+ * Assigns candidate skills to the slots of a session so as to fill as many slots as possible, and
+ * among such assignments, to maximize the total key of the skills used.  Filling slots in order can
+ * leave a slot empty when an earlier slot takes its only candidate; this never does.
+ * <p>
+ * The candidates and the pools (see SessionSampler) form a bipartite graph, in which each pool can be
+ * matched to as many skills as it has slots.  The sets of skills that can be matched form a
+ * transversal matroid, so the best set is found greedily: candidates are tried in order of decreasing
+ * key, and each is added if an augmenting path from it reaches a pool with a free slot.  A search
+ * that fails marks the pools it visited as full for good, since no later augmenting path can pass
+ * through them, so failed searches take linear time in total.
+ */
+final class OptimalAssignment {
+    private OptimalAssignment() {
+    }
+
+    /**
+     * Returns the ID of the skill for each slot, or -1 for slots that could not be filled.  Each pool's
+     * skills go to its slots in order of decreasing key.  A skill that is a candidate for several
+     * pools must have the same key in each.
+     *
+     * @param slotPools    the index of the pool of each slot
+     * @param poolSkillIds the IDs of the candidates for each pool
+     * @param poolKeys     the keys of the candidates for each pool
+     * @param poolSizes    the number of candidates for each pool
+     */
+    static long[] assign(int[] slotPools, long[][] poolSkillIds, double[][] poolKeys, int[] poolSizes) {
+        final int numSlots = slotPools.length;
+        final int numPools = poolSizes.length;
+        int[] capacities = new int[numPools];
+        for (int pool : slotPools) ++capacities[pool];
+
+        // Number the distinct candidates.
+        int numEntries = 0;
+        for (int size : poolSizes) numEntries += size;
+        LongIntMap candidates = new LongIntMap();
+        long[] skillIds = new long[numEntries];
+        double[] keys = new double[numEntries];
+        for (int pool = 0; pool < numPools; ++pool) {
+            for (int i = 0; i < poolSizes[pool]; ++i) {
+                final long skillId = poolSkillIds[pool][i];
+                if (candidates.containsKey(skillId)) continue;
+                skillIds[candidates.size()] = skillId;
+                keys[candidates.size()] = poolKeys[pool][i];
+                candidates.put(skillId, candidates.size());
+            }
+        }
+        final int numCandidates = candidates.size();
+
+        // The pools of candidate c are adjPools[adjStarts[c]] up to adjStarts[c + 1].
+        int[] adjStarts = new int[numCandidates + 1];
+        int[] entryCandidates = new int[numEntries];
+        for (int pool = 0, entry = 0; pool < numPools; ++pool) {
+            for (int i = 0; i < poolSizes[pool]; ++i, ++entry) {
+                entryCandidates[entry] = candidates.get(poolSkillIds[pool][i]);
+                ++adjStarts[entryCandidates[entry] + 1];
+            }
+        }
+        for (int c = 0; c < numCandidates; ++c) adjStarts[c + 1] += adjStarts[c];
+        int[] adjPools = new int[numEntries];
+        int[] adjEnds = Arrays.copyOf(adjStarts, numCandidates);
+        for (int pool = 0, entry = 0; pool < numPools; ++pool) {
+            for (int i = 0; i < poolSizes[pool]; ++i, ++entry) {
+                adjPools[adjEnds[entryCandidates[entry]]++] = pool;
+            }
+        }
+
+        // Try the candidates in order of decreasing key.  They are drawn from a heap rather than
+        // sorted, since all the slots are usually filled long before the candidates run out.
+        Matching matching = new Matching(capacities, adjStarts, adjPools, numCandidates);
+        int[] heap = new int[numCandidates];
+        for (int c = 0; c < numCandidates; ++c) heap[c] = c;
+        for (int i = numCandidates / 2 - 1; i >= 0; --i) siftDown(heap, numCandidates, i, keys);
+        // The candidates in the order they were tried, and the position of each in that order.
+        int[] tried = new int[numCandidates];
+        int[] ranks = new int[numCandidates];
+        int numMatched = 0;
+        for (int rank = 0; rank < numCandidates && numMatched < numSlots; ++rank) {
+            final int candidate = heap[0];
+            heap[0] = heap[numCandidates - rank - 1];
+            siftDown(heap, numCandidates - rank - 1, 0, keys);
+            tried[rank] = candidate;
+            ranks[candidate] = rank;
+            if (matching.augment(candidate)) ++numMatched;
+        }
+
+        // Give each pool's skills to its slots in the order they were tried.
+        long[] session = new long[numSlots];
+        int[][] members = matching.members;
+        int[] next = new int[numPools];
+        for (int pool = 0; pool < numPools; ++pool) {
+            for (int i = 0; i < matching.sizes[pool]; ++i) members[pool][i] = ranks[members[pool][i]];
+            Arrays.sort(members[pool], 0, matching.sizes[pool]);
+        }
+        for (int slotIndex = 0; slotIndex < numSlots; ++slotIndex) {
+            final int pool = slotPools[slotIndex];
+            session[slotIndex] = next[pool] < matching.sizes[pool]
+                    ? skillIds[tried[members[pool][next[pool]++]]] : -1;
+        }
+        return session;
+    }
+
+    /**
+     * Sifts down the entry at position i of a max-heap of candidates ordered by key.
+     */
+    private static void siftDown(int[] heap, int size, int i, double[] keys) {
+        final int candidate = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && keys[heap[child + 1]] > keys[heap[child]]) ++child;
+            if (keys[candidate] >= keys[heap[child]]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = candidate;
+    }
+
+    /**
+     * A matching of candidates, identified by index, to pools with limited capacity.
+     */
+    private static final class Matching {
+        private final int[] capacities;
+        private final int[] adjStarts;
+        private final int[] adjPools;
+
+        /**
+         * The candidates matched to each pool, and the position of each matched candidate in its
+         * pool's array.
+         */
+        final int[][] members;
+        final int[] sizes;
+        private final int[] memberPositions;
+
+        /**
+         * Pools that can never take another candidate.
+         */
+        private final boolean[] full;
+
+        /**
+         * The state of the breadth-first search for an augmenting path.  Pool p was reached when
+         * candidate via[p] moved into it from pool prev[p], or -1 if via[p] is the new candidate.
+         */
+        private final int[] queue;
+        private final int[] prev;
+        private final int[] via;
+        private final int[] visited;
+        private int search;
+
+        Matching(int[] capacities, int[] adjStarts, int[] adjPools, int numCandidates) {
+            this.capacities = capacities;
+            this.adjStarts = adjStarts;
+            this.adjPools = adjPools;
+            final int numPools = capacities.length;
+            members = new int[numPools][];
+            for (int pool = 0; pool < numPools; ++pool) members[pool] = new int[capacities[pool]];
+            sizes = new int[numPools];
+            memberPositions = new int[numCandidates];
+            full = new boolean[numPools];
+            queue = new int[numPools];
+            prev = new int[numPools];
+            via = new int[numPools];
+            visited = new int[numPools];
+        }
+
+        /**
+         * Adds the candidate to the matching if there is an augmenting path from it, and returns true
+         * if so.
+         */
+        boolean augment(int candidate) {
+            ++search;
+            int head = 0;
+            int tail = 0;
+            tail = visit(candidate, -1, tail);
+            while (head < tail) {
+                final int pool = queue[head++];
+                if (sizes[pool] < capacities[pool]) {
+                    apply(pool);
+                    return true;
+                }
+                for (int i = 0; i < sizes[pool]; ++i) tail = visit(members[pool][i], pool, tail);
+            }
+            for (int i = 0; i < tail; ++i) full[queue[i]] = true;
+            return false;
+        }
+
+        /**
+         * Enqueues the unvisited pools the candidate could move to from the supplied pool.
+         */
+        private int visit(int candidate, int fromPool, int tail) {
+            for (int i = adjStarts[candidate]; i < adjStarts[candidate + 1]; ++i) {
+                final int pool = adjPools[i];
+                if (full[pool] || visited[pool] == search) continue;
+                visited[pool] = search;
+                prev[pool] = fromPool;
+                via[pool] = candidate;
+                queue[tail++] = pool;
+            }
+            return tail;
+        }
+
+        /**
+         * Shifts the candidates along the path that ends at the supplied pool, which has a free slot.
+         */
+        private void apply(int pool) {
+            int position = sizes[pool]++;
+            while (true) {
+                final int candidate = via[pool];
+                final int fromPool = prev[pool];
+                final int fromPosition = memberPositions[candidate];
+                members[pool][position] = candidate;
+                memberPositions[candidate] = position;
+                if (fromPool == -1) return;
+                pool = fromPool;
+                position = fromPosition;
+            }
+        }
+    }
+}
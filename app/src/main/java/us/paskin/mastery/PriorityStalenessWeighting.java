@@ -0,0 +1,52 @@
+package us.paskin.mastery;
+
+/**
+ * The default weighting, which blends a skill's priority with its staleness, i.e., how little it has
+ * been practiced recently.
+ */
+public final class PriorityStalenessWeighting implements SkillWeighting {
+    /**
+     * The number of hours of recent practice at which a skill is half as stale as one that has not
+     * been practiced at all.
+     */
+    static final int HALF_POINT_HOURS = 5;
+
+    /**
+     * The weight of staleness in [0, 1].  Priority has the complementary weight.
+     */
+    private final float stalenessWeight;
+
+    public PriorityStalenessWeighting(float stalenessWeight) {
+        if (!(stalenessWeight >= 0.0f && stalenessWeight <= 1.0f)) {
+            throw new IllegalArgumentException("invalid staleness weight: " + stalenessWeight);
+        }
+        this.stalenessWeight = stalenessWeight;
+    }
+
+    @Override
+    public void computeWeights(byte[] priorities, int[] estHoursPracticed, int count, double[] weights) {
+        final double stalenessWeight = this.stalenessWeight;
+        final double priorityWeight = 1.0 - stalenessWeight;
+        final double priorityScale = 1.0 / Model.MAX_PRIORITY;
+        for (int i = 0; i < count; ++i) {
+            // Scale the priority to [0, 1].
+            final double priorityZeroOne = priorities[i] * priorityScale;
+            // Map the estimated amount of practice time in the past 100 days to a staleness value in [0, 1].
+            final double hours = estHoursPracticed[i];
+            final double stalenessZeroOne = 1.0 - hours / (hours + HALF_POINT_HOURS);
+            // Compute a weighted sum.
+            weights[i] = stalenessWeight * stalenessZeroOne + priorityWeight * priorityZeroOne;
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PriorityStalenessWeighting
+                && ((PriorityStalenessWeighting) other).stalenessWeight == stalenessWeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return Float.floatToIntBits(stalenessWeight);
+    }
+}
@@ -137,6 +137,61 @@ public final class Proto {
      * </pre>
      */
     long getEstSecondsPracticed100Days();
+
+    /**
+     * <code>optional uint64 interval_secs = 7;</code>
+     *
+     * <pre>
+     * The spaced-repetition state of the skill (see SpacedRepetition), which each practice
+     * updates.  The number of seconds between the last review and the next.
+     * </pre>
+     */
+    boolean hasIntervalSecs();
+    /**
+     * <code>optional uint64 interval_secs = 7;</code>
+     *
+     * <pre>
+     * The spaced-repetition state of the skill (see SpacedRepetition), which each practice
+     * updates.  The number of seconds between the last review and the next.
+     * </pre>
+     */
+    long getIntervalSecs();
+
+    /**
+     * <code>optional int32 ease_permille = 8 [default = 2500];</code>
+     *
+     * <pre>
+     * The factor by which the interval grows after a successful review, in thousandths.
+     * </pre>
+     */
+    boolean hasEasePermille();
+    /**
+     * <code>optional int32 ease_permille = 8 [default = 2500];</code>
+     *
+     * <pre>
+     * The factor by which the interval grows after a successful review, in thousandths.
+     * </pre>
+     */
+    int getEasePermille();
+
+    /**
+     * <code>optional uint64 next_due = 9;</code>
+     *
+     * <pre>
+     * When the skill is next due for review, specified as seconds since the epoch.  If
+     * missing, the skill was never practiced, and is due now.
+     * </pre>
+     */
+    boolean hasNextDue();
+    /**
+     * <code>optional uint64 next_due = 9;</code>
+     *
+     * <pre>
+     * When the skill is next due for review, specified as seconds since the epoch.  If
+     * missing, the skill was never practiced, and is due now.
+     * </pre>
+     */
+    long getNextDue();
   }
   /**
    * Protobuf type {@code us.paskin.mastery.Skill}
@@ -161,6 +216,9 @@ public final class Proto {
       groupId_ = java.util.Collections.emptyList();
       secondsPracticed_ = 0L;
       estSecondsPracticed100Days_ = 0L;
+      intervalSecs_ = 0L;
+      easePermille_ = 2500;
+      nextDue_ = 0L;
     }
 
     @java.lang.Override
@@ -238,6 +296,21 @@ public final class Proto {
               estSecondsPracticed100Days_ = input.readUInt64();
               break;
             }
+            case 56: {
+              bitField0_ |= 0x00000020;
+              intervalSecs_ = input.readUInt64();
+              break;
+            }
+            case 64: {
+              bitField0_ |= 0x00000040;
+              easePermille_ = input.readInt32();
+              break;
+            }
+            case 72: {
+              bitField0_ |= 0x00000080;
+              nextDue_ = input.readUInt64();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -455,6 +528,79 @@ public final class Proto {
       return estSecondsPracticed100Days_;
     }
 
+    public static final int INTERVAL_SECS_FIELD_NUMBER = 7;
+    private long intervalSecs_;
+    /**
+     * <code>optional uint64 interval_secs = 7;</code>
+     *
+     * <pre>
+     * The spaced-repetition state of the skill (see SpacedRepetition), which each practice
+     * updates.  The number of seconds between the last review and the next.
+     * </pre>
+     */
+    public boolean hasIntervalSecs() {
+      return ((bitField0_ & 0x00000020) == 0x00000020);
+    }
+    /**
+     * <code>optional uint64 interval_secs = 7;</code>
+     *
+     * <pre>
+     * The spaced-repetition state of the skill (see SpacedRepetition), which each practice
+     * updates.  The number of seconds between the last review and the next.
+     * </pre>
+     */
+    public long getIntervalSecs() {
+      return intervalSecs_;
+    }
+
+    public static final int EASE_PERMILLE_FIELD_NUMBER = 8;
+    private int easePermille_;
+    /**
+     * <code>optional int32 ease_permille = 8 [default = 2500];</code>
+     *
+     * <pre>
+     * The factor by which the interval grows after a successful review, in thousandths.
+     * </pre>
+     */
+    public boolean hasEasePermille() {
+      return ((bitField0_ & 0x00000040) == 0x00000040);
+    }
+    /**
+     * <code>optional int32 ease_permille = 8 [default = 2500];</code>
+     *
+     * <pre>
+     * The factor by which the interval grows after a successful review, in thousandths.
+     * </pre>
+     */
+    public int getEasePermille() {
+      return easePermille_;
+    }
+
+    public static final int NEXT_DUE_FIELD_NUMBER = 9;
+    private long nextDue_;
+    /**
+     * <code>optional uint64 next_due = 9;</code>
+     *
+     * <pre>
+     * When the skill is next due for review, specified as seconds since the epoch.  If
+     * missing, the skill was never practiced, and is due now.
+     * </pre>
+     */
+    public boolean hasNextDue() {
+      return ((bitField0_ & 0x00000080) == 0x00000080);
+    }
+    /**
+     * <code>optional uint64 next_due = 9;</code>
+     *
+     * <pre>
+     * When the skill is next due for review, specified as seconds since the epoch.  If
+     * missing, the skill was never practiced, and is due now.
+     * </pre>
+     */
+    public long getNextDue() {
+      return nextDue_;
+    }
+
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
@@ -485,6 +631,15 @@ public final class Proto {
       if (((bitField0_ & 0x00000010) == 0x00000010)) {
         output.writeUInt64(6, estSecondsPracticed100Days_);
       }
+      if (((bitField0_ & 0x00000020) == 0x00000020)) {
+        output.writeUInt64(7, intervalSecs_);
+      }
+      if (((bitField0_ & 0x00000040) == 0x00000040)) {
+        output.writeInt32(8, easePermille_);
+      }
+      if (((bitField0_ & 0x00000080) == 0x00000080)) {
+        output.writeUInt64(9, nextDue_);
+      }
       unknownFields.writeTo(output);
     }
 
@@ -521,6 +676,18 @@ public final class Proto {
         size += com.google.protobuf.CodedOutputStream
           .computeUInt64Size(6, estSecondsPracticed100Days_);
       }
+      if (((bitField0_ & 0x00000020) == 0x00000020)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt64Size(7, intervalSecs_);
+      }
+      if (((bitField0_ & 0x00000040) == 0x00000040)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(8, easePermille_);
+      }
+      if (((bitField0_ & 0x00000080) == 0x00000080)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt64Size(9, nextDue_);
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -652,6 +819,12 @@ public final class Proto {
         bitField0_ = (bitField0_ & ~0x00000010);
         estSecondsPracticed100Days_ = 0L;
         bitField0_ = (bitField0_ & ~0x00000020);
+        intervalSecs_ = 0L;
+        bitField0_ = (bitField0_ & ~0x00000040);
+        easePermille_ = 2500;
+        bitField0_ = (bitField0_ & ~0x00000080);
+        nextDue_ = 0L;
+        bitField0_ = (bitField0_ & ~0x00000100);
         return this;
       }
 
@@ -701,6 +874,18 @@ public final class Proto {
           to_bitField0_ |= 0x00000010;
         }
         result.estSecondsPracticed100Days_ = estSecondsPracticed100Days_;
+        if (((from_bitField0_ & 0x00000040) == 0x00000040)) {
+          to_bitField0_ |= 0x00000020;
+        }
+        result.intervalSecs_ = intervalSecs_;
+        if (((from_bitField0_ & 0x00000080) == 0x00000080)) {
+          to_bitField0_ |= 0x00000040;
+        }
+        result.easePermille_ = easePermille_;
+        if (((from_bitField0_ & 0x00000100) == 0x00000100)) {
+          to_bitField0_ |= 0x00000080;
+        }
+        result.nextDue_ = nextDue_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -744,6 +929,15 @@ public final class Proto {
         if (other.hasEstSecondsPracticed100Days()) {
           setEstSecondsPracticed100Days(other.getEstSecondsPracticed100Days());
         }
+        if (other.hasIntervalSecs()) {
+          setIntervalSecs(other.getIntervalSecs());
+        }
+        if (other.hasEasePermille()) {
+          setEasePermille(other.getEasePermille());
+        }
+        if (other.hasNextDue()) {
+          setNextDue(other.getNextDue());
+        }
         this.mergeUnknownFields(other.unknownFields);
         onChanged();
         return this;
@@ -1170,6 +1364,158 @@ public final class Proto {
         return this;
       }
 
+      private long intervalSecs_;
+      /**
+       * <code>optional uint64 interval_secs = 7;</code>
+       *
+       * <pre>
+       * The spaced-repetition state of the skill (see SpacedRepetition), which each practice
+       * updates.  The number of seconds between the last review and the next.
+       * </pre>
+       */
+      public boolean hasIntervalSecs() {
+        return ((bitField0_ & 0x00000040) == 0x00000040);
+      }
+      /**
+       * <code>optional uint64 interval_secs = 7;</code>
+       *
+       * <pre>
+       * The spaced-repetition state of the skill (see SpacedRepetition), which each practice
+       * updates.  The number of seconds between the last review and the next.
+       * </pre>
+       */
+      public long getIntervalSecs() {
+        return intervalSecs_;
+      }
+      /**
+       * <code>optional uint64 interval_secs = 7;</code>
+       *
+       * <pre>
+       * The spaced-repetition state of the skill (see SpacedRepetition), which each practice
+       * updates.  The number of seconds between the last review and the next.
+       * </pre>
+       */
+      public Builder setIntervalSecs(long value) {
+        bitField0_ |= 0x00000040;
+        intervalSecs_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint64 interval_secs = 7;</code>
+       *
+       * <pre>
+       * The spaced-repetition state of the skill (see SpacedRepetition), which each practice
+       * updates.  The number of seconds between the last review and the next.
+       * </pre>
+       */
+      public Builder clearIntervalSecs() {
+        bitField0_ = (bitField0_ & ~0x00000040);
+        intervalSecs_ = 0L;
+        onChanged();
+        return this;
+      }
+
+      private int easePermille_ = 2500;
+      /**
+       * <code>optional int32 ease_permille = 8 [default = 2500];</code>
+       *
+       * <pre>
+       * The factor by which the interval grows after a successful review, in thousandths.
+       * </pre>
+       */
+      public boolean hasEasePermille() {
+        return ((bitField0_ & 0x00000080) == 0x00000080);
+      }
+      /**
+       * <code>optional int32 ease_permille = 8 [default = 2500];</code>
+       *
+       * <pre>
+       * The factor by which the interval grows after a successful review, in thousandths.
+       * </pre>
+       */
+      public int getEasePermille() {
+        return easePermille_;
+      }
+      /**
+       * <code>optional int32 ease_permille = 8 [default = 2500];</code>
+       *
+       * <pre>
+       * The factor by which the interval grows after a successful review, in thousandths.
+       * </pre>
+       */
+      public Builder setEasePermille(int value) {
+        bitField0_ |= 0x00000080;
+        easePermille_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int32 ease_permille = 8 [default = 2500];</code>
+       *
+       * <pre>
+       * The factor by which the interval grows after a successful review, in thousandths.
+       * </pre>
+       */
+      public Builder clearEasePermille() {
+        bitField0_ = (bitField0_ & ~0x00000080);
+        easePermille_ = 2500;
+        onChanged();
+        return this;
+      }
+
+      private long nextDue_;
+      /**
+       * <code>optional uint64 next_due = 9;</code>
+       *
+       * <pre>
+       * When the skill is next due for review, specified as seconds since the epoch.  If
+       * missing, the skill was never practiced, and is due now.
+       * </pre>
+       */
+      public boolean hasNextDue() {
+        return ((bitField0_ & 0x00000100) == 0x00000100);
+      }
+      /**
+       * <code>optional uint64 next_due = 9;</code>
+       *
+       * <pre>
+       * When the skill is next due for review, specified as seconds since the epoch.  If
+       * missing, the skill was never practiced, and is due now.
+       * </pre>
+       */
+      public long getNextDue() {
+        return nextDue_;
+      }
+      /**
+       * <code>optional uint64 next_due = 9;</code>
+       *
+       * <pre>
+       * When the skill is next due for review, specified as seconds since the epoch.  If
+       * missing, the skill was never practiced, and is due now.
+       * </pre>
+       */
+      public Builder setNextDue(long value) {
+        bitField0_ |= 0x00000100;
+        nextDue_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint64 next_due = 9;</code>
+       *
+       * <pre>
+       * When the skill is next due for review, specified as seconds since the epoch.  If
+       * missing, the skill was never practiced, and is due now.
+       * </pre>
+       */
+      public Builder clearNextDue() {
+        bitField0_ = (bitField0_ & ~0x00000100);
+        nextDue_ = 0L;
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:us.paskin.mastery.Skill)
     }
 
@@ -2233,6 +2579,65 @@ public final class Proto {
        * <code>optional int32 duration_in_secs = 2;</code>
        */
       int getDurationInSecs();
+
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      java.util.List<us.paskin.mastery.Proto.Schedule.Slot.Quota> 
+          getQuotaList();
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      us.paskin.mastery.Proto.Schedule.Slot.Quota getQuota(int index);
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      int getQuotaCount();
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      java.util.List<? extends us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder> 
+          getQuotaOrBuilderList();
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder getQuotaOrBuilder(
+          int index);
     }
     /**
      * Protobuf type {@code us.paskin.mastery.Schedule.Slot}
@@ -2252,6 +2657,7 @@ public final class Proto {
       private Slot() {
         groupId_ = 0L;
         durationInSecs_ = 0;
+        quota_ = java.util.Collections.emptyList();
       }
 
       @java.lang.Override
@@ -2291,6 +2697,14 @@ public final class Proto {
                 durationInSecs_ = input.readInt32();
                 break;
               }
+              case 26: {
+                if (!((mutable_bitField0_ & 0x00000004) == 0x00000004)) {
+                  quota_ = new java.util.ArrayList<us.paskin.mastery.Proto.Schedule.Slot.Quota>();
+                  mutable_bitField0_ |= 0x00000004;
+                }
+                quota_.add(input.readMessage(us.paskin.mastery.Proto.Schedule.Slot.Quota.parser(), extensionRegistry));
+                break;
+              }
             }
           }
         } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -2300,6 +2714,9 @@ public final class Proto {
               new com.google.protobuf.InvalidProtocolBufferException(
                   e.getMessage()).setUnfinishedMessage(this));
         } finally {
+          if (((mutable_bitField0_ & 0x00000004) == 0x00000004)) {
+            quota_ = java.util.Collections.unmodifiableList(quota_);
+          }
           this.unknownFields = unknownFields.build();
           makeExtensionsImmutable();
         }
@@ -2317,38 +2734,661 @@ public final class Proto {
                 us.paskin.mastery.Proto.Schedule.Slot.class, us.paskin.mastery.Proto.Schedule.Slot.Builder.class);
       }
 
-      private int bitField0_;
-      public static final int GROUP_ID_FIELD_NUMBER = 1;
-      private long groupId_;
-      /**
-       * <code>optional int64 group_id = 1;</code>
-       */
-      public boolean hasGroupId() {
-        return ((bitField0_ & 0x00000001) == 0x00000001);
-      }
-      /**
-       * <code>optional int64 group_id = 1;</code>
-       */
-      public long getGroupId() {
-        return groupId_;
-      }
+      public interface QuotaOrBuilder extends
+          // @@protoc_insertion_point(interface_extends:us.paskin.mastery.Schedule.Slot.Quota)
+          com.google.protobuf.MessageOrBuilder {
 
-      public static final int DURATION_IN_SECS_FIELD_NUMBER = 2;
-      private int durationInSecs_;
-      /**
-       * <code>optional int32 duration_in_secs = 2;</code>
-       */
-      public boolean hasDurationInSecs() {
-        return ((bitField0_ & 0x00000002) == 0x00000002);
+        /**
+         * <code>optional int64 group_id = 1;</code>
+         *
+         * <pre>
+         * The ID of a descendant of the slot's group.
+         * </pre>
+         */
+        boolean hasGroupId();
+        /**
+         * <code>optional int64 group_id = 1;</code>
+         *
+         * <pre>
+         * The ID of a descendant of the slot's group.
+         * </pre>
+         */
+        long getGroupId();
+
+        /**
+         * <code>optional int32 percent = 2;</code>
+         *
+         * <pre>
+         * The percentage of such slots that are filled from the group.  Must be positive.
+         * </pre>
+         */
+        boolean hasPercent();
+        /**
+         * <code>optional int32 percent = 2;</code>
+         *
+         * <pre>
+         * The percentage of such slots that are filled from the group.  Must be positive.
+         * </pre>
+         */
+        int getPercent();
       }
       /**
-       * <code>optional int32 duration_in_secs = 2;</code>
+       * Protobuf type {@code us.paskin.mastery.Schedule.Slot.Quota}
+       *
+       * <pre>
+       * A share of the slot for a group within group_id.
+       * </pre>
        */
-      public int getDurationInSecs() {
-        return durationInSecs_;
-      }
+      public  static final class Quota extends
+          com.google.protobuf.GeneratedMessage implements
+          // @@protoc_insertion_point(message_implements:us.paskin.mastery.Schedule.Slot.Quota)
+          QuotaOrBuilder {
+        // Use Quota.newBuilder() to construct.
+        private Quota(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+          super(builder);
+        }
+        private Quota() {
+          groupId_ = 0L;
+          percent_ = 0;
+        }
 
-      private byte memoizedIsInitialized = -1;
+        @java.lang.Override
+        public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+          return this.unknownFields;
+        }
+        private Quota(
+            com.google.protobuf.CodedInputStream input,
+            com.google.protobuf.ExtensionRegistryLite extensionRegistry) {
+          this();
+          int mutable_bitField0_ = 0;
+          com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+              com.google.protobuf.UnknownFieldSet.newBuilder();
+          try {
+            boolean done = false;
+            while (!done) {
+              int tag = input.readTag();
+              switch (tag) {
+                case 0:
+                  done = true;
+                  break;
+                default: {
+                  if (!parseUnknownField(input, unknownFields,
+                                         extensionRegistry, tag)) {
+                    done = true;
+                  }
+                  break;
+                }
+                case 8: {
+                  bitField0_ |= 0x00000001;
+                  groupId_ = input.readInt64();
+                  break;
+                }
+                case 16: {
+                  bitField0_ |= 0x00000002;
+                  percent_ = input.readInt32();
+                  break;
+                }
+              }
+            }
+          } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+            throw new RuntimeException(e.setUnfinishedMessage(this));
+          } catch (java.io.IOException e) {
+            throw new RuntimeException(
+                new com.google.protobuf.InvalidProtocolBufferException(
+                    e.getMessage()).setUnfinishedMessage(this));
+          } finally {
+            this.unknownFields = unknownFields.build();
+            makeExtensionsImmutable();
+          }
+        }
+
+        public static final com.google.protobuf.Descriptors.Descriptor
+            getDescriptor() {
+          return us.paskin.mastery.Proto.internal_static_us_paskin_mastery_Schedule_Slot_Quota_descriptor;
+        }
+
+        protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+            internalGetFieldAccessorTable() {
+          return us.paskin.mastery.Proto.internal_static_us_paskin_mastery_Schedule_Slot_Quota_fieldAccessorTable
+              .ensureFieldAccessorsInitialized(
+                  us.paskin.mastery.Proto.Schedule.Slot.Quota.class, us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder.class);
+        }
+
+        private int bitField0_;
+        public static final int GROUP_ID_FIELD_NUMBER = 1;
+        private long groupId_;
+        /**
+         * <code>optional int64 group_id = 1;</code>
+         *
+         * <pre>
+         * The ID of a descendant of the slot's group.
+         * </pre>
+         */
+        public boolean hasGroupId() {
+          return ((bitField0_ & 0x00000001) == 0x00000001);
+        }
+        /**
+         * <code>optional int64 group_id = 1;</code>
+         *
+         * <pre>
+         * The ID of a descendant of the slot's group.
+         * </pre>
+         */
+        public long getGroupId() {
+          return groupId_;
+        }
+
+        public static final int PERCENT_FIELD_NUMBER = 2;
+        private int percent_;
+        /**
+         * <code>optional int32 percent = 2;</code>
+         *
+         * <pre>
+         * The percentage of such slots that are filled from the group.  Must be positive.
+         * </pre>
+         */
+        public boolean hasPercent() {
+          return ((bitField0_ & 0x00000002) == 0x00000002);
+        }
+        /**
+         * <code>optional int32 percent = 2;</code>
+         *
+         * <pre>
+         * The percentage of such slots that are filled from the group.  Must be positive.
+         * </pre>
+         */
+        public int getPercent() {
+          return percent_;
+        }
+
+        private byte memoizedIsInitialized = -1;
+        public final boolean isInitialized() {
+          byte isInitialized = memoizedIsInitialized;
+          if (isInitialized == 1) return true;
+          if (isInitialized == 0) return false;
+
+          memoizedIsInitialized = 1;
+          return true;
+        }
+
+        public void writeTo(com.google.protobuf.CodedOutputStream output)
+                            throws java.io.IOException {
+          if (((bitField0_ & 0x00000001) == 0x00000001)) {
+            output.writeInt64(1, groupId_);
+          }
+          if (((bitField0_ & 0x00000002) == 0x00000002)) {
+            output.writeInt32(2, percent_);
+          }
+          unknownFields.writeTo(output);
+        }
+
+        public int getSerializedSize() {
+          int size = memoizedSize;
+          if (size != -1) return size;
+
+          size = 0;
+          if (((bitField0_ & 0x00000001) == 0x00000001)) {
+            size += com.google.protobuf.CodedOutputStream
+              .computeInt64Size(1, groupId_);
+          }
+          if (((bitField0_ & 0x00000002) == 0x00000002)) {
+            size += com.google.protobuf.CodedOutputStream
+                    .computeInt32Size(2, percent_);
+          }
+          size += unknownFields.getSerializedSize();
+          memoizedSize = size;
+          return size;
+        }
+
+        private static final long serialVersionUID = 0L;
+
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseFrom(
+                com.google.protobuf.ByteString data)
+                throws com.google.protobuf.InvalidProtocolBufferException {
+          return PARSER.parseFrom(data);
+        }
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseFrom(
+            com.google.protobuf.ByteString data,
+            com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+            throws com.google.protobuf.InvalidProtocolBufferException {
+          return PARSER.parseFrom(data, extensionRegistry);
+        }
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseFrom(byte[] data)
+            throws com.google.protobuf.InvalidProtocolBufferException {
+          return PARSER.parseFrom(data);
+        }
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseFrom(
+                byte[] data,
+                com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+            throws com.google.protobuf.InvalidProtocolBufferException {
+          return PARSER.parseFrom(data, extensionRegistry);
+        }
+
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseFrom(java.io.InputStream input)
+            throws java.io.IOException {
+          return PARSER.parseFrom(input);
+        }
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseFrom(
+                java.io.InputStream input,
+            com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+            throws java.io.IOException {
+          return PARSER.parseFrom(input, extensionRegistry);
+        }
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseDelimitedFrom(java.io.InputStream input)
+            throws java.io.IOException {
+          return PARSER.parseDelimitedFrom(input);
+        }
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseDelimitedFrom(
+                java.io.InputStream input,
+                com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+            throws java.io.IOException {
+          return PARSER.parseDelimitedFrom(input, extensionRegistry);
+        }
+
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseFrom(
+            com.google.protobuf.CodedInputStream input)
+            throws java.io.IOException {
+          return PARSER.parseFrom(input);
+        }
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota parseFrom(
+            com.google.protobuf.CodedInputStream input,
+            com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+            throws java.io.IOException {
+          return PARSER.parseFrom(input, extensionRegistry);
+        }
+
+        public Builder newBuilderForType() { return newBuilder(); }
+        public static Builder newBuilder() {
+          return DEFAULT_INSTANCE.toBuilder();
+        }
+        public static Builder newBuilder(us.paskin.mastery.Proto.Schedule.Slot.Quota prototype) {
+          return DEFAULT_INSTANCE.toBuilder().mergeFrom(prototype);
+        }
+        public Builder toBuilder() {
+          return this == DEFAULT_INSTANCE
+              ? new Builder() : new Builder().mergeFrom(this);
+        }
+
+        @java.lang.Override
+        protected Builder newBuilderForType(
+            com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+          Builder builder = new Builder(parent);
+          return builder;
+        }
+        /**
+         * Protobuf type {@code us.paskin.mastery.Schedule.Slot.Quota}
+         *
+         * <pre>
+         * A share of the slot for a group within group_id.
+         * </pre>
+         */
+        public static final class Builder extends
+            com.google.protobuf.GeneratedMessage.Builder<Builder> implements
+            // @@protoc_insertion_point(builder_implements:us.paskin.mastery.Schedule.Slot.Quota)
+            us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder {
+          public static final com.google.protobuf.Descriptors.Descriptor
+              getDescriptor() {
+            return us.paskin.mastery.Proto.internal_static_us_paskin_mastery_Schedule_Slot_Quota_descriptor;
+          }
+
+          protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+              internalGetFieldAccessorTable() {
+            return us.paskin.mastery.Proto.internal_static_us_paskin_mastery_Schedule_Slot_Quota_fieldAccessorTable
+                .ensureFieldAccessorsInitialized(
+                    us.paskin.mastery.Proto.Schedule.Slot.Quota.class, us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder.class);
+          }
+
+          // Construct using us.paskin.mastery.Proto.Schedule.Slot.Quota.newBuilder()
+          private Builder() {
+            maybeForceBuilderInitialization();
+          }
+
+          private Builder(
+              com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+            super(parent);
+            maybeForceBuilderInitialization();
+          }
+          private void maybeForceBuilderInitialization() {
+            if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+            }
+          }
+          public Builder clear() {
+            super.clear();
+            groupId_ = 0L;
+            bitField0_ = (bitField0_ & ~0x00000001);
+            percent_ = 0;
+            bitField0_ = (bitField0_ & ~0x00000002);
+            return this;
+          }
+
+          public com.google.protobuf.Descriptors.Descriptor
+              getDescriptorForType() {
+            return us.paskin.mastery.Proto.internal_static_us_paskin_mastery_Schedule_Slot_Quota_descriptor;
+          }
+
+          public us.paskin.mastery.Proto.Schedule.Slot.Quota getDefaultInstanceForType() {
+            return us.paskin.mastery.Proto.Schedule.Slot.Quota.getDefaultInstance();
+          }
+
+          public us.paskin.mastery.Proto.Schedule.Slot.Quota build() {
+            us.paskin.mastery.Proto.Schedule.Slot.Quota result = buildPartial();
+            if (!result.isInitialized()) {
+              throw newUninitializedMessageException(result);
+            }
+            return result;
+          }
+
+          public us.paskin.mastery.Proto.Schedule.Slot.Quota buildPartial() {
+            us.paskin.mastery.Proto.Schedule.Slot.Quota result = new us.paskin.mastery.Proto.Schedule.Slot.Quota(this);
+            int from_bitField0_ = bitField0_;
+            int to_bitField0_ = 0;
+            if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+              to_bitField0_ |= 0x00000001;
+            }
+            result.groupId_ = groupId_;
+            if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+              to_bitField0_ |= 0x00000002;
+            }
+            result.percent_ = percent_;
+            result.bitField0_ = to_bitField0_;
+            onBuilt();
+            return result;
+          }
+
+          public Builder mergeFrom(com.google.protobuf.Message other) {
+            if (other instanceof us.paskin.mastery.Proto.Schedule.Slot.Quota) {
+              return mergeFrom((us.paskin.mastery.Proto.Schedule.Slot.Quota)other);
+            } else {
+              super.mergeFrom(other);
+              return this;
+            }
+          }
+
+          public Builder mergeFrom(us.paskin.mastery.Proto.Schedule.Slot.Quota other) {
+            if (other == us.paskin.mastery.Proto.Schedule.Slot.Quota.getDefaultInstance()) return this;
+            if (other.hasGroupId()) {
+              setGroupId(other.getGroupId());
+            }
+            if (other.hasPercent()) {
+              setPercent(other.getPercent());
+            }
+            this.mergeUnknownFields(other.unknownFields);
+            onChanged();
+            return this;
+          }
+
+          public final boolean isInitialized() {
+            return true;
+          }
+
+          public Builder mergeFrom(
+              com.google.protobuf.CodedInputStream input,
+              com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+              throws java.io.IOException {
+            us.paskin.mastery.Proto.Schedule.Slot.Quota parsedMessage = null;
+            try {
+              parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+            } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+              parsedMessage = (us.paskin.mastery.Proto.Schedule.Slot.Quota) e.getUnfinishedMessage();
+              throw e;
+            } finally {
+              if (parsedMessage != null) {
+                mergeFrom(parsedMessage);
+              }
+            }
+            return this;
+          }
+          private int bitField0_;
+
+          private long groupId_ ;
+          /**
+           * <code>optional int64 group_id = 1;</code>
+           *
+           * <pre>
+           * The ID of a descendant of the slot's group.
+           * </pre>
+           */
+          public boolean hasGroupId() {
+            return ((bitField0_ & 0x00000001) == 0x00000001);
+          }
+          /**
+           * <code>optional int64 group_id = 1;</code>
+           *
+           * <pre>
+           * The ID of a descendant of the slot's group.
+           * </pre>
+           */
+          public long getGroupId() {
+            return groupId_;
+          }
+          /**
+           * <code>optional int64 group_id = 1;</code>
+           *
+           * <pre>
+           * The ID of a descendant of the slot's group.
+           * </pre>
+           */
+          public Builder setGroupId(long value) {
+            bitField0_ |= 0x00000001;
+            groupId_ = value;
+            onChanged();
+            return this;
+          }
+          /**
+           * <code>optional int64 group_id = 1;</code>
+           *
+           * <pre>
+           * The ID of a descendant of the slot's group.
+           * </pre>
+           */
+          public Builder clearGroupId() {
+            bitField0_ = (bitField0_ & ~0x00000001);
+            groupId_ = 0L;
+            onChanged();
+            return this;
+          }
+
+          private int percent_ ;
+          /**
+           * <code>optional int32 percent = 2;</code>
+           *
+           * <pre>
+           * The percentage of such slots that are filled from the group.  Must be positive.
+           * </pre>
+           */
+          public boolean hasPercent() {
+            return ((bitField0_ & 0x00000002) == 0x00000002);
+          }
+          /**
+           * <code>optional int32 percent = 2;</code>
+           *
+           * <pre>
+           * The percentage of such slots that are filled from the group.  Must be positive.
+           * </pre>
+           */
+          public int getPercent() {
+            return percent_;
+          }
+          /**
+           * <code>optional int32 percent = 2;</code>
+           *
+           * <pre>
+           * The percentage of such slots that are filled from the group.  Must be positive.
+           * </pre>
+           */
+          public Builder setPercent(int value) {
+            bitField0_ |= 0x00000002;
+            percent_ = value;
+            onChanged();
+            return this;
+          }
+          /**
+           * <code>optional int32 percent = 2;</code>
+           *
+           * <pre>
+           * The percentage of such slots that are filled from the group.  Must be positive.
+           * </pre>
+           */
+          public Builder clearPercent() {
+            bitField0_ = (bitField0_ & ~0x00000002);
+            percent_ = 0;
+            onChanged();
+            return this;
+          }
+
+          // @@protoc_insertion_point(builder_scope:us.paskin.mastery.Schedule.Slot.Quota)
+        }
+
+        // @@protoc_insertion_point(class_scope:us.paskin.mastery.Schedule.Slot.Quota)
+        private static final us.paskin.mastery.Proto.Schedule.Slot.Quota DEFAULT_INSTANCE;
+
+        static {
+          DEFAULT_INSTANCE = new us.paskin.mastery.Proto.Schedule.Slot.Quota();
+        }
+
+        public static us.paskin.mastery.Proto.Schedule.Slot.Quota getDefaultInstance() {
+          return DEFAULT_INSTANCE;
+        }
+
+        @java.lang.Deprecated
+        public static final com.google.protobuf.Parser<Quota>
+            PARSER = new com.google.protobuf.AbstractParser<Quota>() {
+          public Quota parsePartialFrom(
+              com.google.protobuf.CodedInputStream input,
+              com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+              throws com.google.protobuf.InvalidProtocolBufferException {
+            try {
+              return new Quota(input, extensionRegistry);
+            } catch (RuntimeException e) {
+              if (e.getCause() instanceof
+                  com.google.protobuf.InvalidProtocolBufferException) {
+                throw (com.google.protobuf.InvalidProtocolBufferException)
+                    e.getCause();
+              }
+              throw e;
+            }
+          }
+        };
+
+        public static com.google.protobuf.Parser<Quota> parser() {
+          return PARSER;
+        }
+
+        @java.lang.Override
+        public com.google.protobuf.Parser<Quota> getParserForType() {
+          return PARSER;
+        }
+
+        public us.paskin.mastery.Proto.Schedule.Slot.Quota getDefaultInstanceForType() {
+          return DEFAULT_INSTANCE;
+        }
+
+      }
+
+      private int bitField0_;
+      public static final int GROUP_ID_FIELD_NUMBER = 1;
+      private long groupId_;
+      /**
+       * <code>optional int64 group_id = 1;</code>
+       */
+      public boolean hasGroupId() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>optional int64 group_id = 1;</code>
+       */
+      public long getGroupId() {
+        return groupId_;
+      }
+
+      public static final int DURATION_IN_SECS_FIELD_NUMBER = 2;
+      private int durationInSecs_;
+      /**
+       * <code>optional int32 duration_in_secs = 2;</code>
+       */
+      public boolean hasDurationInSecs() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>optional int32 duration_in_secs = 2;</code>
+       */
+      public int getDurationInSecs() {
+        return durationInSecs_;
+      }
+
+      public static final int QUOTA_FIELD_NUMBER = 3;
+      private java.util.List<us.paskin.mastery.Proto.Schedule.Slot.Quota> quota_;
+
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      public java.util.List<us.paskin.mastery.Proto.Schedule.Slot.Quota> getQuotaList() {
+        return quota_;
+      }
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      public java.util.List<? extends us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder> 
+          getQuotaOrBuilderList() {
+        return quota_;
+      }
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      public int getQuotaCount() {
+        return quota_.size();
+      }
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      public us.paskin.mastery.Proto.Schedule.Slot.Quota getQuota(int index) {
+        return quota_.get(index);
+      }
+      /**
+       * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+       *
+       * <pre>
+       * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+       * scales.  If present, the percentages must total 100, and each slot is filled from
+       * one of these groups, with the slots that have the same group and quotas shared among
+       * the groups in proportion to their percentages.  Optional.
+       * </pre>
+       */
+      public us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder getQuotaOrBuilder(
+          int index) {
+        return quota_.get(index);
+      }
+
+      private byte memoizedIsInitialized = -1;
       public final boolean isInitialized() {
         byte isInitialized = memoizedIsInitialized;
         if (isInitialized == 1) return true;
@@ -2366,6 +3406,9 @@ public final class Proto {
         if (((bitField0_ & 0x00000002) == 0x00000002)) {
           output.writeInt32(2, durationInSecs_);
         }
+        for (int i = 0; i < quota_.size(); i++) {
+          output.writeMessage(3, quota_.get(i));
+        }
         unknownFields.writeTo(output);
       }
 
@@ -2382,6 +3425,10 @@ public final class Proto {
           size += com.google.protobuf.CodedOutputStream
                   .computeInt32Size(2, durationInSecs_);
         }
+        for (int i = 0; i < quota_.size(); i++) {
+          size += com.google.protobuf.CodedOutputStream
+            .computeMessageSize(3, quota_.get(i));
+        }
         size += unknownFields.getSerializedSize();
         memoizedSize = size;
         return size;
@@ -2497,6 +3544,7 @@ public final class Proto {
         }
         private void maybeForceBuilderInitialization() {
           if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+            getQuotaFieldBuilder();
           }
         }
         public Builder clear() {
@@ -2505,6 +3553,12 @@ public final class Proto {
           bitField0_ = (bitField0_ & ~0x00000001);
           durationInSecs_ = 0;
           bitField0_ = (bitField0_ & ~0x00000002);
+          if (quotaBuilder_ == null) {
+            quota_ = java.util.Collections.emptyList();
+            bitField0_ = (bitField0_ & ~0x00000004);
+          } else {
+            quotaBuilder_.clear();
+          }
           return this;
         }
 
@@ -2537,6 +3591,15 @@ public final class Proto {
             to_bitField0_ |= 0x00000002;
           }
           result.durationInSecs_ = durationInSecs_;
+          if (quotaBuilder_ == null) {
+            if (((bitField0_ & 0x00000004) == 0x00000004)) {
+              quota_ = java.util.Collections.unmodifiableList(quota_);
+              bitField0_ = (bitField0_ & ~0x00000004);
+            }
+            result.quota_ = quota_;
+          } else {
+            result.quota_ = quotaBuilder_.build();
+          }
           result.bitField0_ = to_bitField0_;
           onBuilt();
           return result;
@@ -2559,6 +3622,32 @@ public final class Proto {
           if (other.hasDurationInSecs()) {
             setDurationInSecs(other.getDurationInSecs());
           }
+          if (quotaBuilder_ == null) {
+            if (!other.quota_.isEmpty()) {
+              if (quota_.isEmpty()) {
+                quota_ = other.quota_;
+                bitField0_ = (bitField0_ & ~0x00000004);
+              } else {
+                ensureQuotaIsMutable();
+                quota_.addAll(other.quota_);
+              }
+              onChanged();
+            }
+          } else {
+            if (!other.quota_.isEmpty()) {
+              if (quotaBuilder_.isEmpty()) {
+                quotaBuilder_.dispose();
+                quotaBuilder_ = null;
+                quota_ = other.quota_;
+                bitField0_ = (bitField0_ & ~0x00000004);
+                quotaBuilder_ = 
+                  com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                     getQuotaFieldBuilder() : null;
+              } else {
+                quotaBuilder_.addAllMessages(other.quota_);
+              }
+            }
+          }
           this.mergeUnknownFields(other.unknownFields);
           onChanged();
           return this;
@@ -2651,6 +3740,374 @@ public final class Proto {
           return this;
         }
 
+        private java.util.List<us.paskin.mastery.Proto.Schedule.Slot.Quota> quota_ =
+          java.util.Collections.emptyList();
+        private void ensureQuotaIsMutable() {
+          if (!((bitField0_ & 0x00000004) == 0x00000004)) {
+            quota_ = new java.util.ArrayList<us.paskin.mastery.Proto.Schedule.Slot.Quota>(quota_);
+            bitField0_ |= 0x00000004;
+           }
+        }
+
+        private com.google.protobuf.RepeatedFieldBuilder<
+            us.paskin.mastery.Proto.Schedule.Slot.Quota, us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder, us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder> quotaBuilder_;
+
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public java.util.List<us.paskin.mastery.Proto.Schedule.Slot.Quota> getQuotaList() {
+          if (quotaBuilder_ == null) {
+            return java.util.Collections.unmodifiableList(quota_);
+          } else {
+            return quotaBuilder_.getMessageList();
+          }
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public int getQuotaCount() {
+          if (quotaBuilder_ == null) {
+            return quota_.size();
+          } else {
+            return quotaBuilder_.getCount();
+          }
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public us.paskin.mastery.Proto.Schedule.Slot.Quota getQuota(int index) {
+          if (quotaBuilder_ == null) {
+            return quota_.get(index);
+          } else {
+            return quotaBuilder_.getMessage(index);
+          }
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public Builder setQuota(
+            int index, us.paskin.mastery.Proto.Schedule.Slot.Quota value) {
+          if (quotaBuilder_ == null) {
+            if (value == null) {
+              throw new NullPointerException();
+            }
+            ensureQuotaIsMutable();
+            quota_.set(index, value);
+            onChanged();
+          } else {
+            quotaBuilder_.setMessage(index, value);
+          }
+          return this;
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public Builder setQuota(
+            int index, us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder builderForValue) {
+          if (quotaBuilder_ == null) {
+            ensureQuotaIsMutable();
+            quota_.set(index, builderForValue.build());
+            onChanged();
+          } else {
+            quotaBuilder_.setMessage(index, builderForValue.build());
+          }
+          return this;
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public Builder addQuota(us.paskin.mastery.Proto.Schedule.Slot.Quota value) {
+          if (quotaBuilder_ == null) {
+            if (value == null) {
+              throw new NullPointerException();
+            }
+            ensureQuotaIsMutable();
+            quota_.add(value);
+            onChanged();
+          } else {
+            quotaBuilder_.addMessage(value);
+          }
+          return this;
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public Builder addQuota(
+            int index, us.paskin.mastery.Proto.Schedule.Slot.Quota value) {
+          if (quotaBuilder_ == null) {
+            if (value == null) {
+              throw new NullPointerException();
+            }
+            ensureQuotaIsMutable();
+            quota_.add(index, value);
+            onChanged();
+          } else {
+            quotaBuilder_.addMessage(index, value);
+          }
+          return this;
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public Builder addQuota(
+            us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder builderForValue) {
+          if (quotaBuilder_ == null) {
+            ensureQuotaIsMutable();
+            quota_.add(builderForValue.build());
+            onChanged();
+          } else {
+            quotaBuilder_.addMessage(builderForValue.build());
+          }
+          return this;
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public Builder addQuota(
+            int index, us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder builderForValue) {
+          if (quotaBuilder_ == null) {
+            ensureQuotaIsMutable();
+            quota_.add(index, builderForValue.build());
+            onChanged();
+          } else {
+            quotaBuilder_.addMessage(index, builderForValue.build());
+          }
+          return this;
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public Builder addAllQuota(
+            java.lang.Iterable<? extends us.paskin.mastery.Proto.Schedule.Slot.Quota> values) {
+          if (quotaBuilder_ == null) {
+            ensureQuotaIsMutable();
+            com.google.protobuf.AbstractMessageLite.Builder.addAll(
+                values, quota_);
+            onChanged();
+          } else {
+            quotaBuilder_.addAllMessages(values);
+          }
+          return this;
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public Builder clearQuota() {
+          if (quotaBuilder_ == null) {
+            quota_ = java.util.Collections.emptyList();
+            bitField0_ = (bitField0_ & ~0x00000004);
+            onChanged();
+          } else {
+            quotaBuilder_.clear();
+          }
+          return this;
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public Builder removeQuota(int index) {
+          if (quotaBuilder_ == null) {
+            ensureQuotaIsMutable();
+            quota_.remove(index);
+            onChanged();
+          } else {
+            quotaBuilder_.remove(index);
+          }
+          return this;
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder getQuotaBuilder(
+                int index) {
+          return getQuotaFieldBuilder().getBuilder(index);
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder getQuotaOrBuilder(
+                int index) {
+          if (quotaBuilder_ == null) {
+            return quota_.get(index);  } else {
+            return quotaBuilder_.getMessageOrBuilder(index);
+          }
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public java.util.List<? extends us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder> 
+             getQuotaOrBuilderList() {
+          if (quotaBuilder_ != null) {
+            return quotaBuilder_.getMessageOrBuilderList();
+          } else {
+            return java.util.Collections.unmodifiableList(quota_);
+          }
+        }
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder addQuotaBuilder() {
+          return getQuotaFieldBuilder().addBuilder(
+                  us.paskin.mastery.Proto.Schedule.Slot.Quota.getDefaultInstance());
+        }
+
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder addQuotaBuilder(
+                int index) {
+          return getQuotaFieldBuilder().addBuilder(
+              index, us.paskin.mastery.Proto.Schedule.Slot.Quota.getDefaultInstance());
+        }
+
+        /**
+         * <code>repeated .us.paskin.mastery.Schedule.Slot.Quota quota = 3;</code>
+         *
+         * <pre>
+         * Sub-quotas over the groups within group_id, e.g., half major scales and half minor
+         * scales.  If present, the percentages must total 100, and each slot is filled from
+         * one of these groups, with the slots that have the same group and quotas shared among
+         * the groups in proportion to their percentages.  Optional.
+         * </pre>
+         */
+        public java.util.List<us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder>
+        getQuotaBuilderList() {
+          return getQuotaFieldBuilder().getBuilderList();
+        }
+        private com.google.protobuf.RepeatedFieldBuilder<
+            us.paskin.mastery.Proto.Schedule.Slot.Quota, us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder, us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder> 
+            getQuotaFieldBuilder() {
+          if (quotaBuilder_ == null) {
+            quotaBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+                us.paskin.mastery.Proto.Schedule.Slot.Quota, us.paskin.mastery.Proto.Schedule.Slot.Quota.Builder, us.paskin.mastery.Proto.Schedule.Slot.QuotaOrBuilder>(
+                    quota_,
+                    ((bitField0_ & 0x00000004) == 0x00000004),
+                    getParentForChildren(),
+                    isClean());
+            quota_ = null;
+          }
+          return quotaBuilder_;
+        }
+
         // @@protoc_insertion_point(builder_scope:us.paskin.mastery.Schedule.Slot)
       }
 
@@ -3475,6 +4932,11 @@ public final class Proto {
   private static
     com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internal_static_us_paskin_mastery_Schedule_Slot_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_us_paskin_mastery_Schedule_Slot_Quota_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_us_paskin_mastery_Schedule_Slot_Quota_fieldAccessorTable;
 
   public static com.google.protobuf.Descriptors.FileDescriptor
   getDescriptor() {
@@ -3486,17 +4948,21 @@ public final class Proto {
 
   static {
     java.lang.String[] descriptorData = {
-            "\n\035us/paskin/mastery/skill.proto\022\021us.pask" +
-                    "in.mastery\"\235\001\n\005Skill\022\014\n\004name\030\001 \001(\t\022\033\n\023da" +
-                    "te_last_practiced\030\002 \001(\004\022\024\n\010priority\030\003 \001(" +
-                    "\005:\00210\022\020\n\010group_id\030\004 \003(\003\022\031\n\021seconds_pract" +
-                    "iced\030\005 \001(\004\022&\n\036est_seconds_practiced_100_" +
-                    "days\030\006 \001(\004\"9\n\nSkillGroup\022\n\n\002id\030\001 \001(\003\022\014\n\004" +
-                    "name\030\002 \001(\t\022\021\n\tparent_id\030\003 \003(\003\"|\n\010Schedul" +
-      "e\022\014\n\004name\030\001 \001(\t\022.\n\004slot\030\002 \003(\0132 .us.paski" +
-      "n.mastery.Schedule.Slot\0322\n\004Slot\022\020\n\010group" +
-      "_id\030\001 \001(\003\022\030\n\020duration_in_secs\030\002 \001(\005B\032\n\021u",
-            "s.paskin.masteryB\005Proto"
+      "\n\035us/paskin/mastery/skill.proto\022\021us.pask" +
+      "in.mastery\"\343\001\n\005Skill\022\014\n\004name\030\001 \001(\t\022\033\n\023da" +
+      "te_last_practiced\030\002 \001(\004\022\024\n\010priority\030\003 \001(" +
+      "\005:\00210\022\020\n\010group_id\030\004 \003(\003\022\031\n\021seconds_pract" +
+      "iced\030\005 \001(\004\022&\n\036est_seconds_practiced_100_" +
+      "days\030\006 \001(\004\022\025\n\rinterval_secs\030\007 \001(\004\022\033\n\reas" +
+      "e_permille\030\010 \001(\005:\0042500\022\020\n\010next_due\030\t \001(\004" +
+      "\"9\n\nSkillGroup\022\n\n\002id\030\001 \001(\003\022\014\n\004name\030\002 \001(\t" +
+      "\022\021\n\tparent_id\030\003 \003(\003\"\340\001\n\010Schedule\022\014\n\004name" +
+      "\030\001 \001(\t\022.\n\004slot\030\002 \003(\0132 .us.paskin.mastery",
+      ".Schedule.Slot\032\225\001\n\004Slot\022\020\n\010group_id\030\001 \001(" +
+      "\003\022\030\n\020duration_in_secs\030\002 \001(\005\0225\n\005quota\030\003 \003" +
+      "(\0132&.us.paskin.mastery.Schedule.Slot.Quo" +
+      "ta\032*\n\005Quota\022\020\n\010group_id\030\001 \001(\003\022\017\n\007percent" +
+      "\030\002 \001(\005B\032\n\021us.paskin.masteryB\005Proto"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
         new com.google.protobuf.Descriptors.FileDescriptor.    InternalDescriptorAssigner() {
@@ -3515,7 +4981,7 @@ public final class Proto {
     internal_static_us_paskin_mastery_Skill_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_us_paskin_mastery_Skill_descriptor,
-        new java.lang.String[] { "Name", "DateLastPracticed", "Priority", "GroupId", "SecondsPracticed", "EstSecondsPracticed100Days", });
+        new java.lang.String[] { "Name", "DateLastPracticed", "Priority", "GroupId", "SecondsPracticed", "EstSecondsPracticed100Days", "IntervalSecs", "EasePermille", "NextDue", });
     internal_static_us_paskin_mastery_SkillGroup_descriptor =
       getDescriptor().getMessageTypes().get(1);
     internal_static_us_paskin_mastery_SkillGroup_fieldAccessorTable = new
@@ -3533,7 +4999,13 @@ public final class Proto {
     internal_static_us_paskin_mastery_Schedule_Slot_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_us_paskin_mastery_Schedule_Slot_descriptor,
-        new java.lang.String[] { "GroupId", "DurationInSecs", });
+        new java.lang.String[] { "GroupId", "DurationInSecs", "Quota", });
+    internal_static_us_paskin_mastery_Schedule_Slot_Quota_descriptor =
+      internal_static_us_paskin_mastery_Schedule_Slot_descriptor.getNestedTypes().get(0);
+    internal_static_us_paskin_mastery_Schedule_Slot_Quota_fieldAccessorTable = new
+      com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+        internal_static_us_paskin_mastery_Schedule_Slot_Quota_descriptor,
+        new java.lang.String[] { "GroupId", "Percent", });
   }
 
   // @@protoc_insertion_point(outer_class_scope)
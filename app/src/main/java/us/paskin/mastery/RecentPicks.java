@@ -0,0 +1,154 @@
+package us.paskin.mastery;
+
+import java.util.Arrays;
+
+/**
+ * The skills picked for the most recent sessions.  A skill's staleness only changes once it has been
+ * practiced, so without this a skill that was picked but not practiced is just as likely to be picked
+ * for the next session.  Sessions are kept in a ring buffer, and the number of recent sessions each
+ * skill is in is kept in a hash table, so checking whether a skill was picked recently takes
+ * constant time.  This is thread-safe.
+ */
+public final class RecentPicks {
+    private static final long[] NO_SKILL_IDS = new long[0];
+
+    /**
+     * The skill IDs of the most recent sessions.  The oldest is at sessions[oldest], and there are
+     * numSessions of them.  Unfilled slots (-1) are not kept.
+     */
+    private long[][] sessions;
+    private int oldest = 0;
+    private int numSessions = 0;
+
+    /**
+     * The number of recent sessions each skill is in.
+     */
+    private final LongIntMap counts = new LongIntMap();
+
+    /**
+     * @param capacity the number of sessions to remember, which may be zero
+     */
+    public RecentPicks(int capacity) throws IllegalArgumentException {
+        if (capacity < 0) throw new IllegalArgumentException("negative capacity: " + capacity);
+        sessions = new long[capacity][];
+    }
+
+    public synchronized int getCapacity() {
+        return sessions.length;
+    }
+
+    /**
+     * Changes the number of sessions to remember, forgetting the oldest if there are too many.
+     */
+    public synchronized void setCapacity(int capacity) throws IllegalArgumentException {
+        if (capacity < 0) throw new IllegalArgumentException("negative capacity: " + capacity);
+        if (capacity == sessions.length) return;
+        while (numSessions > capacity) removeOldest();
+        long[][] newSessions = new long[capacity][];
+        for (int i = 0; i < numSessions; ++i) newSessions[i] = sessions[(oldest + i) % sessions.length];
+        sessions = newSessions;
+        oldest = 0;
+    }
+
+    /**
+     * Records the skill IDs of a session, as returned by Session.sampleSession, forgetting the oldest
+     * session if there are too many.
+     */
+    public synchronized void add(long[] skillIds) {
+        if (sessions.length == 0) return;
+        if (numSessions == sessions.length) removeOldest();
+        int count = 0;
+        long[] session = new long[skillIds.length];
+        for (long skillId : skillIds) {
+            if (skillId == -1) continue;
+            session[count++] = skillId;
+            counts.put(skillId, getCount(skillId) + 1);
+        }
+        sessions[(oldest + numSessions) % sessions.length] = Arrays.copyOf(session, count);
+        ++numSessions;
+    }
+
+    /**
+     * Returns true if the skill is in one of the recent sessions.
+     */
+    public synchronized boolean contains(long skillId) {
+        return counts.containsKey(skillId);
+    }
+
+    /**
+     * Returns the distinct IDs of the skills in the recent sessions, in increasing order.
+     */
+    public synchronized long[] getSkillIds() {
+        if (counts.size() == 0) return NO_SKILL_IDS;
+        long[] result = new long[counts.size()];
+        int count = 0;
+        LongIntMap seen = new LongIntMap();
+        for (int i = 0; i < numSessions; ++i) {
+            for (long skillId : sessions[(oldest + i) % sessions.length]) {
+                if (seen.containsKey(skillId)) continue;
+                seen.put(skillId, 0);
+                result[count++] = skillId;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the recent sessions as a string, oldest first, for storing in the preferences.  Sessions
+     * are separated by semicolons and skill IDs by commas.
+     */
+    public synchronized String encode() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < numSessions; ++i) {
+            if (i > 0) builder.append(';');
+            long[] session = sessions[(oldest + i) % sessions.length];
+            for (int j = 0; j < session.length; ++j) {
+                if (j > 0) builder.append(',');
+                builder.append(session[j]);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the recent sessions given by a string returned by encode, keeping at most capacity of
+     * the newest.  Throws IllegalArgumentException if the string is malformed.
+     */
+    public static RecentPicks decode(String encoded, int capacity) throws IllegalArgumentException {
+        RecentPicks result = new RecentPicks(capacity);
+        if (encoded.isEmpty()) return result;
+        for (String session : encoded.split(";", -1)) {
+            String[] fields = session.isEmpty() ? new String[0] : session.split(",", -1);
+            long[] skillIds = new long[fields.length];
+            for (int i = 0; i < fields.length; ++i) {
+                try {
+                    skillIds[i] = Long.parseLong(fields[i]);
+                } catch (NumberFormatException x) {
+                    throw new IllegalArgumentException("invalid skill ID: " + fields[i]);
+                }
+            }
+            result.add(skillIds);
+        }
+        return result;
+    }
+
+    private void removeOldest() {
+        for (long skillId : sessions[oldest]) {
+            final int count = getCount(skillId);
+            if (count == 1) {
+                counts.remove(skillId);
+            } else {
+                counts.put(skillId, count - 1);
+            }
+        }
+        sessions[oldest] = null;
+        oldest = (oldest + 1) % sessions.length;
+        --numSessions;
+    }
+
+    private int getCount(long skillId) {
+        final int count = counts.get(skillId);
+        return count == LongIntMap.MISSING ? 0 : count;
+    }
+}
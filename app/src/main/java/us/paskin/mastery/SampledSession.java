@@ -0,0 +1,73 @@
+package us.paskin.mastery;
+
+/**
+ * A session returned by Session.sampleSession, along with what is needed to regenerate it: the seed
+ * of the random number generator and the version of the skill data it was sampled from.  Passing
+ * this to Session.replaySession with the same schedule and weighting yields the same skill IDs, as
+ * long as the skills and skill groups have not changed since.
+ */
+public final class SampledSession {
+    private final long[] skillIds;
+    private final long seed;
+    private final long dataVersion;
+
+    /**
+     * True if the session was drawn from alias tables (see SessionSampler) rather than in a single
+     * pass over the skills.  The two give different sessions for the same seed.
+     */
+    private final boolean fromAliasTables;
+
+    /**
+     * True if the skills were assigned to slots by OptimalAssignment rather than in slot order.
+     */
+    private final boolean optimalAssignment;
+
+    /**
+     * The IDs of the recently picked skills whose weights were reduced (see RecentPicks), in
+     * increasing order.
+     */
+    private final long[] recentSkillIds;
+
+    SampledSession(long[] skillIds, long seed, long dataVersion, boolean fromAliasTables,
+                   boolean optimalAssignment, long[] recentSkillIds) {
+        this.skillIds = skillIds;
+        this.seed = seed;
+        this.dataVersion = dataVersion;
+        this.fromAliasTables = fromAliasTables;
+        this.optimalAssignment = optimalAssignment;
+        this.recentSkillIds = recentSkillIds;
+    }
+
+    /**
+     * Returns the ID of the skill for each slot in the schedule, or -1 for slots that could not be
+     * filled.  The caller must not modify the array.
+     */
+    public long[] getSkillIds() {
+        return skillIds;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the version of the skill data the session was sampled from (see
+     * ModelSnapshot.getSkillDataVersion).  Versions are stored with the data, so they remain
+     * meaningful after the app is restarted.
+     */
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    boolean isFromAliasTables() {
+        return fromAliasTables;
+    }
+
+    public boolean isOptimalAssignment() {
+        return optimalAssignment;
+    }
+
+    long[] getRecentSkillIds() {
+        return recentSkillIds;
+    }
+}
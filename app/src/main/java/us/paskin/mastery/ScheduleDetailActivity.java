@@ -54,6 +54,12 @@ public class ScheduleDetailActivity extends AppCompatActivity {
      */
     private static final int REQ_CHOOSE_SKILL_GROUP = 1;
 
+    /**
+     * The range and default of the length of a practice with a time budget.
+     */
+    private static final int MAX_BUDGET_MINUTES = 240;
+    private static final int DEFAULT_BUDGET_MINUTES = 30;
+
     /**
      * True if we're adding a new schedule; false if we're editing one.
      */
@@ -253,7 +259,8 @@ public class ScheduleDetailActivity extends AppCompatActivity {
                 if (slotBuilder.hasGroupId() && slotBuilder.getGroupId() == skillGroupId) {
                     return;
                 }
-                slotBuilder.setGroupId(skillGroupId);
+                // The quotas were over the descendants of the old group.
+                slotBuilder.setGroupId(skillGroupId).clearQuota();
                 noteUnsavedChanges();
                 TextView groupName = slotGroupNameTextViews.get(position);
                 groupName.setText(model.getSkillGroupById(skillGroupId).getName());
@@ -267,12 +274,58 @@ public class ScheduleDetailActivity extends AppCompatActivity {
      * Starts a practice for this schedule.
      */
     private void play() {
+        play(0);
+    }
+
+    /**
+     * Starts a practice of the supplied length, built from the slots of this schedule, or of the
+     * schedule itself if budgetMinutes is zero.
+     */
+    private void play(int budgetMinutes) {
         if (scheduleId == -1) throw new InternalError("Schedule ID missing");
         Intent intent = new Intent(this, SessionActivity.class);
         intent.putExtra(SessionActivity.ARG_SCHEDULE_ID, scheduleId);
+        if (budgetMinutes > 0) intent.putExtra(SessionActivity.ARG_BUDGET_MINUTES, budgetMinutes);
         startActivity(intent);
     }
 
+    /**
+     * Launches a dialog to choose the length of a practice built from the slots of this schedule,
+     * and starts it.
+     */
+    void launchBudgetDialog() {
+        if (slotBuilders.isEmpty()) return;
+        int minMinutes = Integer.MAX_VALUE;
+        for (Proto.Schedule.Slot.Builder slotBuilder : slotBuilders) {
+            minMinutes = Math.min(minMinutes,
+                    (int) TimeUnit.SECONDS.toMinutes(slotBuilder.getDurationInSecs()));
+        }
+        final Dialog dialog = new Dialog(this);
+        dialog.setTitle(R.string.budget_dialog_title);
+        dialog.setContentView(R.layout.duration_dialog);
+        ((TextView) dialog.findViewById(R.id.label)).setText(R.string.budget_dialog_detail);
+        Button cancelButton = (Button) dialog.findViewById(R.id.cancel_button);
+        Button setButton = (Button) dialog.findViewById(R.id.set_button);
+        final NumberPicker durationPicker = (NumberPicker) dialog.findViewById(R.id.duration_picker);
+        durationPicker.setMinValue(Math.max(1, minMinutes));
+        durationPicker.setMaxValue(MAX_BUDGET_MINUTES);
+        durationPicker.setValue(Math.max(durationPicker.getMinValue(), DEFAULT_BUDGET_MINUTES));
+        setButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                dialog.dismiss();
+                if (saveSchedule()) play(durationPicker.getValue());
+            }
+        });
+        cancelButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                dialog.dismiss();
+            }
+        });
+        dialog.show();
+    }
+
     /**
      * Launches a dialog to choose the duration of a schedule_slot.
      *
@@ -373,7 +426,10 @@ public class ScheduleDetailActivity extends AppCompatActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.schedule_detail, menu);
-        if (addingSchedule) menu.findItem(R.id.delete_schedule).setVisible(false);
+        if (addingSchedule) {
+            menu.findItem(R.id.delete_schedule).setVisible(false);
+            menu.findItem(R.id.practice_with_budget).setVisible(false);
+        }
         revertMenuItem = menu.findItem(R.id.revert_changes);
         revertMenuItem.setVisible(unsavedChanges);
         return super.onCreateOptionsMenu(menu);
@@ -401,6 +457,9 @@ public class ScheduleDetailActivity extends AppCompatActivity {
         } else if (id == R.id.revert_changes) {
             handleRevertChanges();
             return true;
+        } else if (id == R.id.practice_with_budget) {
+            launchBudgetDialog();
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -3,8 +3,9 @@ package us.paskin.mastery;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
+import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
@@ -15,8 +16,6 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
-import com.google.protobuf.InvalidProtocolBufferException;
-
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -51,6 +50,19 @@ public class ScheduleListActivity extends DrawerActivity {
         setupRecyclerView((RecyclerView) recyclerView);
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Sample a session for each schedule in the background, so it can be started at once.
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        // Sessions of due skills are read from an index, so they are quick to build on demand.
+        if (sharedPreferences.getBoolean(SessionActivity.PREF_SPACED_REPETITION, false)) return;
+        SessionCache.getInstance(Model.getInstance(this)).prefetchAll(
+                SessionActivity.getSkillWeighting(sharedPreferences),
+                sharedPreferences.getBoolean(SessionActivity.PREF_OPTIMAL_ASSIGNMENT, false),
+                SessionActivity.getRecentPicks(sharedPreferences));
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
@@ -112,7 +124,7 @@ public class ScheduleListActivity extends DrawerActivity {
             extends RecyclerView.Adapter<SimpleItemRecyclerViewAdapter.ViewHolder> {
 
         private final Model data;
-        private Cursor cursor;
+        private ModelSnapshot snapshot;
 
         public SimpleItemRecyclerViewAdapter(Context context) {
             setHasStableIds(true);
@@ -121,14 +133,26 @@ public class ScheduleListActivity extends DrawerActivity {
         }
 
         public void refreshView() {
-            if (cursor != null) cursor.close();
-            cursor = data.getScheduleList();
+            snapshot = data.peekSnapshot();
+            if (snapshot != null) return;
+            // The list is empty until the snapshot has been loaded in the background.
+            data.requestSnapshot(new Runnable() {
+                @Override
+                public void run() {
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            refreshView();
+                            notifyDataSetChanged();
+                        }
+                    });
+                }
+            });
         }
 
         @Override
         public long getItemId(int position) {
-            cursor.moveToPosition(position);
-            return cursor.getLong(0);
+            return snapshot.getScheduleIdAt(position);
         }
 
         @Override
@@ -140,14 +164,8 @@ public class ScheduleListActivity extends DrawerActivity {
 
         @Override
         public void onBindViewHolder(final ViewHolder holder, int position) {
-            cursor.moveToPosition(position);
-            final long id = cursor.getLong(0);
-            try {
-                final Proto.Schedule schedule = Proto.Schedule.parseFrom(cursor.getBlob(1));
-                holder.setData(schedule);
-            } catch (InvalidProtocolBufferException x) {
-                throw new InternalError("failed to parse protocol buffer");
-            }
+            final long id = snapshot.getScheduleIdAt(position);
+            holder.setData(snapshot.getScheduleAt(position));
             holder.view.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
@@ -162,7 +180,7 @@ public class ScheduleListActivity extends DrawerActivity {
 
         @Override
         public int getItemCount() {
-            return cursor.getCount();
+            return snapshot == null ? 0 : snapshot.getScheduleCount();
         }
 
         public class ViewHolder extends RecyclerView.ViewHolder {
@@ -0,0 +1,264 @@
+package us.paskin.mastery;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Builds a schedule that fits a time budget from the kinds of slot in another schedule, its mix.
+ * Each kind of slot, i.e., each slot of the mix, can be used any number of times.  The packer aims to
+ * maximize the weighted practice time, i.e., the total over the slots of the slot's duration times
+ * the weight (see SkillWeighting) of a distinct skill that can fill it.
+ * <p>
+ * This is a knapsack problem in which every slot of a pool (see SessionSampler) is worth the weight of
+ * its skill per second, so the slots are chosen greedily: each is the longest kind that fits in the
+ * remaining time from the pool whose best unused skill has the largest weight.  Greedy choices can
+ * strand time, e.g., when a long slot for a favored group crowds out two slightly shorter ones for
+ * another.  So the packing is then repaired: for each choice in turn, the fill is redone from that
+ * point with the choice's pool left out, and the best packing found is kept.
+ */
+final class SchedulePacker {
+    private final Proto.Schedule mix;
+
+    /**
+     * The kinds of slot (indices into the mix) of each pool, in order of decreasing duration.
+     */
+    private final int[][] poolKinds;
+
+    /**
+     * For each pool, the IDs and weights of the skills that could fill it, in order of decreasing
+     * weight.  Only as many skills as could fit in the budget are kept.
+     */
+    private final long[][] poolSkillIds;
+    private final double[][] poolWeights;
+    private final int[] poolSizes;
+
+    private final int budgetSecs;
+
+    /**
+     * The most slots that fit in the budget.
+     */
+    private final int maxSlots;
+
+    /**
+     * The choices of a packing: the kind of each slot, its pool and the skill that was counted for it.
+     */
+    private static final class Packing {
+        final int[] kinds;
+        final int[] pools;
+        final long[] skillIds;
+        final double[] weights;
+        int size;
+        double value;
+
+        Packing(int capacity) {
+            kinds = new int[capacity];
+            pools = new int[capacity];
+            skillIds = new long[capacity];
+            weights = new double[capacity];
+        }
+
+        void copyFrom(Packing other) {
+            System.arraycopy(other.kinds, 0, kinds, 0, other.size);
+            System.arraycopy(other.pools, 0, pools, 0, other.size);
+            System.arraycopy(other.skillIds, 0, skillIds, 0, other.size);
+            System.arraycopy(other.weights, 0, weights, 0, other.size);
+            size = other.size;
+            value = other.value;
+        }
+    }
+
+    private SchedulePacker(Proto.Schedule mix, ModelSnapshot snapshot, SkillWeighting weighting,
+                           int budgetSecs) {
+        this.mix = mix;
+        this.budgetSecs = budgetSecs;
+        final CompiledSchedule compiled = CompiledSchedule.get(mix, snapshot);
+        final int numPools = compiled.getNumPools();
+        final int[] slotPools = compiled.getSlotPools();
+
+        int minDuration = Integer.MAX_VALUE;
+        int[] numKinds = new int[numPools];
+        for (int kind = 0; kind < slotPools.length; ++kind) {
+            minDuration = Math.min(minDuration, getDuration(kind));
+            ++numKinds[slotPools[kind]];
+        }
+        poolKinds = new int[numPools][];
+        for (int pool = 0; pool < numPools; ++pool) poolKinds[pool] = new int[numKinds[pool]];
+        Arrays.fill(numKinds, 0);
+        for (int kind = 0; kind < slotPools.length; ++kind) {
+            final int pool = slotPools[kind];
+            // Insert the kind in order of decreasing duration.
+            int i = numKinds[pool]++;
+            while (i > 0 && getDuration(poolKinds[pool][i - 1]) < getDuration(kind)) {
+                poolKinds[pool][i] = poolKinds[pool][i - 1];
+                --i;
+            }
+            poolKinds[pool][i] = kind;
+        }
+
+        // Keep the best skills of each pool in a bounded min-heap, then sort them.
+        maxSlots = budgetSecs / minDuration;
+        final SkillTable table = snapshot.getSkillTable();
+        final int numSkills = table.size();
+        double[] weights = new double[numSkills];
+        table.computeWeights(weighting, weights);
+        poolSkillIds = new long[numPools][maxSlots];
+        poolWeights = new double[numPools][maxSlots];
+        poolSizes = new int[numPools];
+        for (int row = 0; row < numSkills; ++row) {
+            for (int pool = 0; pool < numPools; ++pool) {
+                if (!compiled.canBeFilledBy(pool, table, row)) continue;
+                offer(pool, table.getId(row), weights[row]);
+            }
+        }
+        for (int pool = 0; pool < numPools; ++pool) {
+            // Repeatedly moving the smallest weight to the end leaves them in decreasing order.
+            for (int size = poolSizes[pool]; size > 1; --size) {
+                final long lastSkillId = poolSkillIds[pool][size - 1];
+                final double lastWeight = poolWeights[pool][size - 1];
+                poolSkillIds[pool][size - 1] = poolSkillIds[pool][0];
+                poolWeights[pool][size - 1] = poolWeights[pool][0];
+                siftDown(pool, size - 1, lastSkillId, lastWeight);
+            }
+        }
+    }
+
+    /**
+     * Returns a schedule whose slots are taken from the mix and fit within the budget, with the same
+     * name as the mix.  Slots of the same kind are adjacent, in the order of the mix.  The result may
+     * have no slots if none fits, or no skill can fill any.
+     */
+    static Proto.Schedule pack(Proto.Schedule mix, ModelSnapshot snapshot, SkillWeighting weighting,
+                               int budgetSecs) throws IllegalArgumentException {
+        if (budgetSecs <= 0) throw new IllegalArgumentException("non-positive budget");
+        if (mix.getSlotCount() == 0) throw new IllegalArgumentException("mix has no slots");
+        for (Proto.Schedule.Slot slot : mix.getSlotList()) {
+            if (slot.getDurationInSecs() <= 0) {
+                throw new IllegalArgumentException("non-positive schedule_slot duration");
+            }
+        }
+        return new SchedulePacker(mix, snapshot, weighting, budgetSecs).pack();
+    }
+
+    private Proto.Schedule pack() {
+        Packing greedy = new Packing(maxSlots);
+        fill(greedy, -1);
+        Packing best = new Packing(maxSlots);
+        best.copyFrom(greedy);
+        Packing trial = new Packing(maxSlots);
+        for (int i = 0; i < greedy.size; ++i) {
+            trial.copyFrom(greedy);
+            trial.size = i;
+            fill(trial, greedy.pools[i]);
+            if (trial.value > best.value) best.copyFrom(trial);
+        }
+        int[] counts = new int[mix.getSlotCount()];
+        for (int i = 0; i < best.size; ++i) ++counts[best.kinds[i]];
+        Proto.Schedule.Builder result = Proto.Schedule.newBuilder().setName(mix.getName());
+        for (int kind = 0; kind < counts.length; ++kind) {
+            for (int i = 0; i < counts[kind]; ++i) result.addSlot(mix.getSlot(kind));
+        }
+        return result.build();
+    }
+
+    /**
+     * Greedily extends the packing, which keeps its first packing.size choices, never choosing the
+     * excluded pool.  Recomputes the packing's value.
+     */
+    private void fill(Packing packing, int excludedPool) {
+        int remaining = budgetSecs;
+        double value = 0.0;
+        HashSet<Long> used = new HashSet<>();
+        int[] next = new int[poolSizes.length];
+        for (int i = 0; i < packing.size; ++i) {
+            final int duration = getDuration(packing.kinds[i]);
+            remaining -= duration;
+            used.add(packing.skillIds[i]);
+            value += duration * packing.weights[i];
+        }
+        while (true) {
+            int bestPool = -1;
+            for (int pool = 0; pool < poolSizes.length; ++pool) {
+                if (pool == excludedPool || getLongestKind(pool, remaining) == -1) continue;
+                while (next[pool] < poolSizes[pool] && used.contains(poolSkillIds[pool][next[pool]])) {
+                    ++next[pool];
+                }
+                if (next[pool] == poolSizes[pool]) continue;
+                if (bestPool == -1 || poolWeights[pool][next[pool]] > poolWeights[bestPool][next[bestPool]]) {
+                    bestPool = pool;
+                }
+            }
+            if (bestPool == -1) break;
+            final int kind = getLongestKind(bestPool, remaining);
+            final int duration = getDuration(kind);
+            final long skillId = poolSkillIds[bestPool][next[bestPool]];
+            packing.kinds[packing.size] = kind;
+            packing.pools[packing.size] = bestPool;
+            packing.skillIds[packing.size] = skillId;
+            packing.weights[packing.size] = poolWeights[bestPool][next[bestPool]];
+            remaining -= duration;
+            used.add(skillId);
+            value += duration * packing.weights[packing.size];
+            ++packing.size;
+        }
+        packing.value = value;
+    }
+
+    /**
+     * Returns the longest kind of slot of the pool that fits in the supplied time, or -1 if there is
+     * none.
+     */
+    private int getLongestKind(int pool, int remainingSecs) {
+        for (int kind : poolKinds[pool]) {
+            if (getDuration(kind) <= remainingSecs) return kind;
+        }
+        return -1;
+    }
+
+    private int getDuration(int kind) {
+        return mix.getSlot(kind).getDurationInSecs();
+    }
+
+    /**
+     * Offers the skill to the pool's heap, which keeps the skills with the largest weights.
+     */
+    private void offer(int pool, long skillId, double weight) {
+        long[] skillIds = poolSkillIds[pool];
+        double[] weights = poolWeights[pool];
+        final int size = poolSizes[pool];
+        if (size < weights.length) {
+            int i = size;
+            while (i > 0) {
+                final int parent = (i - 1) / 2;
+                if (weights[parent] <= weight) break;
+                weights[i] = weights[parent];
+                skillIds[i] = skillIds[parent];
+                i = parent;
+            }
+            weights[i] = weight;
+            skillIds[i] = skillId;
+            poolSizes[pool] = size + 1;
+        } else if (size > 0 && weight > weights[0]) {
+            siftDown(pool, size, skillId, weight);
+        }
+    }
+
+    /**
+     * Places the entry at the root of the pool's heap of the supplied size and sifts it down.
+     */
+    private void siftDown(int pool, int size, long skillId, double weight) {
+        long[] skillIds = poolSkillIds[pool];
+        double[] weights = poolWeights[pool];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && weights[child + 1] < weights[child]) ++child;
+            if (weight <= weights[child]) break;
+            weights[i] = weights[child];
+            skillIds[i] = skillIds[child];
+            i = child;
+        }
+        weights[i] = weight;
+        skillIds[i] = skillId;
+    }
+}
@@ -1,56 +1,598 @@
 package us.paskin.mastery;
 
 import android.database.Cursor;
+import android.support.annotation.Nullable;
 
-import com.google.protobuf.InvalidProtocolBufferException;
-
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a concrete practice session.
  */
 public class Session {
+    /**
+     * Libraries with at least this many skills are scanned in parallel by sampleSinglePass.  Below
+     * this, the cost of handing chunks to other threads outweighs the gain.
+     */
+    static final int PARALLEL_THRESHOLD = 50000;
+
+    /**
+     * The number of skills in each chunk of a parallel scan.  This is fixed rather than derived from
+     * the number of cores, so a seed gives the same session on every device.
+     */
+    static final int PARALLEL_CHUNK_SIZE = 16384;
+
+    /**
+     * The factor by which the weights of recently picked skills are multiplied (see RecentPicks).
+     * This all but excludes them, while still letting them fill slots that nothing else can.
+     */
+    static final double RECENT_PICK_WEIGHT = 0.01;
+
+    private static final long[] NO_RECENT_PICKS = new long[0];
+
+    /**
+     * The number of skills in the first page read for each pool by sampleDueSession.  Each later page
+     * is twice as large as the one before.
+     */
+    static final int DUE_PAGE_SIZE = 64;
+
+    /**
+     * Runs the chunks of parallel scans.  Its threads exit when idle.  This is created lazily, and is
+     * guarded by the monitor of this class.
+     */
+    private static ExecutorService scanExecutor;
+
+    /**
+     * The inputs of the most recent call to sampleSession, and the sampler built for them if they
+     * were requested more than once.  These are guarded by the monitor of this class.
+     */
+    private static Proto.Schedule lastSchedule;
+    private static long lastDataVersion;
+    private static SkillWeighting lastWeighting;
+    private static SessionSampler cachedSampler;
+
+    /**
+     * Generates the seeds of sessions.
+     */
+    private static final Random seedGenerator = new Random();
 
     /**
      * Generates a new session for the provided schedule.  Note that a schedule_slot may not be filled
-     * if no skills were in its associated group.  Also, the same skill may be assigned to multiple
-     * slots.
+     * if no skills were in its associated group.  A skill is assigned to at most one slot, and each
+     * slot is filled by weighted sampling without replacement from the eligible skills that remain.
+     * <p>
+     * The first session for a schedule is sampled in a single pass over the skills.  If another is
+     * requested before the schedule or the data change (e.g., to reshuffle the session), alias tables
+     * are built and cached, so that further requests are nearly free.  Slots with quotas are
+     * stratified: each session deals them out among their quota groups in proportion to the quotas,
+     * skipping groups with no skills (see CompiledSchedule.drawSlotPools), and such schedules are
+     * always sampled in a single pass.
+     * <p>
+     * The result records the seed and the data version, so the session can be regenerated with
+     * replaySession.
+     *
+     * @param weighting the policy for weighting skills; see PriorityStalenessWeighting
+     */
+    public static SampledSession sampleSession(Proto.Schedule schedule,
+                                               Model model,
+                                               SkillWeighting weighting) {
+        return sampleSession(schedule, model, weighting, false);
+    }
+
+    /**
+     * Generates a new session for the provided schedule as above.  If optimalAssignment is true, the
+     * sampled skills are assigned to slots so as to fill as many slots as possible (see
+     * OptimalAssignment), rather than filling the slots in order, which can leave a slot empty when an
+     * earlier slot takes its only eligible skill.  Such sessions are always sampled in a single pass.
+     */
+    public static SampledSession sampleSession(Proto.Schedule schedule,
+                                               Model model,
+                                               SkillWeighting weighting,
+                                               boolean optimalAssignment) {
+        return sampleSession(schedule, model, weighting, optimalAssignment, null);
+    }
+
+    /**
+     * Generates a new session for the provided schedule as above.  If recentPicks is not null, the
+     * weights of the skills picked for recent sessions are multiplied by RECENT_PICK_WEIGHT, so that
+     * other skills are picked until those have been practiced.  Sessions with recent picks are always
+     * sampled in a single pass, since the cached alias tables hold the unadjusted weights.  The
+     * caller is responsible for adding the result to recentPicks.
      */
-    public static long[] sampleSession(Proto.Schedule schedule,
+    public static SampledSession sampleSession(Proto.Schedule schedule,
+                                               Model model,
+                                               SkillWeighting weighting,
+                                               boolean optimalAssignment,
+                                               @Nullable RecentPicks recentPicks) {
+        // Make sure the snapshot reflects all recorded practice.
+        model.flushPendingPractice();
+        ModelSnapshot snapshot = model.getSnapshot();
+        final long seed = seedGenerator.nextLong();
+        final long[] recentSkillIds = recentPicks == null ? NO_RECENT_PICKS : recentPicks.getSkillIds();
+        if (!optimalAssignment && recentSkillIds.length == 0
+                && !CompiledSchedule.get(schedule, snapshot).hasQuotas()) {
+            SessionSampler sampler = getCachedSampler(schedule, snapshot, weighting);
+            if (sampler != null) {
+                return new SampledSession(sampler.sample(new Random(seed)), seed,
+                        snapshot.getSkillDataVersion(), true, false, recentSkillIds);
+            }
+        }
+        return new SampledSession(sampleSinglePass(schedule, snapshot, weighting, new Random(seed),
+                optimalAssignment, recentSkillIds),
+                seed, snapshot.getSkillDataVersion(), false, optimalAssignment, recentSkillIds);
+    }
+
+    /**
+     * Generates a session for the provided schedule as above, using the supplied seed.  The same
+     * schedule, data, weighting and seed always give the same session, so this is suitable for
+     * debugging and benchmarking.  The session is always sampled in a single pass over the skills.
+     */
+    public static SampledSession sampleSession(Proto.Schedule schedule,
+                                               Model model,
+                                               SkillWeighting weighting,
+                                               long seed) {
+        return sampleSession(schedule, model, weighting, seed, false);
+    }
+
+    /**
+     * Generates a session for the provided schedule using the supplied seed, optionally with the
+     * optimal assignment of skills to slots.
+     */
+    public static SampledSession sampleSession(Proto.Schedule schedule,
+                                               Model model,
+                                               SkillWeighting weighting,
+                                               long seed,
+                                               boolean optimalAssignment) {
+        model.flushPendingPractice();
+        ModelSnapshot snapshot = model.getSnapshot();
+        return new SampledSession(sampleSinglePass(schedule, snapshot, weighting, new Random(seed),
+                optimalAssignment, NO_RECENT_PICKS),
+                seed, snapshot.getSkillDataVersion(), false, optimalAssignment, NO_RECENT_PICKS);
+    }
+
+    /**
+     * Regenerates a session returned by sampleSession, which must have been called with the same
+     * schedule and weighting, and returns its skill IDs.  Throws IllegalArgumentException if the skills
+     * or skill groups have changed since.
+     */
+    public static long[] replaySession(Proto.Schedule schedule,
                                        Model model,
-                                       float stalenessWeight) {
-        final int numSlots = schedule.getSlotCount();
-        long session[] = new long[numSlots];
-        for (int i = 0; i < numSlots; ++i) session[i] = -1;
-        // Scan through the skills, sampling as we go.
-        Cursor cursor = model.getSkillList();
-        float sumWeight[] = new float[numSlots];
-        for (int i = 0; i < numSlots; ++i) {
-            sumWeight[i] = 0.0f;
-        }
-        Random random = new Random();
-        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-            final long skillId = cursor.getLong(0);
-            Proto.Skill skill;
-            try {
-                skill = Proto.Skill.parseFrom(cursor.getBlob(1));
-            } catch (InvalidProtocolBufferException x) {
-                throw new InternalError("cannot parse protocol buffer");
+                                       SkillWeighting weighting,
+                                       SampledSession session) throws IllegalArgumentException {
+        model.flushPendingPractice();
+        ModelSnapshot snapshot = model.getSnapshot();
+        if (snapshot.getSkillDataVersion() != session.getDataVersion()) {
+            throw new IllegalArgumentException("data has changed since the session was sampled");
+        }
+        Random random = new Random(session.getSeed());
+        // Alias tables built from the same inputs are identical, so they need not be cached.
+        if (session.isFromAliasTables()) return buildSampler(schedule, snapshot, weighting).sample(random);
+        return sampleSinglePass(schedule, snapshot, weighting, random, session.isOptimalAssignment(),
+                session.getRecentSkillIds());
+    }
+
+    /**
+     * Returns a sampler for the schedule if it was also the subject of the previous request, building
+     * it unless it is cached.  Otherwise, records the request and returns null.
+     */
+    private static synchronized
+    @Nullable
+    SessionSampler getCachedSampler(Proto.Schedule schedule,
+                                    ModelSnapshot snapshot,
+                                    SkillWeighting weighting) {
+        if (!isLastRequest(schedule, snapshot, weighting)) {
+            setLastRequest(schedule, snapshot, weighting);
+            return null;
+        }
+        if (cachedSampler == null) cachedSampler = buildSampler(schedule, snapshot, weighting);
+        return cachedSampler;
+    }
+
+    /**
+     * Returns a sampler for the schedule, building it unless it is cached.
+     */
+    private static synchronized SessionSampler getSampler(Proto.Schedule schedule,
+                                                          ModelSnapshot snapshot,
+                                                          SkillWeighting weighting) {
+        if (!isLastRequest(schedule, snapshot, weighting)) setLastRequest(schedule, snapshot, weighting);
+        if (cachedSampler == null) cachedSampler = buildSampler(schedule, snapshot, weighting);
+        return cachedSampler;
+    }
+
+    private static boolean isLastRequest(Proto.Schedule schedule,
+                                         ModelSnapshot snapshot,
+                                         SkillWeighting weighting) {
+        return lastSchedule != null && lastDataVersion == snapshot.getSkillDataVersion()
+                && lastWeighting.equals(weighting) && lastSchedule.equals(schedule);
+    }
+
+    private static void setLastRequest(Proto.Schedule schedule,
+                                       ModelSnapshot snapshot,
+                                       SkillWeighting weighting) {
+        lastSchedule = schedule;
+        lastDataVersion = snapshot.getSkillDataVersion();
+        lastWeighting = weighting;
+        cachedSampler = null;
+    }
+
+    /**
+     * Returns a new skill for one slot of a session, drawn in proportion to weight from the skills
+     * that can fill the slot and are not already in the session.  Returns the slot's current skill if
+     * there is no other.  This draws from the cached alias tables for the schedule, so it takes
+     * expected constant time unless the schedule, the weighting or the skills have changed since the
+     * tables were built.  Practice that is still buffered in memory is not taken into account.  A slot
+     * with quotas is refilled from its whole group, not from the stratum it was drawn from.
+     *
+     * @param session   the skill IDs of the session, as returned by sampleSession
+     * @param slotIndex the index of the slot to fill
+     */
+    public static long resampleSlot(Proto.Schedule schedule,
+                                    Model model,
+                                    SkillWeighting weighting,
+                                    long[] session,
+                                    int slotIndex) {
+        if (session.length != schedule.getSlotCount()) {
+            throw new IllegalArgumentException("session does not match schedule");
+        }
+        if (slotIndex < 0 || slotIndex >= session.length) {
+            throw new IllegalArgumentException("invalid slot index: " + slotIndex);
+        }
+        SessionSampler sampler = getSampler(schedule, model.getSnapshot(), weighting);
+        // Excluding the whole session excludes the current skill as well as those in other slots.
+        final long skillId = sampler.sampleSlot(slotIndex, session, session.length, new Random());
+        return skillId == -1 ? session[slotIndex] : skillId;
+    }
+
+    /**
+     * Samples a session in a single pass over the skills in the snapshot, using a bounded heap of
+     * Efraimidis-Spirakis keys for each pool.  Large libraries are split into chunks that are scanned
+     * on separate threads, each with its own heaps, which are then merged.  The result has the same
+     * distribution either way, and depends only on the inputs.
+     *
+     * @param recentSkillIds the IDs of recently picked skills, whose weights are reduced
+     */
+    static long[] sampleSinglePass(Proto.Schedule schedule,
+                                   ModelSnapshot snapshot,
+                                   SkillWeighting weighting,
+                                   Random random,
+                                   boolean optimalAssignment,
+                                   long[] recentSkillIds) {
+        return sampleSinglePass(schedule, snapshot, weighting, random, optimalAssignment,
+                recentSkillIds, getNumChunks(snapshot));
+    }
+
+    /**
+     * Samples a session as above, scanning the skills in the supplied number of chunks.  All chunks
+     * but the first are scanned on other threads.
+     */
+    static long[] sampleSinglePass(Proto.Schedule schedule,
+                                   ModelSnapshot snapshot,
+                                   SkillWeighting weighting,
+                                   Random random,
+                                   boolean optimalAssignment,
+                                   long[] recentSkillIds,
+                                   int numChunks) {
+        final CompiledSchedule compiled = CompiledSchedule.get(schedule, snapshot);
+        SinglePassSessionSampler sampler = scanSkills(compiled, snapshot, weighting,
+                recentSkillIds, random, compiled.getNumSlots(), numChunks);
+        // The strata are drawn once the pass has shown which quota pools are empty.
+        final int[] slotPools = compiled.drawSlotPools(random, findEmptyPools(sampler));
+        return optimalAssignment ? sampler.finishOptimal(slotPools) : sampler.finish(slotPools);
+    }
+
+    /**
+     * Generates a session for the provided schedule from the skills that are due soonest by spaced
+     * repetition (see SpacedRepetition), an alternative to weighted sampling.  The slots are filled as
+     * by sampleSession, except that a skill due earlier always comes before one due later, and among
+     * skills due at the same time, one with higher priority comes first.  Each pool's skills are read
+     * from the index of its own group in that order, only until the pool keeps as many skills as it
+     * has slots or its group runs out, so this takes time in proportion to the number of skills read
+     * rather than the size of the library.  Slots with quotas are stratified as by sampleSession, with
+     * the empty quota pools found from the first row of the same index.
+     *
+     * @return the skill IDs of the session, with -1 for slots that could not be filled
+     */
+    public static long[] sampleDueSession(Proto.Schedule schedule,
+                                          Model model,
+                                          boolean optimalAssignment) {
+        // Make sure the stored due dates reflect all recorded practice.
+        model.flushPendingPractice();
+        ModelSnapshot snapshot = model.getSnapshot();
+        final CompiledSchedule compiled = CompiledSchedule.get(schedule, snapshot);
+        final int numPools = compiled.getNumPools();
+        boolean[] isPoolEmpty = new boolean[numPools];
+        for (int pool = 0; pool < numPools; ++pool) {
+            if (!compiled.isQuotaPool(pool)) continue;
+            isPoolEmpty[pool] = isDuePoolEmpty(model, compiled, pool);
+        }
+        final int[] slotPools = compiled.drawSlotPools(new Random(seedGenerator.nextLong()),
+                isPoolEmpty);
+        int[] capacities = new int[numPools];
+        for (int pool : slotPools) ++capacities[pool];
+        while (true) {
+            SinglePassSessionSampler sampler = new SinglePassSessionSampler(slotPools, capacities);
+            boolean[] isExhausted = new boolean[numPools];
+            for (int pool = 0; pool < numPools; ++pool) {
+                if (capacities[pool] > 0) {
+                    isExhausted[pool] = readDuePool(model, snapshot, compiled, pool, sampler);
+                }
             }
-            final float weight = weight(skill, stalenessWeight);
-            for (int slotIndex = 0; slotIndex < numSlots; ++slotIndex) {
-                if (!slotCanBeFilledBy(schedule.getSlot(slotIndex), skill, model)) continue;
-                boolean selected = false;
-                if (session[slotIndex] == -1 || random.nextFloat() < (weight / sumWeight[slotIndex])) {
-                    session[slotIndex] = skillId;
-                    selected = true;
+            final long[] session = optimalAssignment ? sampler.finishOptimal() : sampler.finish();
+            // A pool can lose the skills it keeps to the slots of other pools that share them.  If a
+            // slot went unfilled while its group has skills left, its pool keeps one more and the
+            // pools are read again, which is rare and reads little.
+            boolean isComplete = true;
+            for (int slotIndex = 0; slotIndex < session.length; ++slotIndex) {
+                final int pool = slotPools[slotIndex];
+                if (session[slotIndex] != -1 || isExhausted[pool]) continue;
+                ++capacities[pool];
+                isComplete = false;
+            }
+            if (isComplete) return session;
+        }
+    }
+
+    /**
+     * Returns true if no skill is eligible for the pool, reading at most one row of the due date index.
+     */
+    private static boolean isDuePoolEmpty(Model model, CompiledSchedule compiled, int pool) {
+        Cursor cursor = getSkillsByDueDate(model, compiled, pool, 0, 1);
+        final boolean isEmpty = cursor.getCount() == 0;
+        cursor.close();
+        return isEmpty;
+    }
+
+    /**
+     * Offers the skills that are eligible for the pool to the sampler in order of their stored due
+     * dates, which must have a positive capacity for the pool, until the pool is full and no skill
+     * that remains could change it.  Returns true if every eligible skill was read.
+     */
+    private static boolean readDuePool(Model model, ModelSnapshot snapshot, CompiledSchedule compiled,
+                                       int pool, SinglePassSessionSampler sampler) {
+        int offset = 0;
+        int pageSize = DUE_PAGE_SIZE;
+        while (true) {
+            Cursor cursor = getSkillsByDueDate(model, compiled, pool, offset, pageSize);
+            final int count = cursor.getCount();
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                // A skill is offered with the negation of its rank as its key, so that the pool keeps
+                // the skills due soonest.  The stored due date can only be earlier than the snapshot's
+                // (e.g., while practice is being logged), so its rank bounds those of the skills that
+                // remain, and once the pool would not keep a skill with that rank, it cannot change.
+                final long storedDueDate = cursor.isNull(1) ? 0 : cursor.getLong(1);
+                final double bound = -SpacedRepetition.getRank(storedDueDate, cursor.getInt(2));
+                if (sampler.isFull(pool) && sampler.getSmallestKey(pool) >= bound) {
+                    cursor.close();
+                    return false;
                 }
-                sumWeight[slotIndex] += weight;
-                if (selected) break;  // don't allow the same skill in two slots
+                final long skillId = cursor.getLong(0);
+                Proto.Skill skill = snapshot.getSkillById(skillId);
+                if (skill == null || !compiled.canBeFilledBy(pool, skill, snapshot)) continue;
+                sampler.offer(pool, skillId, -SpacedRepetition.getRank(
+                        SpacedRepetition.getDueDate(skill), skill.getPriority()));
             }
+            cursor.close();
+            if (count < pageSize) return true;
+            offset += count;
+            pageSize *= 2;
         }
-        return session;
+    }
+
+    /**
+     * Returns the skills that are eligible for the pool in order of their stored due dates, as by
+     * Model.getSkillsByDueDate.
+     */
+    private static Cursor getSkillsByDueDate(Model model, CompiledSchedule compiled, int pool,
+                                             int offset, int limit) {
+        final long[] groupIds = compiled.getPoolGroupIds(pool);
+        return groupIds == null
+                ? model.getSkillsByDueDate(offset, limit)
+                : model.getSkillsByDueDate(groupIds, offset, limit);
+    }
+
+    /**
+     * Generates sessions for the provided schedule for each of the supplied number of days, e.g., to
+     * plan a week of practice at once.  The skills are scanned once for all the days, which is much
+     * faster than sampling each day separately on a large library.  The days are filled in order as
+     * by sampleSession, but a skill is picked again only when its slot's group has no skill left that
+     * was picked fewer times.  So the skills that have been neglected longest, which
+     * PriorityStalenessWeighting favors, tend to come on the first days, and no skill is repeated
+     * within the plan while the schedule's groups have others to offer.
+     *
+     * @return the skill IDs of each day's session, with -1 for slots that could not be filled
+     */
+    public static long[][] planSessions(Proto.Schedule schedule,
+                                        Model model,
+                                        SkillWeighting weighting,
+                                        int numDays) throws IllegalArgumentException {
+        if (numDays <= 0) throw new IllegalArgumentException("non-positive number of days");
+        model.flushPendingPractice();
+        return planSinglePass(schedule, model.getSnapshot(), weighting,
+                new Random(seedGenerator.nextLong()), numDays);
+    }
+
+    /**
+     * Plans sessions as above in a single pass over the skills in the snapshot.  Each pool keeps as
+     * many skills as there are slots over all the days, which is enough for every day to be filled as
+     * if from the whole library.  The strata of slots with quotas are drawn separately for each day.
+     */
+    static long[][] planSinglePass(Proto.Schedule schedule,
+                                   ModelSnapshot snapshot,
+                                   SkillWeighting weighting,
+                                   Random random,
+                                   int numDays) {
+        final CompiledSchedule compiled = CompiledSchedule.get(schedule, snapshot);
+        SinglePassSessionSampler sampler = scanSkills(compiled, snapshot, weighting,
+                NO_RECENT_PICKS, random, numDays * compiled.getNumSlots(), getNumChunks(snapshot));
+        final boolean[] isPoolEmpty = findEmptyPools(sampler);
+        int[][] slotPoolsByDay = new int[numDays][];
+        for (int day = 0; day < numDays; ++day) {
+            slotPoolsByDay[day] = compiled.drawSlotPools(random, isPoolEmpty);
+        }
+        return sampler.finishPlan(slotPoolsByDay);
+    }
+
+    private static int getNumChunks(ModelSnapshot snapshot) {
+        final int numSkills = snapshot.getSkillCount();
+        return numSkills < PARALLEL_THRESHOLD
+                ? 1 : (numSkills + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+    }
+
+    /**
+     * Returns, for each pool of the sampler, true if no skill was offered to it.
+     */
+    private static boolean[] findEmptyPools(SinglePassSessionSampler sampler) {
+        boolean[] isEmpty = new boolean[sampler.getNumPools()];
+        for (int pool = 0; pool < isEmpty.length; ++pool) isEmpty[pool] = sampler.isEmpty(pool);
+        return isEmpty;
+    }
+
+    /**
+     * Offers every skill in the snapshot to every pool of the compiled schedule that it is eligible
+     * for, in a sampler whose pools keep the supplied number of skills, with the weights of the
+     * recently picked skills reduced, scanning the skills in the supplied number of chunks.  All
+     * chunks but the first are scanned on other threads, each with its own sampler, and the samplers
+     * are then merged.  Every pool is offered skills, including those of quotas, so the sampler shows
+     * which pools are empty before the strata are drawn.
+     */
+    private static SinglePassSessionSampler scanSkills(final CompiledSchedule compiled,
+                                                       ModelSnapshot snapshot,
+                                                       SkillWeighting weighting,
+                                                       long[] recentSkillIds,
+                                                       Random random,
+                                                       final int capacity,
+                                                       int numChunks) {
+        final SkillTable table = snapshot.getSkillTable();
+        final int numSkills = table.size();
+        final double[] weights = new double[numSkills];
+        table.computeWeights(weighting, weights);
+        if (recentSkillIds.length > 0) {
+            LongIntMap recent = new LongIntMap();
+            for (long skillId : recentSkillIds) recent.put(skillId, 0);
+            for (int row = 0; row < numSkills; ++row) {
+                if (recent.containsKey(table.getId(row))) weights[row] *= RECENT_PICK_WEIGHT;
+            }
+        }
+        numChunks = Math.max(1, Math.min(numChunks, numSkills));
+        SinglePassSessionSampler sampler = new SinglePassSessionSampler(
+                compiled.getSlotPools(), compiled.getNumPools(), capacity);
+        if (numChunks == 1) {
+            scan(compiled, table, weights, 0, numSkills, sampler, random);
+            return sampler;
+        }
+        ExecutorService executor = getScanExecutor();
+        List<Future<SinglePassSessionSampler>> chunks = new ArrayList<>();
+        for (int chunk = 1; chunk < numChunks; ++chunk) {
+            final int begin = (int) ((long) numSkills * chunk / numChunks);
+            final int end = (int) ((long) numSkills * (chunk + 1) / numChunks);
+            // Each chunk gets its own generator, seeded here so that a seeded random gives a
+            // reproducible result.
+            final Random chunkRandom = new Random(random.nextLong());
+            chunks.add(executor.submit(new Callable<SinglePassSessionSampler>() {
+                @Override
+                public SinglePassSessionSampler call() {
+                    SinglePassSessionSampler chunkSampler = new SinglePassSessionSampler(
+                            compiled.getSlotPools(), compiled.getNumPools(), capacity);
+                    scan(compiled, table, weights, begin, end, chunkSampler, chunkRandom);
+                    return chunkSampler;
+                }
+            }));
+        }
+        scan(compiled, table, weights, 0, numSkills / numChunks, sampler, random);
+        try {
+            for (Future<SinglePassSessionSampler> chunk : chunks) sampler.merge(chunk.get());
+        } catch (InterruptedException x) {
+            for (Future<SinglePassSessionSampler> chunk : chunks) chunk.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InternalError("interrupted while sampling");
+        } catch (ExecutionException x) {
+            throw new InternalError("sampling failed: " + x.getCause());
+        }
+        return sampler;
+    }
+
+    /**
+     * Offers the skills in rows [begin, end) of the table to the pools they are eligible for.
+     */
+    private static void scan(CompiledSchedule compiled, SkillTable table, double[] weights,
+                             int begin, int end, SinglePassSessionSampler sampler, Random random) {
+        final int numPools = compiled.getNumPools();
+        for (int row = begin; row < end; ++row) {
+            // The skill has the same key in every pool.
+            final double key = SinglePassSessionSampler.key(weights[row], random);
+            for (int pool = 0; pool < numPools; ++pool) {
+                if (!compiled.canBeFilledBy(pool, table, row)) continue;
+                sampler.offer(pool, table.getId(row), key);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getScanExecutor() {
+        if (scanExecutor == null) {
+            final int numThreads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            executor.allowCoreThreadTimeOut(true);
+            scanExecutor = executor;
+        }
+        return scanExecutor;
+    }
+
+    /**
+     * Builds a sampler for the schedule in a single pass over the skills in the snapshot.  Slots for
+     * the same group share a pool.
+     */
+    static SessionSampler buildSampler(Proto.Schedule schedule,
+                                       ModelSnapshot snapshot,
+                                       SkillWeighting weighting) {
+        final CompiledSchedule compiled = CompiledSchedule.get(schedule, snapshot);
+        final int numPools = compiled.getNumPools();
+        // Scan through the skill table, adding each skill to the pools it is eligible for.  This runs no
+        // queries and touches no protocol buffers.
+        final SkillTable table = snapshot.getSkillTable();
+        final int numSkills = table.size();
+        long[][] poolSkillIds = new long[numPools][numSkills];
+        double[][] poolWeights = new double[numPools][numSkills];
+        int[] poolSizes = new int[numPools];
+        double[] weights = new double[numSkills];
+        table.computeWeights(weighting, weights);
+        for (int row = 0; row < numSkills; ++row) {
+            for (int pool = 0; pool < numPools; ++pool) {
+                if (!compiled.canBeFilledBy(pool, table, row)) continue;
+                poolSkillIds[pool][poolSizes[pool]] = table.getId(row);
+                poolWeights[pool][poolSizes[pool]] = weights[row];
+                ++poolSizes[pool];
+            }
+        }
+        for (int pool = 0; pool < numPools; ++pool) {
+            poolSkillIds[pool] = Arrays.copyOf(poolSkillIds[pool], poolSizes[pool]);
+            poolWeights[pool] = Arrays.copyOf(poolWeights[pool], poolSizes[pool]);
+        }
+        return new SessionSampler(poolSkillIds, poolWeights, compiled.getSlotPools());
+    }
+
+    /**
+     * Returns a schedule that fits in the supplied number of seconds, made of slots of the mix, for
+     * generating sessions of a chosen length.  Each slot of the mix may be used any number of times,
+     * and the time goes to the groups whose best skills have the largest weights (see
+     * SchedulePacker).  The result may have no slots if the budget is shorter than every slot of the
+     * mix.
+     */
+    public static Proto.Schedule packSchedule(Proto.Schedule mix,
+                                              Model model,
+                                              SkillWeighting weighting,
+                                              int budgetSecs) throws IllegalArgumentException {
+        model.flushPendingPractice();
+        return SchedulePacker.pack(mix, model.getSnapshot(), weighting, budgetSecs);
     }
 
     /**
@@ -58,8 +600,16 @@ public class Session {
      */
     public static boolean slotCanBeFilledBy(Proto.Schedule.Slot slot, Proto.Skill skill,
                                             Model model) {
+        return slotCanBeFilledBy(slot, skill.getGroupIdList(), model);
+    }
+
+    /**
+     * Returns true if a skill in the supplied groups can be placed in this schedule_slot.
+     */
+    public static boolean slotCanBeFilledBy(Proto.Schedule.Slot slot, List<Long> skillGroupIds,
+                                            Model model) {
         if (!slot.hasGroupId()) return true;
-        for (long skillGroupId : skill.getGroupIdList()) {
+        for (long skillGroupId : skillGroupIds) {
             if ((slot.getGroupId() == skillGroupId) ||
                     model.isAncestorOf(slot.getGroupId(), skillGroupId)) {
                 return true;
@@ -67,19 +617,4 @@ public class Session {
         }
         return false;
     }
-
-    /**
-     * Returns the weight of this skill.  The probability the skill is sampled is proportional to weight.
-     */
-    private static float weight(Proto.Skill skill, float stalenessWeight) {
-        // Scale the priority to [0, 1].
-        float priorityZeroOne = ((float) (skill.getPriority()) / ((float) (Model.MAX_PRIORITY)));
-        // Map the estimated amount of practice time in the past 100 days to a staleness value in [0, 1].
-        final long estHoursPracticed = TimeUnit.SECONDS.toHours(skill.getEstSecondsPracticed100Days());
-        final long halfPoint = 5;
-        final double stalenessZeroOne = 1.0 - ((double) estHoursPracticed / (double) (estHoursPracticed + halfPoint));
-        // Compute a weighted sum.
-        final float priorityWeight = 1.0f - stalenessWeight;
-        return stalenessWeight * (float) stalenessZeroOne + priorityWeight * priorityZeroOne;
-    }
 }
@@ -21,13 +21,17 @@ import android.support.v7.app.NotificationCompat;
 import android.support.v7.widget.Toolbar;
 import android.text.format.DateUtils;
 import android.view.LayoutInflater;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -39,6 +43,12 @@ public class SessionActivity extends AppCompatActivity {
      */
     public static String ARG_SCHEDULE_ID = "schedule_id";
 
+    /**
+     * If this is set to a positive number of minutes, the session is built to fit that long, using
+     * the slots of the schedule as its mix (see Session.packSchedule).
+     */
+    public static String ARG_BUDGET_MINUTES = "budget_minutes";
+
     /**
      * The ID of the notification posted by this activity to show the current skill, or when the
      * user should move to the next slot or stop practicing.
@@ -50,6 +60,34 @@ public class SessionActivity extends AppCompatActivity {
      */
     public static String PREF_STALENESS_IMPORTANCE = "pref_staleness_importance";
 
+    /**
+     * The key to a boolean preference that fills sessions with the skills due soonest by spaced
+     * repetition (see Session.sampleDueSession) rather than by weighted sampling.
+     */
+    public static String PREF_SPACED_REPETITION = "pref_spaced_repetition";
+
+    /**
+     * The key to a boolean preference that enables the optimal assignment of skills to slots.
+     */
+    public static String PREF_OPTIMAL_ASSIGNMENT = "pref_optimal_assignment";
+
+    /**
+     * The key to a preference giving the number of recent sessions whose skills are avoided (see
+     * RecentPicks).  It is a string, since it is set by a ListPreference.
+     */
+    public static String PREF_RECENT_SESSIONS = "pref_recent_sessions";
+
+    /**
+     * The key to a string preference holding the recent sessions, as returned by RecentPicks.encode.
+     */
+    private static String PREF_RECENT_PICKS = "recent_picks";
+
+    /**
+     * The skills picked for recent sessions, loaded from the preferences when first needed.  This is
+     * guarded by the monitor of this class.
+     */
+    private static RecentPicks recentPicks;
+
     /**
      * The keys for the notification preferences.
      */
@@ -63,9 +101,11 @@ public class SessionActivity extends AppCompatActivity {
     private Model model;
 
     /**
-     * The schedule from which the session is built.
+     * The schedule from which the session is built.  For a session with a time budget, this is the
+     * packed schedule.
      */
     private Proto.Schedule schedule;
+    private static final String STATE_schedule = "schedule";
 
     /**
      * The sampled session.  These are the skill IDs for each slot in the schedule.
@@ -143,7 +183,10 @@ public class SessionActivity extends AppCompatActivity {
     /**
      * Cached preferences.
      */
-    private float stalenessWeight;
+    private SkillWeighting weighting;
+    private boolean spacedRepetition;
+    private boolean optimalAssignment;
+    private RecentPicks sessionRecentPicks;
     private boolean enableNotifications;
     private boolean notificationsVibrate;
     private String notificationRingtoneUri;
@@ -155,6 +198,7 @@ public class SessionActivity extends AppCompatActivity {
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
         outState.putLongArray(STATE_session, session);
+        if (hasBudget()) outState.putByteArray(STATE_schedule, schedule.toByteArray());
         outState.putInt(STATE_mode, mode);
         outState.putInt(STATE_curSlotIndex, curSlotIndex);
         if (mode == PLAY) {
@@ -171,7 +215,7 @@ public class SessionActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
 
         model = Model.getInstance(this);
-        schedule = model.getScheduleById(getIntent().getLongExtra(ARG_SCHEDULE_ID, -1));
+        schedule = model.getSnapshot().getScheduleById(getIntent().getLongExtra(ARG_SCHEDULE_ID, -1));
         setTitle(R.string.session_activity_title);
 
         setContentView(R.layout.activity_session);
@@ -205,11 +249,11 @@ public class SessionActivity extends AppCompatActivity {
             }
         });
 
-        // Get the staleness importance preference.  It should be in [0, 1].
         SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
-        stalenessWeight = sharedPreferences.getFloat(PREF_STALENESS_IMPORTANCE, 0.5f);
-        stalenessWeight = Math.max(0.0f, stalenessWeight);
-        stalenessWeight = Math.min(1.0f, stalenessWeight);
+        weighting = getSkillWeighting(sharedPreferences);
+        spacedRepetition = sharedPreferences.getBoolean(PREF_SPACED_REPETITION, false);
+        optimalAssignment = sharedPreferences.getBoolean(PREF_OPTIMAL_ASSIGNMENT, false);
+        sessionRecentPicks = getRecentPicks(sharedPreferences);
 
         enableNotifications = sharedPreferences.getBoolean(PREF_ENABLE_NOTIFICATIONS, true);
         notificationsVibrate = sharedPreferences.getBoolean(PREF_NOTIFICATION_VIBRATE, true);
@@ -218,6 +262,13 @@ public class SessionActivity extends AppCompatActivity {
 
         // Initialize the state variables.
         if (savedInstanceState != null) {
+            if (savedInstanceState.containsKey(STATE_schedule)) {
+                try {
+                    schedule = Proto.Schedule.parseFrom(savedInstanceState.getByteArray(STATE_schedule));
+                } catch (InvalidProtocolBufferException x) {
+                    throw new InternalError("cannot parse protocol buffer");
+                }
+            }
             session = savedInstanceState.getLongArray(STATE_session);
             mode = savedInstanceState.getInt(STATE_mode);
             curSlotIndex = savedInstanceState.getInt(STATE_curSlotIndex);
@@ -243,30 +294,173 @@ public class SessionActivity extends AppCompatActivity {
 
         // Make sure we have a rendered session.
         if (session == null) {
-            // We don't have a session yet.  Launch a thread to sample one and then render it.
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    session = Session.sampleSession(schedule, model, stalenessWeight);
-                    initSkillsArrayFromSession(model);
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            layoutSession();
-                        }
-                    });
-                }
-            }).start();
+            // We don't have a session yet.
+            sampleAndLayoutSession();
         } else {
             layoutSession();
         }
     }
 
+    /**
+     * Returns the policy for weighting skills given by the preferences.
+     */
+    static SkillWeighting getSkillWeighting(SharedPreferences sharedPreferences) {
+        // Get the staleness importance preference.  It should be in [0, 1].
+        float stalenessWeight = sharedPreferences.getFloat(PREF_STALENESS_IMPORTANCE, 0.5f);
+        stalenessWeight = Math.max(0.0f, stalenessWeight);
+        stalenessWeight = Math.min(1.0f, stalenessWeight);
+        return new PriorityStalenessWeighting(stalenessWeight);
+    }
+
+    /**
+     * Returns the skills picked for recent sessions, remembering as many sessions as the preferences
+     * give.
+     */
+    static synchronized RecentPicks getRecentPicks(SharedPreferences sharedPreferences) {
+        int capacity;
+        try {
+            capacity = Math.max(0, Integer.parseInt(sharedPreferences.getString(PREF_RECENT_SESSIONS, "3")));
+        } catch (NumberFormatException x) {
+            capacity = 0;
+        }
+        if (recentPicks == null) {
+            try {
+                recentPicks = RecentPicks.decode(sharedPreferences.getString(PREF_RECENT_PICKS, ""), capacity);
+            } catch (IllegalArgumentException x) {
+                // Start afresh rather than fail on a corrupt preference.
+                recentPicks = new RecentPicks(capacity);
+            }
+        }
+        recentPicks.setCapacity(capacity);
+        return recentPicks;
+    }
+
+    /**
+     * Records a newly sampled session as recent, and saves the recent sessions to the preferences.
+     */
+    private void addRecentPicks(long[] skillIds) {
+        sessionRecentPicks.add(skillIds);
+        PreferenceManager.getDefaultSharedPreferences(this).edit()
+                .putString(PREF_RECENT_PICKS, sessionRecentPicks.encode())
+                .apply();
+    }
+
+    /**
+     * Renders a pre-sampled session if one is cached, and otherwise launches a thread to sample a
+     * session and then render it.
+     */
+    private void sampleAndLayoutSession() {
+        final long scheduleId = getIntent().getLongExtra(ARG_SCHEDULE_ID, -1);
+        // Prefetched sessions are sampled by weight, so they are not used for due skills.
+        if (!hasBudget() && !spacedRepetition) {
+            SampledSession cached = SessionCache.getInstance(model).take(scheduleId, weighting,
+                    optimalAssignment, sessionRecentPicks);
+            if (cached != null) {
+                session = cached.getSkillIds();
+                addRecentPicks(session);
+                initSkillsArrayFromSession(model);
+                layoutSession();
+                return;
+            }
+        }
+        final Proto.Schedule mix = model.getSnapshot().getScheduleById(scheduleId);
+        final int budgetSecs = (int) TimeUnit.MINUTES.toSeconds(getIntent().getIntExtra(ARG_BUDGET_MINUTES, 0));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final Proto.Schedule sessionSchedule = hasBudget()
+                        ? Session.packSchedule(mix, model, weighting, budgetSecs) : schedule;
+                final long[] sampledSession = spacedRepetition
+                        ? Session.sampleDueSession(sessionSchedule, model, optimalAssignment)
+                        : Session.sampleSession(sessionSchedule, model, weighting,
+                        optimalAssignment, sessionRecentPicks).getSkillIds();
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (sessionSchedule != schedule) {
+                            schedule = sessionSchedule;
+                            storedDurations = new int[schedule.getSlotCount()];
+                        }
+                        session = sampledSession;
+                        addRecentPicks(session);
+                        initSkillsArrayFromSession(model);
+                        layoutSession();
+                    }
+                });
+            }
+        }).start();
+    }
+
+    /**
+     * Returns true if the session is built to fit a time budget.
+     */
+    private boolean hasBudget() {
+        return getIntent().getIntExtra(ARG_BUDGET_MINUTES, 0) > 0;
+    }
+
+    /**
+     * Returns true if the session can be replaced by a new one, i.e., if practice has not started.
+     */
+    private boolean canReshuffle() {
+        if (session == null || mode == PLAY) return false;
+        for (int duration : storedDurations) {
+            if (duration > 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the skill in the slot can be swapped for another, i.e., if it has not been
+     * practiced.
+     */
+    private boolean canSwap(int slotIndex) {
+        return storedDurations[slotIndex] == 0 && !(mode == PLAY && slotIndex == curSlotIndex);
+    }
+
+    /**
+     * Launches a thread to replace the skill in the slot with another, and then re-renders the
+     * session.
+     */
+    private void swapSkill(final int slotIndex) {
+        if (!canSwap(slotIndex)) return;
+        final long[] currentSession = session.clone();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final long newSkillId = Session.resampleSlot(schedule, model, weighting, currentSession, slotIndex);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Ignore the result if the session changed in the meantime.
+                        if (!Arrays.equals(session, currentSession) || !canSwap(slotIndex)) return;
+                        session[slotIndex] = newSkillId;
+                        skills[slotIndex] = model.getSnapshot().getSkillById(newSkillId);
+                        layoutSession();
+                    }
+                });
+            }
+        }).start();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        // Inflate the menu; this adds items to the action bar if it is present.
+        getMenuInflater().inflate(R.menu.session, menu);
+        return super.onCreateOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.reshuffle_session).setEnabled(canReshuffle());
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     private void initSkillsArrayFromSession(Model model) {
+        ModelSnapshot snapshot = model.getSnapshot();
         skills = new Proto.Skill[session.length];
         for (int slotIndex = 0; slotIndex < session.length; ++slotIndex) {
             if (session[slotIndex] != -1) {
-                skills[slotIndex] = model.getSkillById(session[slotIndex]);
+                skills[slotIndex] = snapshot.getSkillById(session[slotIndex]);
             }
         }
     }
@@ -296,6 +490,8 @@ public class SessionActivity extends AppCompatActivity {
         mode = PLAY;
         practicingSince = new Date();
         playPauseButton.setImageResource(R.drawable.pause);
+        // Once practice starts, the skill can no longer be swapped.
+        slotViewList.get(curSlotIndex).findViewById(R.id.swap_button).setVisibility(View.GONE);
         startDurationUpdates();
         scheduleNextNotification();
     }
@@ -543,6 +739,10 @@ public class SessionActivity extends AppCompatActivity {
             confirmExit();
             return true;
         }
+        if (id == R.id.reshuffle_session) {
+            if (canReshuffle()) sampleAndLayoutSession();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
@@ -560,6 +760,8 @@ public class SessionActivity extends AppCompatActivity {
         super.onStop();
         stopDurationUpdates();
         if (mode == PLAY) startPracticingNotification();
+        // The process may be killed once stopped, so write any buffered practice now.
+        model.requestFlush();
     }
 
     /**
@@ -576,6 +778,7 @@ public class SessionActivity extends AppCompatActivity {
         int totalDurationInSecs = 0;
         slotDurationTextViewList = new ArrayList<>();
         slotViewList = new ArrayList<>();
+        ModelSnapshot snapshot = model.getSnapshot();
         for (int slotIndex = 0; slotIndex < session.length; ++slotIndex) {
             View slotView = inflater.inflate(R.layout.session_slot, container, false);
             slotViewList.add(slotView);
@@ -604,9 +807,21 @@ public class SessionActivity extends AppCompatActivity {
                 skillNameTextView.setTypeface(null, Typeface.ITALIC);
                 skillNameTextView.setBackgroundColor(getResources().getColor(R.color.error_background));
             }
+            ImageButton swapButton = (ImageButton) slotView.findViewById(R.id.swap_button);
+            if (skillId != -1 && canSwap(slotIndex)) {
+                final int slotIndexToSwap = slotIndex;
+                swapButton.setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View view) {
+                        swapSkill(slotIndexToSwap);
+                    }
+                });
+            } else {
+                swapButton.setVisibility(View.GONE);
+            }
             TextView groupNameTextView = (TextView) slotView.findViewById(R.id.group_name);
             if (slot.hasGroupId())
-                groupNameTextView.setText(model.getSkillGroupById(slot.getGroupId()).getName());
+                groupNameTextView.setText(snapshot.getSkillGroupById(slot.getGroupId()).getName());
             else
                 groupNameTextView.setText(R.string.slot_without_group_label);
             container.addView(slotView);
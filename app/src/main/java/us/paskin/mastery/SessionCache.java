@@ -0,0 +1,171 @@
+package us.paskin.mastery;
+
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds a pre-sampled session for each schedule, so that starting a session can render it at once
+ * rather than waiting for a scan of the library.  Sessions are sampled on a background thread.  A
+ * cached session is discarded once the skills, the skill groups or its schedule change, or if a
+ * different weighting, assignment mode or set of recent picks is requested.  Each cached session is
+ * handed out only once, after which the next one is sampled.
+ */
+public final class SessionCache {
+    /**
+     * A pre-sampled session and the inputs it was sampled from.
+     */
+    private static final class Entry {
+        final Proto.Schedule schedule;
+        final SkillWeighting weighting;
+        final SampledSession session;
+
+        Entry(Proto.Schedule schedule, SkillWeighting weighting, SampledSession session) {
+            this.schedule = schedule;
+            this.weighting = weighting;
+            this.session = session;
+        }
+
+        boolean isValid(long scheduleId, ModelSnapshot snapshot, SkillWeighting weighting,
+                        boolean optimalAssignment, @Nullable RecentPicks recentPicks) {
+            final long[] recentSkillIds = recentPicks == null ? null : recentPicks.getSkillIds();
+            return session.getDataVersion() == snapshot.getSkillDataVersion()
+                    && session.isOptimalAssignment() == optimalAssignment
+                    && (recentSkillIds == null
+                    ? session.getRecentSkillIds().length == 0
+                    : Arrays.equals(session.getRecentSkillIds(), recentSkillIds))
+                    && this.weighting.equals(weighting)
+                    && schedule.equals(snapshot.getScheduleById(scheduleId));
+        }
+    }
+
+    private static SessionCache singleton;
+
+    public static synchronized SessionCache getInstance(Model model) {
+        if (singleton == null) {
+            singleton = new SessionCache(model);
+        }
+        return singleton;
+    }
+
+    private final Model model;
+
+    /**
+     * Samples sessions.  One thread is enough, since sampling a large library is itself parallel.
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * The cached sessions by schedule ID, and the IDs of the schedules whose sessions are being
+     * sampled.  These are guarded by the monitor of this object.
+     */
+    private final HashMap<Long, Entry> entries = new HashMap<>();
+    private final HashSet<Long> pending = new HashSet<>();
+
+    SessionCache(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Starts sampling a session for each schedule that does not have a valid one cached, and drops
+     * the sessions of schedules that no longer exist.
+     */
+    public void prefetchAll(SkillWeighting weighting, boolean optimalAssignment,
+                            @Nullable RecentPicks recentPicks) {
+        ModelSnapshot snapshot = model.getSnapshot();
+        synchronized (this) {
+            entries.keySet().retainAll(getScheduleIds(snapshot));
+        }
+        for (int position = 0; position < snapshot.getScheduleCount(); ++position) {
+            prefetch(snapshot.getScheduleIdAt(position), weighting, optimalAssignment, recentPicks);
+        }
+    }
+
+    /**
+     * Starts sampling a session for the schedule unless a valid one is cached or being sampled.
+     */
+    public void prefetch(final long scheduleId, final SkillWeighting weighting,
+                         final boolean optimalAssignment, @Nullable final RecentPicks recentPicks) {
+        synchronized (this) {
+            if (pending.contains(scheduleId)) return;
+            Entry entry = entries.get(scheduleId);
+            if (entry != null
+                    && entry.isValid(scheduleId, model.getSnapshot(), weighting, optimalAssignment,
+                    recentPicks)) {
+                return;
+            }
+            entries.remove(scheduleId);
+            pending.add(scheduleId);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Proto.Schedule schedule = model.getSnapshot().getScheduleById(scheduleId);
+                    if (schedule == null) return;
+                    SampledSession session = Session.sampleSession(schedule, model, weighting,
+                            optimalAssignment, recentPicks);
+                    synchronized (SessionCache.this) {
+                        entries.put(scheduleId, new Entry(schedule, weighting, session));
+                    }
+                } finally {
+                    synchronized (SessionCache.this) {
+                        pending.remove(scheduleId);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes and returns the cached session for the schedule if it is still valid, or returns null
+     * if there is none.  Either way, starts sampling the next session.  This does not block, so it
+     * can be called from the UI thread.
+     */
+    public
+    @Nullable
+    SampledSession take(long scheduleId, SkillWeighting weighting, boolean optimalAssignment,
+                        @Nullable RecentPicks recentPicks) {
+        SampledSession result = null;
+        synchronized (this) {
+            Entry entry = entries.remove(scheduleId);
+            // Buffered practice will change the skills once it is written, so the session would be stale.
+            if (entry != null && !model.hasPendingPractice()
+                    && entry.isValid(scheduleId, model.getSnapshot(), weighting, optimalAssignment,
+                    recentPicks)) {
+                result = entry.session;
+            }
+        }
+        prefetch(scheduleId, weighting, optimalAssignment, recentPicks);
+        return result;
+    }
+
+    /**
+     * Waits until the sessions that are being sampled have been cached.  This is for tests.
+     */
+    void awaitIdle() throws InterruptedException {
+        // The executor runs its tasks in order, so this runs after all of them.
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (ExecutionException x) {
+            throw new InternalError("cannot wait for the executor");
+        }
+    }
+
+    private static HashSet<Long> getScheduleIds(ModelSnapshot snapshot) {
+        HashSet<Long> result = new HashSet<>();
+        for (int position = 0; position < snapshot.getScheduleCount(); ++position) {
+            result.add(snapshot.getScheduleIdAt(position));
+        }
+        return result;
+    }
+}
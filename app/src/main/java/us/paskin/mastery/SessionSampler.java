@@ -0,0 +1,98 @@
+package us.paskin.mastery;
+
+import java.util.Random;
+
+/**
+ * Samples sessions for a fixed schedule and a fixed set of skill weights.  The skills eligible for
+ * each slot form a pool, and each pool has an alias table, so each slot is drawn in constant time
+ * once the sampler is built.  Slots that accept the same skills share a pool.  The sampler is
+ * immutable, so it can be cached and reused for repeated draws.
+ */
+class SessionSampler {
+    /**
+     * How many times a slot is redrawn because the skill drawn is already in the session, before
+     * falling back to a scan of the pool.
+     */
+    private static final int MAX_REDRAWS = 16;
+
+    private final long[][] poolSkillIds;
+    private final double[][] poolWeights;
+    private final AliasTable[] poolTables;
+
+    /**
+     * The index of the pool of each slot.
+     */
+    private final int[] slotPools;
+
+    /**
+     * @param poolSkillIds the IDs of the skills in each pool
+     * @param poolWeights  the weights of the skills in each pool
+     * @param slotPools    the index of the pool of each slot
+     */
+    SessionSampler(long[][] poolSkillIds, double[][] poolWeights, int[] slotPools) {
+        this.poolSkillIds = poolSkillIds;
+        this.poolWeights = poolWeights;
+        this.slotPools = slotPools;
+        poolTables = new AliasTable[poolSkillIds.length];
+        for (int pool = 0; pool < poolSkillIds.length; ++pool) {
+            if (poolSkillIds[pool].length != poolWeights[pool].length) {
+                throw new IllegalArgumentException("pool " + pool + " has mismatched weights");
+            }
+            if (poolSkillIds[pool].length > 0) poolTables[pool] = new AliasTable(poolWeights[pool]);
+        }
+    }
+
+    int getNumSlots() {
+        return slotPools.length;
+    }
+
+    /**
+     * Returns the ID of the skill for each slot, or -1 for slots that could not be filled.  Slots are
+     * filled in order, each with a skill drawn in proportion to its weight from those in the slot's
+     * pool that are not already in the session.
+     */
+    long[] sample(Random random) {
+        long[] session = new long[slotPools.length];
+        for (int slotIndex = 0; slotIndex < session.length; ++slotIndex) {
+            session[slotIndex] = sampleSlot(slotIndex, session, slotIndex, random);
+        }
+        return session;
+    }
+
+    /**
+     * Returns a skill for the slot that is not among the first numChosen entries of chosen, or -1 if
+     * there is none.
+     */
+    long sampleSlot(int slotIndex, long[] chosen, int numChosen, Random random) {
+        final int pool = slotPools[slotIndex];
+        final AliasTable table = poolTables[pool];
+        if (table == null) return -1;
+        final long[] skillIds = poolSkillIds[pool];
+        for (int i = 0; i < MAX_REDRAWS; ++i) {
+            final long skillId = skillIds[table.sample(random)];
+            if (!contains(chosen, numChosen, skillId)) return skillId;
+        }
+        // Most of the pool's weight is already in the session, so draw from the rest directly.
+        final double[] weights = poolWeights[pool];
+        double sumWeight = 0.0;
+        for (int i = 0; i < skillIds.length; ++i) {
+            if (!contains(chosen, numChosen, skillIds[i])) sumWeight += weights[i];
+        }
+        double target = random.nextDouble() * sumWeight;
+        long result = -1;
+        for (int i = 0; i < skillIds.length; ++i) {
+            if (contains(chosen, numChosen, skillIds[i])) continue;
+            result = skillIds[i];
+            target -= weights[i];
+            if (target < 0.0) break;
+        }
+        return result;
+    }
+
+    private static boolean contains(long[] values, int count, long value) {
+        for (int i = 0; i < count; ++i) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+}
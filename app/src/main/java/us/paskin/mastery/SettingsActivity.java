@@ -186,6 +186,7 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
             // to their values. When their values change, their summaries are
             // updated to reflect the new value, per the Android Design
             // guidelines.
+            bindPreferenceSummaryToValue(findPreference(SessionActivity.PREF_RECENT_SESSIONS));
         }
 
         @Override
@@ -0,0 +1,285 @@
+package us.paskin.mastery;
+
+import java.util.Random;
+
+/**
+ * Samples a session in a single pass over the skills, using the weighted sampling without
+ * replacement of Efraimidis and Spirakis.  Each skill gets a random key u^(1/weight), where u is
+ * uniform in (0, 1), and a skill is more likely to have a larger key the larger its weight.  Each
+ * pool of skills (see SessionSampler) keeps the skills with the largest keys in a bounded min-heap,
+ * so the pass takes O(n log k) time for n skills and k slots.  When the pass is over, the slots are
+ * filled in order, each with the skill in its pool with the largest key that is not already in the
+ * session.  For a single pool, this is equivalent to drawing the slots one after another, each in
+ * proportion to weight from the skills that remain.
+ */
+class SinglePassSessionSampler {
+    /**
+     * The index of the pool of each slot.
+     */
+    private final int[] slotPools;
+
+    /**
+     * For each pool, a min-heap of the skills with the largest keys seen so far.  Keys are stored as
+     * their logarithms, log(u) / weight, which preserves their order and does not underflow.
+     */
+    private final long[][] heapSkillIds;
+    private final double[][] heapKeys;
+    private final int[] heapSizes;
+
+    /**
+     * @param slotPools the index of the pool of each slot
+     * @param numPools  the number of pools
+     */
+    SinglePassSessionSampler(int[] slotPools, int numPools) {
+        // A pool never needs more candidates than there are slots, since each slot takes only one.
+        this(slotPools, numPools, slotPools.length);
+    }
+
+    /**
+     * @param slotPools the index of the pool of each slot
+     * @param numPools  the number of pools
+     * @param capacity  the number of skills kept by each pool
+     */
+    SinglePassSessionSampler(int[] slotPools, int numPools, int capacity) {
+        this.slotPools = slotPools;
+        heapSkillIds = new long[numPools][capacity];
+        heapKeys = new double[numPools][capacity];
+        heapSizes = new int[numPools];
+    }
+
+    /**
+     * @param slotPools  the index of the pool of each slot
+     * @param capacities the number of skills kept by each pool
+     */
+    SinglePassSessionSampler(int[] slotPools, int[] capacities) {
+        this.slotPools = slotPools;
+        heapSkillIds = new long[capacities.length][];
+        heapKeys = new double[capacities.length][];
+        heapSizes = new int[capacities.length];
+        for (int pool = 0; pool < capacities.length; ++pool) {
+            heapSkillIds[pool] = new long[capacities[pool]];
+            heapKeys[pool] = new double[capacities[pool]];
+        }
+    }
+
+    int getNumPools() {
+        return heapSizes.length;
+    }
+
+    /**
+     * Returns true if the pool keeps as many skills as it can, so that only skills with larger keys
+     * than getSmallestKey can change it.
+     */
+    boolean isFull(int pool) {
+        return heapSizes[pool] == heapKeys[pool].length;
+    }
+
+    /**
+     * Returns true if no skill has been offered to the pool.
+     */
+    boolean isEmpty(int pool) {
+        return heapSizes[pool] == 0;
+    }
+
+    /**
+     * Returns the smallest key kept by the pool, which must not be empty.
+     */
+    double getSmallestKey(int pool) {
+        return heapKeys[pool][0];
+    }
+
+    /**
+     * Returns a random key for a skill with the supplied weight.  The same key should be offered to
+     * every pool the skill is in.
+     */
+    static double key(double weight, Random random) {
+        // Skills with no weight are only used if nothing else is eligible.
+        if (weight <= 0.0) return Double.NEGATIVE_INFINITY;
+        // 1 - nextDouble() is in (0, 1], so the log is finite.
+        return Math.log(1.0 - random.nextDouble()) / weight;
+    }
+
+    /**
+     * Offers the skill to the pool with the supplied key.
+     */
+    void offer(int pool, long skillId, double key) {
+        long[] skillIds = heapSkillIds[pool];
+        double[] keys = heapKeys[pool];
+        int size = heapSizes[pool];
+        if (size < keys.length) {
+            // Sift the new entry up from the bottom.
+            int i = size;
+            while (i > 0) {
+                final int parent = (i - 1) / 2;
+                if (keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                skillIds[i] = skillIds[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            skillIds[i] = skillId;
+            heapSizes[pool] = size + 1;
+            return;
+        }
+        if (size == 0 || key <= keys[0]) return;
+        // Replace the entry with the smallest key.
+        siftDown(skillIds, keys, size, skillId, key);
+    }
+
+    /**
+     * Offers every skill kept by other, which must have the same slots and pools, to this sampler.
+     * Since each skill's key is drawn independently, sampling disjoint sets of skills separately and
+     * merging the results is the same as sampling them all in one pass.
+     */
+    void merge(SinglePassSessionSampler other) {
+        for (int pool = 0; pool < heapSizes.length; ++pool) {
+            for (int i = 0; i < other.heapSizes[pool]; ++i) {
+                offer(pool, other.heapSkillIds[pool][i], other.heapKeys[pool][i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the ID of the skill for each slot, or -1 for slots that could not be filled.  This
+     * must be called only once, after all skills have been offered.
+     */
+    long[] finish() {
+        return finish(slotPools);
+    }
+
+    /**
+     * Returns the ID of the skill for each slot as above, where the slots have the supplied pools
+     * rather than those the sampler was created with, e.g., because the strata of slots with quotas
+     * are drawn after the pass (see CompiledSchedule.drawSlotPools).
+     */
+    long[] finish(int[] slotPools) {
+        sortHeaps();
+        long[] session = new long[slotPools.length];
+        for (int slotIndex = 0; slotIndex < session.length; ++slotIndex) {
+            final int pool = slotPools[slotIndex];
+            session[slotIndex] = -1;
+            for (int i = 0; i < heapSizes[pool]; ++i) {
+                final long skillId = heapSkillIds[pool][i];
+                if (!contains(session, slotIndex, skillId)) {
+                    session[slotIndex] = skillId;
+                    break;
+                }
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Returns the ID of the skill for each slot as above, but assigns the skills kept by the pools
+     * to fill as many slots as possible (see OptimalAssignment) rather than in slot order.  Keeping
+     * as many candidates in each pool as there are slots is enough for this, since a pool's slots can
+     * lose only that many candidates to the other slots.  This must be called only once, after all
+     * skills have been offered.
+     */
+    long[] finishOptimal() {
+        return finishOptimal(slotPools);
+    }
+
+    /**
+     * Returns the ID of the skill for each slot as by finishOptimal, where the slots have the supplied
+     * pools as in finish(int[]).
+     */
+    long[] finishOptimal(int[] slotPools) {
+        return OptimalAssignment.assign(slotPools, heapSkillIds, heapKeys, heapSizes);
+    }
+
+    /**
+     * Returns the skill IDs of a session for each of the supplied number of days.  Each day is filled
+     * as by finish, except that each slot takes the skill in its pool that has been chosen on the
+     * fewest earlier days, and among those, the one with the largest key.  A skill's key is drawn
+     * once for all the days, so merely scaling the weights of chosen skills would still favor them.
+     * Keeping numDays times as many skills in each pool as there are slots is enough for no skill to
+     * be repeated while its pool has others left.  This must be called only once, after all skills
+     * have been offered.
+     */
+    long[][] finishPlan(int numDays) {
+        int[][] slotPoolsByDay = new int[numDays][];
+        for (int day = 0; day < numDays; ++day) slotPoolsByDay[day] = slotPools;
+        return finishPlan(slotPoolsByDay);
+    }
+
+    /**
+     * Returns the skill IDs of a session for each day as above, where the slots of each day have the
+     * supplied pools, e.g., because slots with quotas are stratified differently each day.  Each pool
+     * must keep as many skills as it has slots over all the days for no skill to be repeated while its
+     * pool has others left.
+     */
+    long[][] finishPlan(int[][] slotPoolsByDay) {
+        sortHeaps();
+        LongIntMap timesChosen = new LongIntMap();
+        long[][] plan = new long[slotPoolsByDay.length][slotPools.length];
+        for (int day = 0; day < plan.length; ++day) {
+            long[] session = plan[day];
+            for (int slotIndex = 0; slotIndex < session.length; ++slotIndex) {
+                final int pool = slotPoolsByDay[day][slotIndex];
+                session[slotIndex] = -1;
+                int fewestTimes = Integer.MAX_VALUE;
+                for (int i = 0; i < heapSizes[pool] && fewestTimes > 0; ++i) {
+                    final long skillId = heapSkillIds[pool][i];
+                    if (contains(session, slotIndex, skillId)) continue;
+                    final int times = getTimesChosen(timesChosen, skillId);
+                    if (times < fewestTimes) {
+                        session[slotIndex] = skillId;
+                        fewestTimes = times;
+                    }
+                }
+                final long skillId = session[slotIndex];
+                if (skillId != -1) timesChosen.put(skillId, getTimesChosen(timesChosen, skillId) + 1);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Sorts each heap by decreasing key.  This is done by repeatedly moving the smallest key to the
+     * end, i.e., heapsort, which needs no extra space.
+     */
+    private void sortHeaps() {
+        for (int pool = 0; pool < heapSizes.length; ++pool) {
+            long[] skillIds = heapSkillIds[pool];
+            double[] keys = heapKeys[pool];
+            for (int size = heapSizes[pool]; size > 1; --size) {
+                final long lastSkillId = skillIds[size - 1];
+                final double lastKey = keys[size - 1];
+                skillIds[size - 1] = skillIds[0];
+                keys[size - 1] = keys[0];
+                siftDown(skillIds, keys, size - 1, lastSkillId, lastKey);
+            }
+        }
+    }
+
+    /**
+     * Places the entry at the root of the heap of the supplied size and sifts it down.
+     */
+    private static void siftDown(long[] skillIds, double[] keys, int size, long skillId, double key) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && keys[child + 1] < keys[child]) ++child;
+            if (key <= keys[child]) break;
+            keys[i] = keys[child];
+            skillIds[i] = skillIds[child];
+            i = child;
+        }
+        keys[i] = key;
+        skillIds[i] = skillId;
+    }
+
+    private static int getTimesChosen(LongIntMap timesChosen, long skillId) {
+        final int count = timesChosen.get(skillId);
+        return count == LongIntMap.MISSING ? 0 : count;
+    }
+
+    private static boolean contains(long[] values, int count, long value) {
+        for (int i = 0; i < count; ++i) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+}
@@ -459,7 +459,8 @@ public class SkillDetailActivity extends AppCompatActivity {
     }
 
     synchronized void accumulatePracticeTime(int secondsPracticed) {
-        skillBuilder = model.addPracticeSecondsToSkill(secondsPracticed, skillId);
+        model.addPracticeSecondsToSkill(secondsPracticed, skillId);
+        skillBuilder = model.getSkillById(skillId).toBuilder();
         updateDuration();
     }
 
@@ -644,6 +645,8 @@ public class SkillDetailActivity extends AppCompatActivity {
         super.onStop();
         stopDurationUpdates();
         if (mode == PLAY) startPracticingNotification();
+        // The process may be killed once stopped, so write any buffered practice now.
+        model.requestFlush();
     }
 
     /**
@@ -3,7 +3,6 @@ package us.paskin.mastery;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v7.app.ActionBar;
@@ -16,8 +15,6 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
-import com.google.protobuf.InvalidProtocolBufferException;
-
 /**
  * An activity representing a list of Skills. This activity
  * has different presentations for handset and tablet-size devices. On
@@ -170,7 +167,7 @@ public class SkillGroupListActivity extends DrawerActivity {
             extends RecyclerView.Adapter<SimpleItemRecyclerViewAdapter.ViewHolder> {
 
         private final Model data;
-        private Cursor cursor;
+        private ModelSnapshot snapshot;
 
         public SimpleItemRecyclerViewAdapter(Context context) {
             setHasStableIds(true);
@@ -179,14 +176,26 @@ public class SkillGroupListActivity extends DrawerActivity {
         }
 
         public void refreshView() {
-            if (cursor != null) cursor.close();
-            cursor = data.getSkillGroupList();
+            snapshot = data.peekSnapshot();
+            if (snapshot != null) return;
+            // The list is empty until the snapshot has been loaded in the background.
+            data.requestSnapshot(new Runnable() {
+                @Override
+                public void run() {
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            refreshView();
+                            notifyDataSetChanged();
+                        }
+                    });
+                }
+            });
         }
 
         @Override
         public long getItemId(int position) {
-            cursor.moveToPosition(position);
-            return cursor.getLong(0);
+            return snapshot.getSkillGroupIdAt(position);
         }
 
         @Override
@@ -198,14 +207,8 @@ public class SkillGroupListActivity extends DrawerActivity {
 
         @Override
         public void onBindViewHolder(final ViewHolder holder, int position) {
-            cursor.moveToPosition(position);
-            final long id = cursor.getLong(0);
-            try {
-                final Proto.SkillGroup skillGroup = Proto.SkillGroup.parseFrom(cursor.getBlob(1));
-                holder.setData(skillGroup);
-            } catch (InvalidProtocolBufferException x) {
-                throw new InternalError("failed to parse protocol buffer");
-            }
+            final long id = snapshot.getSkillGroupIdAt(position);
+            holder.setData(snapshot.getSkillGroupAt(position));
             holder.view.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
@@ -224,7 +227,7 @@ public class SkillGroupListActivity extends DrawerActivity {
 
         @Override
         public int getItemCount() {
-            return cursor.getCount();
+            return snapshot == null ? 0 : snapshot.getSkillGroupCount();
         }
 
         public class ViewHolder extends RecyclerView.ViewHolder {
@@ -0,0 +1,181 @@
+package us.paskin.mastery;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fields of the skills that sampling needs, stored column by column in primitive arrays.  Rows
+ * are in the same order as the skills of the snapshot that holds the table, i.e., by name.  Each
+ * row's group memberships are packed into a bitset over the dense group indices (see
+ * GroupHierarchy), so testing whether a skill can fill a slot is a few word operations.
+ * <p>
+ * Scanning a table touches no protocol buffers and allocates nothing.  A table is filled in by
+ * setRow and copyRow before it is published, and is never modified after that.
+ */
+final class SkillTable {
+    private static final int BITS_PER_WORD = 64;
+
+    private final long[] ids;
+    private final byte[] priorities;
+    private final int[] estHoursPracticed;
+
+    /**
+     * The group memberships of row i are in words [i * groupWords, (i + 1) * groupWords).
+     */
+    private final int groupWords;
+    private final long[] groupBits;
+
+    /**
+     * Returns a table with the supplied number of rows, with room for groups with indices less than
+     * groupIndexCapacity.  The rows must be filled in before the table is used.
+     */
+    SkillTable(int size, int groupIndexCapacity) {
+        ids = new long[size];
+        priorities = new byte[size];
+        estHoursPracticed = new int[size];
+        groupWords = (groupIndexCapacity + BITS_PER_WORD - 1) / BITS_PER_WORD;
+        groupBits = new long[size * groupWords];
+    }
+
+    /**
+     * Returns a table of the skills with the supplied IDs, in that order.
+     */
+    static SkillTable build(long[] ids, Map<Long, Proto.Skill> skills, GroupHierarchy groupHierarchy) {
+        SkillTable result = new SkillTable(ids.length, groupHierarchy.getIndexCapacity());
+        int[] groupIndices = new int[4];
+        for (int row = 0; row < ids.length; ++row) {
+            groupIndices = result.setRow(row, ids[row], skills.get(ids[row]), groupHierarchy, groupIndices);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a table of the skills with the supplied IDs, in that order, reusing the rows of this
+     * table for skills that are not among changedSkills.  Only the changed skills are read.
+     */
+    SkillTable withChanges(long[] newIds, Map<Long, Proto.Skill> skills,
+                           Map<Long, Proto.Skill> changedSkills, GroupHierarchy groupHierarchy) {
+        LongIntMap oldRows = new LongIntMap();
+        for (int row = 0; row < ids.length; ++row) oldRows.put(ids[row], row);
+        SkillTable result = new SkillTable(newIds.length, groupHierarchy.getIndexCapacity());
+        int[] groupIndices = new int[4];
+        for (int row = 0; row < newIds.length; ++row) {
+            final long id = newIds[row];
+            final int oldRow = oldRows.get(id);
+            if (oldRow != LongIntMap.MISSING && !changedSkills.containsKey(id)) {
+                result.copyRow(row, this, oldRow);
+            } else {
+                groupIndices = result.setRow(row, id, skills.get(id), groupHierarchy, groupIndices);
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long getId(int row) {
+        return ids[row];
+    }
+
+    int getPriority(int row) {
+        return priorities[row];
+    }
+
+    /**
+     * Returns the estimated number of whole hours the skill was practiced in the past 100 days.
+     */
+    int getEstHoursPracticed(int row) {
+        return estHoursPracticed[row];
+    }
+
+    /**
+     * Sets weights[i] to the weight of the skill in row i, according to the supplied policy.
+     */
+    void computeWeights(SkillWeighting weighting, double[] weights) {
+        weighting.computeWeights(priorities, estHoursPracticed, ids.length, weights);
+    }
+
+    /**
+     * Returns true if the skill is directly in one of the groups whose indices are set in mask, as
+     * returned by toGroupMask.
+     */
+    boolean isInAnyGroup(int row, long[] mask) {
+        final int offset = row * groupWords;
+        final int numWords = Math.min(groupWords, mask.length);
+        for (int i = 0; i < numWords; ++i) {
+            if ((groupBits[offset + i] & mask[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the group index is set in mask, as returned by toGroupMask.
+     */
+    static boolean isInMask(int index, long[] mask) {
+        final int word = index / BITS_PER_WORD;
+        return word < mask.length && (mask[word] & (1L << (index % BITS_PER_WORD))) != 0;
+    }
+
+    /**
+     * Packs the group indices set in bits into words, for use with isInAnyGroup.
+     */
+    static long[] toGroupMask(BitSet bits) {
+        long[] result = new long[(bits.length() + BITS_PER_WORD - 1) / BITS_PER_WORD];
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            result[i / BITS_PER_WORD] |= 1L << (i % BITS_PER_WORD);
+        }
+        return result;
+    }
+
+    /**
+     * Fills in a row.  Groups with negative indices (i.e., that do not exist) are ignored.
+     */
+    void setRow(int row, long id, int priority, int estHours, int[] groupIndices, int numGroups) {
+        ids[row] = id;
+        priorities[row] = (byte) priority;
+        estHoursPracticed[row] = estHours;
+        final int offset = row * groupWords;
+        for (int i = offset; i < offset + groupWords; ++i) groupBits[i] = 0;
+        for (int i = 0; i < numGroups; ++i) {
+            final int index = groupIndices[i];
+            if (index < 0) continue;
+            if (index >= groupWords * BITS_PER_WORD) {
+                throw new IllegalArgumentException("invalid group index: " + index);
+            }
+            groupBits[offset + index / BITS_PER_WORD] |= 1L << (index % BITS_PER_WORD);
+        }
+    }
+
+    /**
+     * Fills in a row with a copy of a row of another table.
+     */
+    void copyRow(int row, SkillTable from, int fromRow) {
+        ids[row] = from.ids[fromRow];
+        priorities[row] = from.priorities[fromRow];
+        estHoursPracticed[row] = from.estHoursPracticed[fromRow];
+        final int offset = row * groupWords;
+        final int numWords = Math.min(groupWords, from.groupWords);
+        System.arraycopy(from.groupBits, fromRow * from.groupWords, groupBits, offset, numWords);
+        for (int i = offset + numWords; i < offset + groupWords; ++i) groupBits[i] = 0;
+    }
+
+    /**
+     * Fills in a row from a skill, returning the scratch array for group indices, which may have
+     * been replaced by a larger one.
+     */
+    private int[] setRow(int row, long id, Proto.Skill skill, GroupHierarchy groupHierarchy,
+                         int[] groupIndices) {
+        final int numGroups = skill.getGroupIdCount();
+        if (numGroups > groupIndices.length) groupIndices = new int[2 * numGroups];
+        for (int i = 0; i < numGroups; ++i) {
+            groupIndices[i] = groupHierarchy.indexOf(skill.getGroupId(i));
+        }
+        final long estHours = TimeUnit.SECONDS.toHours(skill.getEstSecondsPracticed100Days());
+        setRow(row, id, skill.getPriority(), (int) Math.min(estHours, Integer.MAX_VALUE),
+                groupIndices, numGroups);
+        return groupIndices;
+    }
+}
@@ -0,0 +1,23 @@
+package us.paskin.mastery;
+
+/**
+ * A policy for weighting skills when sampling sessions.  The probability a skill is sampled is
+ * proportional to its weight.  Skills are scored in batches over primitive columns (see SkillTable),
+ * so an implementation is a simple loop that touches no objects.
+ * <p>
+ * Samplers are cached by weighting, so implementations should be immutable and implement equals and
+ * hashCode.
+ */
+public interface SkillWeighting {
+    /**
+     * Sets weights[i] to the non-negative weight of the skill with priorities[i] and
+     * estHoursPracticed[i], for each i less than count.
+     *
+     * @param priorities        the priority of each skill, in [Model.MIN_PRIORITY, Model.MAX_PRIORITY]
+     * @param estHoursPracticed the estimated number of whole hours each skill was practiced in the
+     *                          past 100 days
+     * @param count             the number of skills
+     * @param weights           receives the weights
+     */
+    void computeWeights(byte[] priorities, int[] estHoursPracticed, int count, double[] weights);
+}
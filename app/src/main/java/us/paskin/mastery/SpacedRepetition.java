@@ -0,0 +1,75 @@
+package us.paskin.mastery;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A spaced-repetition model in the style of SM-2, an alternative to weighting skills by priority and
+ * staleness.  Each skill has an interval, an ease factor and a next-due time (see Proto.Skill).  A
+ * skill is first due at once, and each review schedules the next one an interval later: one day
+ * after the first review, six days after the second, and then the previous interval times the ease
+ * factor.
+ * <p>
+ * SM-2 grades each review by how well it was recalled, but practice here only records how long it
+ * lasted.  So a review on time counts as a successful one that leaves the ease factor alone, and a
+ * review that is more than a whole interval overdue counts as a lapse: the skill starts over with a
+ * one-day interval and a smaller ease factor.  Practice before the skill is due, e.g., another slot
+ * of the same skill on the same day, does not change the schedule.
+ */
+final class SpacedRepetition {
+    static final int DEFAULT_EASE_PERMILLE = 2500;
+    static final int MIN_EASE_PERMILLE = 1300;
+
+    /**
+     * The amount by which a lapse reduces the ease factor.
+     */
+    static final int LAPSE_EASE_PENALTY_PERMILLE = 200;
+
+    static final long FIRST_INTERVAL_SECS = TimeUnit.DAYS.toSeconds(1);
+    static final long SECOND_INTERVAL_SECS = TimeUnit.DAYS.toSeconds(6);
+
+    private SpacedRepetition() {
+    }
+
+    /**
+     * Updates the skill's interval, ease factor and next-due time to reflect a review that ended at
+     * reviewDateInSecs.
+     */
+    static void applyReview(Proto.Skill.Builder skillBuilder, long reviewDateInSecs) {
+        if (!skillBuilder.hasNextDue()) {
+            skillBuilder.setIntervalSecs(FIRST_INTERVAL_SECS)
+                    .setNextDue(reviewDateInSecs + FIRST_INTERVAL_SECS);
+            return;
+        }
+        final long nextDue = skillBuilder.getNextDue();
+        if (reviewDateInSecs < nextDue) return;
+        final long interval = skillBuilder.getIntervalSecs();
+        final int ease = skillBuilder.getEasePermille();
+        long newInterval;
+        if (reviewDateInSecs - nextDue > interval) {
+            skillBuilder.setEasePermille(Math.max(MIN_EASE_PERMILLE, ease - LAPSE_EASE_PENALTY_PERMILLE));
+            newInterval = FIRST_INTERVAL_SECS;
+        } else if (interval < SECOND_INTERVAL_SECS) {
+            newInterval = SECOND_INTERVAL_SECS;
+        } else {
+            newInterval = interval * ease / 1000;
+        }
+        skillBuilder.setIntervalSecs(newInterval).setNextDue(reviewDateInSecs + newInterval);
+    }
+
+    /**
+     * Returns when the skill is due, in seconds since the epoch.  A skill that was never practiced is
+     * due at time zero, i.e., before any other.
+     */
+    static long getDueDate(Proto.Skill skill) {
+        return skill.hasNextDue() ? skill.getNextDue() : 0;
+    }
+
+    /**
+     * Returns the rank of a skill with the supplied due date and priority in the order that due
+     * sessions fill slots: by due date, and among skills due at the same time, by decreasing
+     * priority.
+     */
+    static long getRank(long dueDateInSecs, int priority) {
+        return dueDateInSecs * (Model.MAX_PRIORITY + 1) + (Model.MAX_PRIORITY - priority);
+    }
+}
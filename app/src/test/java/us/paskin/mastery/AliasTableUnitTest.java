@@ -0,0 +1,37 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AliasTableUnitTest {
+    @Test
+    public void sample_followsWeights() throws Exception {
+        double[] weights = {1.0, 0.0, 2.0, 7.0};
+        AliasTable table = new AliasTable(weights);
+        Random random = new Random(1);
+        int[] counts = new int[weights.length];
+        final int numDraws = 100000;
+        for (int i = 0; i < numDraws; ++i) ++counts[table.sample(random)];
+        assertEquals(0, counts[1]);
+        for (int i = 0; i < weights.length; ++i) {
+            assertEquals(weights[i] / 10.0, (double) counts[i] / numDraws, 0.01);
+        }
+    }
+
+    @Test
+    public void sample_isUniformForZeroWeights() throws Exception {
+        AliasTable table = new AliasTable(new double[]{0.0, 0.0});
+        Random random = new Random(1);
+        int count = 0;
+        for (int i = 0; i < 10000; ++i) count += table.sample(random);
+        assertEquals(0.5, count / 10000.0, 0.02);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNegativeWeights() throws Exception {
+        new AliasTable(new double[]{1.0, -1.0});
+    }
+}
@@ -0,0 +1,54 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompiledScheduleUnitTest {
+    @Test
+    public void allocate_givesWholeSharesExactly() throws Exception {
+        Random random = new Random(1);
+        int[] counts = new int[2];
+        for (int i = 0; i < 1000; ++i) {
+            CompiledSchedule.allocate(4, new int[]{50, 50}, random, counts);
+            assertArrayEquals(new int[]{2, 2}, counts);
+        }
+    }
+
+    @Test
+    public void allocate_roundsSharesToMatchOnAverage() throws Exception {
+        Random random = new Random(2);
+        final int[] percents = {50, 30, 20};
+        final int numSlots = 3;
+        final int n = 40000;
+        int[] counts = new int[percents.length];
+        long[] totals = new long[percents.length];
+        for (int i = 0; i < n; ++i) {
+            CompiledSchedule.allocate(numSlots, percents, random, counts);
+            int sum = 0;
+            for (int j = 0; j < percents.length; ++j) {
+                final double share = numSlots * percents[j] / 100.0;
+                assertTrue(counts[j] == (int) Math.floor(share) || counts[j] == (int) Math.ceil(share));
+                sum += counts[j];
+                totals[j] += counts[j];
+            }
+            assertEquals(numSlots, sum);
+        }
+        for (int j = 0; j < percents.length; ++j) {
+            assertEquals(numSlots * percents[j] / 100.0, totals[j] / (double) n, 0.01);
+        }
+    }
+
+    @Test
+    public void allocate_dividesShareOfEmptyQuotaAmongOthers() throws Exception {
+        Random random = new Random(3);
+        int[] counts = new int[3];
+        for (int i = 0; i < 1000; ++i) {
+            // As if the middle quota's group had no skills.
+            CompiledSchedule.allocate(3, new int[]{50, 0, 25}, random, counts);
+            assertArrayEquals(new int[]{2, 0, 1}, counts);
+        }
+    }
+}
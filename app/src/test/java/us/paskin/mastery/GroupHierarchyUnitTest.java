@@ -0,0 +1,138 @@
+package us.paskin.mastery;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GroupHierarchyUnitTest {
+    private GroupHierarchy hierarchy;
+
+    @Before
+    public void setUp() {
+        // 0 <- 1 <- {2, 3} <- 4
+        hierarchy = new GroupHierarchy();
+        hierarchy.setParents(0, Collections.<Long>emptyList());
+        hierarchy.setParents(1, Arrays.asList(0L));
+        hierarchy.setParents(2, Arrays.asList(1L));
+        hierarchy.setParents(3, Arrays.asList(1L));
+        hierarchy.setParents(4, Arrays.asList(2L, 3L));
+    }
+
+    @Test
+    public void ancestry_works() throws Exception {
+        assertTrue(hierarchy.isAncestorOf(0, 4));
+        assertTrue(hierarchy.isAncestorOf(2, 4));
+        assertFalse(hierarchy.isAncestorOf(4, 0));
+        assertFalse(hierarchy.isAncestorOf(2, 3));
+        assertFalse(hierarchy.isAncestorOf(0, 0));
+        assertNull(hierarchy.getAncestors(0));
+        assertEquals(4, hierarchy.getAncestors(4).size());
+    }
+
+    @Test
+    public void primitiveQueries_work() throws Exception {
+        long[] buffer = new long[hierarchy.size()];
+        assertEquals(0, hierarchy.getAncestorIds(0, buffer, 0));
+        assertEquals(4, hierarchy.getAncestorIds(4, buffer, 0));
+        // 2 and 3 share their ancestors, which are only added once.
+        int count = hierarchy.addGroupAndAncestorIds(2, buffer, 0);
+        assertEquals(3, count);
+        count = hierarchy.addGroupAndAncestorIds(3, buffer, count);
+        assertEquals(4, count);
+        long sum = 0;
+        for (int i = 0; i < count; ++i) sum += buffer[i];
+        assertEquals(6, sum);
+    }
+
+    @Test
+    public void indices_areStableAndReused() throws Exception {
+        final int index4 = hierarchy.indexOf(4);
+        final int index3 = hierarchy.indexOf(3);
+        hierarchy.setParents(4, Arrays.asList(2L));
+        assertEquals(index4, hierarchy.indexOf(4));
+        hierarchy.remove(3);
+        assertEquals(-1, hierarchy.indexOf(3));
+        hierarchy.setParents(5, Arrays.asList(0L));
+        assertEquals(index3, hierarchy.indexOf(5));
+        assertEquals(5, hierarchy.getIndexCapacity());
+        assertFalse(hierarchy.isAncestorOf(5, 4));
+        assertTrue(hierarchy.isAncestorOf(0, 5));
+    }
+
+    @Test
+    public void descendantIndices_work() throws Exception {
+        BitSet bits = new BitSet();
+        hierarchy.addGroupAndDescendantIndices(1, bits);
+        assertEquals(4, bits.cardinality());
+        assertFalse(bits.get(hierarchy.indexOf(0)));
+        assertTrue(bits.get(hierarchy.indexOf(1)));
+        assertTrue(bits.get(hierarchy.indexOf(4)));
+    }
+
+    @Test
+    public void copy_isIndependent() throws Exception {
+        GroupHierarchy copy = new GroupHierarchy(hierarchy);
+        hierarchy.setParents(4, Arrays.asList(3L));
+        hierarchy.remove(2);
+        assertTrue(copy.contains(2));
+        assertTrue(copy.isAncestorOf(2, 4));
+        assertEquals(hierarchy.indexOf(4), copy.indexOf(4));
+    }
+
+    @Test
+    public void load_matchesIncremental() throws Exception {
+        HashMap<Long, List<Long>> parentsById = new HashMap<>();
+        parentsById.put(4L, Arrays.asList(2L, 3L));
+        parentsById.put(3L, Arrays.asList(1L));
+        parentsById.put(2L, Arrays.asList(1L));
+        parentsById.put(1L, Arrays.asList(0L));
+        parentsById.put(0L, Collections.<Long>emptyList());
+        GroupHierarchy loaded = new GroupHierarchy();
+        loaded.load(parentsById);
+        for (long a = 0; a < 5; ++a) {
+            for (long b = 0; b < 5; ++b) {
+                assertEquals(hierarchy.isAncestorOf(a, b), loaded.isAncestorOf(a, b));
+            }
+        }
+    }
+
+    @Test
+    public void setParents_updatesDescendants() throws Exception {
+        hierarchy.setParents(5, Collections.<Long>emptyList());
+        hierarchy.setParents(1, Arrays.asList(5L));
+        assertTrue(hierarchy.isAncestorOf(5, 4));
+        assertFalse(hierarchy.isAncestorOf(0, 4));
+        assertFalse(hierarchy.isAncestorOf(0, 1));
+    }
+
+    @Test
+    public void setParents_detectsCycles() throws Exception {
+        assertTrue(hierarchy.wouldCreateCycle(1, Arrays.asList(4L)));
+        assertTrue(hierarchy.wouldCreateCycle(1, Arrays.asList(1L)));
+        assertFalse(hierarchy.wouldCreateCycle(4, Arrays.asList(0L)));
+        try {
+            hierarchy.setParents(0, Arrays.asList(3L));
+        } catch (IllegalArgumentException x) {
+            assertEquals("parent cycle", x.getMessage());
+            assertFalse(hierarchy.isAncestorOf(3, 0));
+            return;
+        }
+        fail("did not throw an error");
+    }
+
+    @Test
+    public void remove_works() throws Exception {
+        hierarchy.setParents(4, Arrays.asList(3L));
+        hierarchy.remove(2);
+        assertFalse(hierarchy.contains(2));
+        assertFalse(hierarchy.isAncestorOf(2, 4));
+        assertTrue(hierarchy.isAncestorOf(0, 4));
+    }
+}
@@ -0,0 +1,56 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongIntMapUnitTest {
+    @Test
+    public void putGetRemove_works() throws Exception {
+        LongIntMap map = new LongIntMap();
+        assertEquals(LongIntMap.MISSING, map.get(7));
+        map.put(7, 1);
+        map.put(-7, 2);
+        map.put(Long.MIN_VALUE, 3);
+        assertEquals(3, map.size());
+        assertEquals(1, map.get(7));
+        assertEquals(2, map.get(-7));
+        assertEquals(3, map.get(Long.MIN_VALUE));
+        map.put(7, 4);
+        assertEquals(4, map.get(7));
+        assertEquals(3, map.size());
+        assertEquals(4, map.remove(7));
+        assertEquals(LongIntMap.MISSING, map.remove(7));
+        assertFalse(map.containsKey(7));
+        assertEquals(2, map.size());
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(-7));
+    }
+
+    @Test
+    public void matchesHashMap() throws Exception {
+        LongIntMap map = new LongIntMap();
+        HashMap<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; ++i) {
+            // Draw keys from a small range so that removes often hit.
+            final long key = random.nextInt(2000) * 0x100000000L;
+            if (random.nextInt(3) == 0) {
+                Integer value = expected.remove(key);
+                assertEquals(value == null ? LongIntMap.MISSING : value, map.remove(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OptimalAssignmentUnitTest {
+    @Test
+    public void finishOptimal_fillsSlotGreedyLeavesEmpty() throws Exception {
+        // Slot 0 accepts any skill, and slot 1 accepts only skill 10, which has the largest key.
+        SinglePassSessionSampler greedy = new SinglePassSessionSampler(new int[]{0, 1}, 2);
+        SinglePassSessionSampler optimal = new SinglePassSessionSampler(new int[]{0, 1}, 2);
+        for (SinglePassSessionSampler sampler : new SinglePassSessionSampler[]{greedy, optimal}) {
+            sampler.offer(0, 10, -0.1);
+            sampler.offer(1, 10, -0.1);
+            sampler.offer(0, 11, -5.0);
+        }
+        long[] session = greedy.finish();
+        assertEquals(10, session[0]);
+        assertEquals(-1, session[1]);
+        session = optimal.finishOptimal();
+        assertEquals(11, session[0]);
+        assertEquals(10, session[1]);
+    }
+
+    @Test
+    public void assign_maximizesTotalKey() throws Exception {
+        // Slot 0 can take 10 or 11 and slot 1 can take 11 or 12.  Both {10, 11} and {11, 12} fill
+        // both slots, but 10 has a larger key than 12.
+        long[][] skillIds = {{10, 11}, {11, 12}};
+        double[][] keys = {{-1.0, -2.0}, {-2.0, -3.0}};
+        long[] session = OptimalAssignment.assign(new int[]{0, 1}, skillIds, keys, new int[]{2, 2});
+        assertEquals(10, session[0]);
+        assertEquals(11, session[1]);
+    }
+
+    @Test
+    public void assign_ordersSlotsOfPoolByKey() throws Exception {
+        long[][] skillIds = {{10, 11, 12}};
+        double[][] keys = {{-3.0, -1.0, -2.0}};
+        long[] session = OptimalAssignment.assign(new int[]{0, 0}, skillIds, keys, new int[]{3});
+        assertEquals(11, session[0]);
+        assertEquals(12, session[1]);
+    }
+
+    @Test
+    public void assign_leavesSlotEmptyWhenNoCandidateRemains() throws Exception {
+        long[][] skillIds = {{10}, {10}};
+        double[][] keys = {{-1.0}, {-1.0}};
+        long[] session = OptimalAssignment.assign(new int[]{0, 1, 1}, skillIds, keys, new int[]{1, 1});
+        int numFilled = 0;
+        for (long skillId : session) {
+            if (skillId != -1) ++numFilled;
+        }
+        assertEquals(1, numFilled);
+    }
+
+    @Test
+    public void assign_fillsEverySlotOfLargeSchedule() throws Exception {
+        // 1000 slots in 100 groups, and 100,000 skills each in one or two groups.  Every group has
+        // far more skills than slots, so every slot can be filled.
+        final int numSlots = 1000;
+        final int numPools = 100;
+        final int numSkills = 100000;
+        Random random = new Random(1);
+        int[] slotPools = new int[numSlots];
+        for (int slotIndex = 0; slotIndex < numSlots; ++slotIndex) slotPools[slotIndex] = slotIndex % numPools;
+        long start = System.nanoTime();
+        SinglePassSessionSampler sampler = new SinglePassSessionSampler(slotPools, numPools);
+        for (int id = 0; id < numSkills; ++id) {
+            final double key = SinglePassSessionSampler.key(1.0 + random.nextInt(10), random);
+            final int pool = random.nextInt(numPools);
+            sampler.offer(pool, id, key);
+            if (random.nextBoolean()) {
+                sampler.offer((pool + 1 + random.nextInt(numPools - 1)) % numPools, id, key);
+            }
+        }
+        long[] session = sampler.finishOptimal();
+        // A loose bound, so that only a gross regression, e.g., to a quadratic search, fails.
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+        HashSet<Long> used = new HashSet<>();
+        for (long skillId : session) {
+            assertNotEquals(-1, skillId);
+            assertTrue(used.add(skillId));
+        }
+    }
+}
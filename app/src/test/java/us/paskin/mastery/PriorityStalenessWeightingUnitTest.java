@@ -0,0 +1,39 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PriorityStalenessWeightingUnitTest {
+    @Test
+    public void computeWeights_blendsPriorityAndStaleness() throws Exception {
+        byte[] priorities = {(byte) Model.MAX_PRIORITY, (byte) (Model.MAX_PRIORITY / 2), 1};
+        int[] estHoursPracticed = {0, PriorityStalenessWeighting.HALF_POINT_HOURS, 1000};
+        double[] weights = new double[3];
+        new PriorityStalenessWeighting(0.5f).computeWeights(priorities, estHoursPracticed, 3, weights);
+        assertEquals(1.0, weights[0], 1e-9);
+        assertEquals(0.5, weights[1], 1e-9);
+        assertTrue(weights[2] < 0.1);
+    }
+
+    @Test
+    public void computeWeights_onlyWritesCount() throws Exception {
+        double[] weights = {-1.0, -1.0};
+        new PriorityStalenessWeighting(1.0f).computeWeights(new byte[]{1, 1}, new int[]{0, 0}, 1, weights);
+        assertEquals(1.0, weights[0], 1e-9);
+        assertEquals(-1.0, weights[1], 0.0);
+    }
+
+    @Test
+    public void equals_comparesStalenessWeight() throws Exception {
+        assertEquals(new PriorityStalenessWeighting(0.25f), new PriorityStalenessWeighting(0.25f));
+        assertEquals(new PriorityStalenessWeighting(0.25f).hashCode(),
+                new PriorityStalenessWeighting(0.25f).hashCode());
+        assertNotEquals(new PriorityStalenessWeighting(0.25f), new PriorityStalenessWeighting(0.5f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsInvalidWeight() throws Exception {
+        new PriorityStalenessWeighting(1.5f);
+    }
+}
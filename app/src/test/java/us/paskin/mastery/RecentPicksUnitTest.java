@@ -0,0 +1,63 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RecentPicksUnitTest {
+    @Test
+    public void add_forgetsOldestSession() throws Exception {
+        RecentPicks picks = new RecentPicks(2);
+        picks.add(new long[]{1, 2});
+        picks.add(new long[]{2, 3, -1});
+        assertTrue(picks.contains(1));
+        picks.add(new long[]{4});
+        assertFalse(picks.contains(1));
+        // Skill 2 is still in the second session.
+        assertTrue(picks.contains(2));
+        assertTrue(picks.contains(4));
+        assertFalse(picks.contains(-1));
+        assertArrayEquals(new long[]{2, 3, 4}, picks.getSkillIds());
+    }
+
+    @Test
+    public void add_doesNothingWithoutCapacity() throws Exception {
+        RecentPicks picks = new RecentPicks(0);
+        picks.add(new long[]{1});
+        assertFalse(picks.contains(1));
+        assertEquals(0, picks.getSkillIds().length);
+    }
+
+    @Test
+    public void setCapacity_keepsNewestSessions() throws Exception {
+        RecentPicks picks = new RecentPicks(3);
+        picks.add(new long[]{1});
+        picks.add(new long[]{2});
+        picks.add(new long[]{3});
+        picks.add(new long[]{4});
+        picks.setCapacity(2);
+        assertArrayEquals(new long[]{3, 4}, picks.getSkillIds());
+        picks.setCapacity(3);
+        picks.add(new long[]{5});
+        assertArrayEquals(new long[]{3, 4, 5}, picks.getSkillIds());
+    }
+
+    @Test
+    public void decode_restoresEncodedSessions() throws Exception {
+        RecentPicks picks = new RecentPicks(3);
+        picks.add(new long[]{1, 2});
+        picks.add(new long[]{-1});
+        picks.add(new long[]{3});
+        picks.add(new long[]{4, 5});
+        assertEquals(";3;4,5", picks.encode());
+        RecentPicks decoded = RecentPicks.decode(picks.encode(), 3);
+        assertEquals(picks.encode(), decoded.encode());
+        assertArrayEquals(new long[]{4, 5}, RecentPicks.decode(picks.encode(), 1).getSkillIds());
+        assertEquals("", RecentPicks.decode("", 3).encode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsMalformedString() throws Exception {
+        RecentPicks.decode("1,x", 3);
+    }
+}
@@ -0,0 +1,60 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SessionSamplerUnitTest {
+    @Test
+    public void sample_neverRepeatsSkills() throws Exception {
+        // Three slots share a pool of three skills, one of which dominates.
+        SessionSampler sampler = new SessionSampler(
+                new long[][]{{10, 11, 12}},
+                new double[][]{{1000.0, 1.0, 1.0}},
+                new int[]{0, 0, 0});
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; ++i) {
+            long[] session = sampler.sample(random);
+            assertEquals(33, session[0] + session[1] + session[2]);
+        }
+    }
+
+    @Test
+    public void sample_leavesSlotEmptyWhenPoolIsExhausted() throws Exception {
+        SessionSampler sampler = new SessionSampler(
+                new long[][]{{10}, {}},
+                new double[][]{{1.0}, {}},
+                new int[]{0, 0, 1});
+        long[] session = sampler.sample(new Random(1));
+        assertEquals(10, session[0]);
+        assertEquals(-1, session[1]);
+        assertEquals(-1, session[2]);
+    }
+
+    @Test
+    public void sampleSlot_excludesWholeSession() throws Exception {
+        // Redraw the middle slot, which must take the only skill not in the session.
+        SessionSampler sampler = new SessionSampler(
+                new long[][]{{10, 11, 12, 13}},
+                new double[][]{{1000.0, 1000.0, 1000.0, 1.0}},
+                new int[]{0, 0, 0});
+        long[] session = {10, 11, 12};
+        Random random = new Random(1);
+        for (int i = 0; i < 100; ++i) assertEquals(13, sampler.sampleSlot(1, session, session.length, random));
+        assertEquals(-1, sampler.sampleSlot(1, new long[]{10, 11, 12, 13}, 4, random));
+    }
+
+    @Test
+    public void sample_followsWeightsForFirstSlot() throws Exception {
+        SessionSampler sampler = new SessionSampler(
+                new long[][]{{0, 1}},
+                new double[][]{{1.0, 3.0}},
+                new int[]{0});
+        Random random = new Random(1);
+        int count = 0;
+        for (int i = 0; i < 10000; ++i) count += sampler.sample(random)[0];
+        assertEquals(0.75, count / 10000.0, 0.02);
+    }
+}
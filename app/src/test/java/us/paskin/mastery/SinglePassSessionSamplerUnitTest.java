@@ -0,0 +1,180 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SinglePassSessionSamplerUnitTest {
+    private static final double[] WEIGHTS = {1.0, 2.0, 3.0, 4.0};
+
+    /**
+     * Samples two slots sharing a pool of four skills, whose IDs are their indices in WEIGHTS.
+     */
+    private static long[] sampleTwo(Random random) {
+        SinglePassSessionSampler sampler = new SinglePassSessionSampler(new int[]{0, 0}, 1);
+        for (int i = 0; i < WEIGHTS.length; ++i) {
+            sampler.offer(0, i, SinglePassSessionSampler.key(WEIGHTS[i], random));
+        }
+        return sampler.finish();
+    }
+
+    @Test
+    public void finish_followsWeightsForFirstSlot() throws Exception {
+        Random random = new Random(1);
+        final int n = 40000;
+        int[] counts = new int[WEIGHTS.length];
+        for (int i = 0; i < n; ++i) ++counts[(int) sampleTwo(random)[0]];
+        for (int i = 0; i < WEIGHTS.length; ++i) {
+            assertEquals(WEIGHTS[i] / 10.0, counts[i] / (double) n, 0.01);
+        }
+    }
+
+    @Test
+    public void finish_samplesWithoutReplacement() throws Exception {
+        Random random = new Random(2);
+        final int n = 40000;
+        int[] counts = new int[WEIGHTS.length];
+        for (int i = 0; i < n; ++i) {
+            long[] session = sampleTwo(random);
+            assertNotEquals(session[0], session[1]);
+            ++counts[(int) session[0]];
+            ++counts[(int) session[1]];
+        }
+        // A skill is included if it is drawn first, or if another is drawn first and it is drawn
+        // from those that remain.
+        for (int i = 0; i < WEIGHTS.length; ++i) {
+            double expected = WEIGHTS[i] / 10.0;
+            for (int j = 0; j < WEIGHTS.length; ++j) {
+                if (j != i) expected += WEIGHTS[j] / 10.0 * WEIGHTS[i] / (10.0 - WEIGHTS[j]);
+            }
+            assertEquals(expected, counts[i] / (double) n, 0.01);
+        }
+    }
+
+    @Test
+    public void merge_matchesSinglePass() throws Exception {
+        // Scan the skills in two chunks, as a parallel scan would.
+        Random random = new Random(3);
+        final int n = 40000;
+        int[] counts = new int[WEIGHTS.length];
+        for (int i = 0; i < n; ++i) {
+            SinglePassSessionSampler first = new SinglePassSessionSampler(new int[]{0, 0}, 1);
+            SinglePassSessionSampler second = new SinglePassSessionSampler(new int[]{0, 0}, 1);
+            for (int j = 0; j < WEIGHTS.length; ++j) {
+                SinglePassSessionSampler sampler = j < 2 ? first : second;
+                sampler.offer(0, j, SinglePassSessionSampler.key(WEIGHTS[j], random));
+            }
+            first.merge(second);
+            long[] session = first.finish();
+            assertNotEquals(session[0], session[1]);
+            ++counts[(int) session[0]];
+        }
+        for (int i = 0; i < WEIGHTS.length; ++i) {
+            assertEquals(WEIGHTS[i] / 10.0, counts[i] / (double) n, 0.01);
+        }
+    }
+
+    @Test
+    public void finish_fillsLaterSlotsFromTheirOwnPools() throws Exception {
+        // The only skill for slot 0 is also the best for slot 1, which must take the other.
+        SinglePassSessionSampler sampler = new SinglePassSessionSampler(new int[]{0, 1}, 2);
+        sampler.offer(0, 10, -0.1);
+        sampler.offer(1, 10, -0.1);
+        sampler.offer(1, 11, -5.0);
+        long[] session = sampler.finish();
+        assertEquals(10, session[0]);
+        assertEquals(11, session[1]);
+    }
+
+    @Test
+    public void finish_leavesSlotEmptyWhenPoolIsExhausted() throws Exception {
+        SinglePassSessionSampler sampler = new SinglePassSessionSampler(new int[]{0, 0, 1}, 2);
+        sampler.offer(0, 10, SinglePassSessionSampler.key(1.0, new Random(1)));
+        long[] session = sampler.finish();
+        assertEquals(10, session[0]);
+        assertEquals(-1, session[1]);
+        assertEquals(-1, session[2]);
+    }
+
+    @Test
+    public void finish_usesSlotPoolsDrawnAfterThePass() throws Exception {
+        // Pool 1 is offered nothing, so both slots are drawn from pool 0 instead.
+        SinglePassSessionSampler sampler = new SinglePassSessionSampler(new int[]{0, 1}, 2);
+        sampler.offer(0, 10, -0.1);
+        sampler.offer(0, 11, -5.0);
+        assertFalse(sampler.isEmpty(0));
+        assertTrue(sampler.isEmpty(1));
+        long[] session = sampler.finish(new int[]{0, 0});
+        assertEquals(10, session[0]);
+        assertEquals(11, session[1]);
+    }
+
+    @Test
+    public void offer_keepsLargestKeys() throws Exception {
+        SinglePassSessionSampler sampler = new SinglePassSessionSampler(new int[]{0, 0}, 1);
+        double[] keys = {-3.0, -0.5, -7.0, -0.1, -2.0, Double.NEGATIVE_INFINITY};
+        for (int i = 0; i < keys.length; ++i) sampler.offer(0, i, keys[i]);
+        long[] session = sampler.finish();
+        assertEquals(3, session[0]);
+        assertEquals(1, session[1]);
+    }
+
+    @Test
+    public void finishPlan_avoidsRepeatsWhileOthersRemain() throws Exception {
+        SinglePassSessionSampler sampler = new SinglePassSessionSampler(new int[]{0, 0}, 1, 6);
+        for (int i = 0; i < 6; ++i) sampler.offer(0, i, -0.1 * (i + 1));
+        long[][] plan = sampler.finishPlan(3);
+        assertArrayEquals(new long[]{0, 1}, plan[0]);
+        assertArrayEquals(new long[]{2, 3}, plan[1]);
+        assertArrayEquals(new long[]{4, 5}, plan[2]);
+    }
+
+    @Test
+    public void finishPlan_spreadsRepeatsWhenPoolRunsShort() throws Exception {
+        SinglePassSessionSampler sampler = new SinglePassSessionSampler(new int[]{0, 0}, 1, 6);
+        sampler.offer(0, 10, -1.0);
+        sampler.offer(0, 11, -2.0);
+        sampler.offer(0, 12, -3.0);
+        long[][] plan = sampler.finishPlan(3);
+        assertArrayEquals(new long[]{10, 11}, plan[0]);
+        assertArrayEquals(new long[]{12, 10}, plan[1]);
+        assertArrayEquals(new long[]{11, 12}, plan[2]);
+    }
+
+    @Test
+    public void finishPlan_fillsEveryDayFromOnePass() throws Exception {
+        // A week of sessions of 40 slots in 20 groups, from 100,000 skills each in one group.
+        final int numDays = 7;
+        final int numSlots = 40;
+        final int numPools = 20;
+        final int numSkills = 100000;
+        int[] slotPools = new int[numSlots];
+        for (int slotIndex = 0; slotIndex < numSlots; ++slotIndex) slotPools[slotIndex] = slotIndex % numPools;
+        Random random = new Random(4);
+        SinglePassSessionSampler sampler =
+                new SinglePassSessionSampler(slotPools, numPools, numDays * numSlots);
+        int numOffers = 0;
+        for (int id = 0; id < numSkills; ++id) {
+            final double key = SinglePassSessionSampler.key(1.0 + random.nextInt(10), random);
+            sampler.offer(random.nextInt(numPools), id, key);
+            ++numOffers;
+        }
+        long[][] plan = sampler.finishPlan(numDays);
+        // Sampling each day separately would offer every skill once per day.
+        assertEquals(numSkills, numOffers);
+        assertEquals(numDays, plan.length);
+
+        // Every group has far more skills than slots, so no skill is repeated.
+        HashSet<Long> used = new HashSet<>();
+        for (long[] session : plan) {
+            assertEquals(numSlots, session.length);
+            for (long skillId : session) {
+                assertNotEquals(-1, skillId);
+                assertTrue(used.add(skillId));
+            }
+        }
+    }
+}
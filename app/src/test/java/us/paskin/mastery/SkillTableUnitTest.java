@@ -0,0 +1,76 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class SkillTableUnitTest {
+    @Test
+    public void setRow_storesColumns() throws Exception {
+        SkillTable table = new SkillTable(2, 3);
+        table.setRow(0, 10, 7, 12, new int[]{0, 2}, 2);
+        table.setRow(1, 11, 1, 0, new int[0], 0);
+        assertEquals(2, table.size());
+        assertEquals(10, table.getId(0));
+        assertEquals(7, table.getPriority(0));
+        assertEquals(12, table.getEstHoursPracticed(0));
+        assertEquals(11, table.getId(1));
+        assertEquals(1, table.getPriority(1));
+    }
+
+    @Test
+    public void isInAnyGroup_testsMembership() throws Exception {
+        // Use enough groups to need several words per row.
+        SkillTable table = new SkillTable(2, 200);
+        table.setRow(0, 10, 1, 0, new int[]{3, 130, -1}, 3);
+        table.setRow(1, 11, 1, 0, new int[]{64}, 1);
+        BitSet bits = new BitSet();
+        bits.set(130);
+        long[] mask = SkillTable.toGroupMask(bits);
+        assertTrue(table.isInAnyGroup(0, mask));
+        assertFalse(table.isInAnyGroup(1, mask));
+        bits.clear();
+        bits.set(64);
+        bits.set(65);
+        mask = SkillTable.toGroupMask(bits);
+        assertFalse(table.isInAnyGroup(0, mask));
+        assertTrue(table.isInAnyGroup(1, mask));
+        assertFalse(table.isInAnyGroup(0, SkillTable.toGroupMask(new BitSet())));
+    }
+
+    @Test
+    public void isInAnyGroup_ignoresGroupsBeyondTable() throws Exception {
+        SkillTable table = new SkillTable(1, 10);
+        table.setRow(0, 10, 1, 0, new int[]{5}, 1);
+        BitSet bits = new BitSet();
+        bits.set(5);
+        bits.set(100);
+        assertTrue(table.isInAnyGroup(0, SkillTable.toGroupMask(bits)));
+        bits.clear(5);
+        assertFalse(table.isInAnyGroup(0, SkillTable.toGroupMask(bits)));
+    }
+
+    @Test
+    public void copyRow_copiesBetweenWidths() throws Exception {
+        SkillTable narrow = new SkillTable(1, 64);
+        narrow.setRow(0, 10, 3, 4, new int[]{63}, 1);
+        SkillTable wide = new SkillTable(2, 128);
+        wide.setRow(0, 11, 1, 0, new int[]{100}, 1);
+        wide.copyRow(1, narrow, 0);
+        assertEquals(10, wide.getId(1));
+        assertEquals(3, wide.getPriority(1));
+        assertEquals(4, wide.getEstHoursPracticed(1));
+        BitSet bits = new BitSet();
+        bits.set(63);
+        assertTrue(wide.isInAnyGroup(1, SkillTable.toGroupMask(bits)));
+        assertFalse(wide.isInAnyGroup(0, SkillTable.toGroupMask(bits)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setRow_rejectsIndexBeyondCapacity() throws Exception {
+        SkillTable table = new SkillTable(1, 64);
+        table.setRow(0, 10, 1, 0, new int[]{64}, 1);
+    }
+}
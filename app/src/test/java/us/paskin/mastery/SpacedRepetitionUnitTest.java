@@ -0,0 +1,55 @@
+package us.paskin.mastery;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SpacedRepetitionUnitTest {
+    private static final long DAY = TimeUnit.DAYS.toSeconds(1);
+    private static final long START = 1000 * DAY;
+
+    @Test
+    public void applyReview_growsIntervalOnTime() throws Exception {
+        Proto.Skill.Builder skillBuilder = Proto.Skill.newBuilder().setName("S");
+        SpacedRepetition.applyReview(skillBuilder, START);
+        assertEquals(DAY, skillBuilder.getIntervalSecs());
+        assertEquals(START + DAY, skillBuilder.getNextDue());
+        SpacedRepetition.applyReview(skillBuilder, START + DAY);
+        assertEquals(6 * DAY, skillBuilder.getIntervalSecs());
+        SpacedRepetition.applyReview(skillBuilder, START + 7 * DAY);
+        assertEquals(15 * DAY, skillBuilder.getIntervalSecs());
+        assertEquals(START + 22 * DAY, skillBuilder.getNextDue());
+        assertEquals(SpacedRepetition.DEFAULT_EASE_PERMILLE, skillBuilder.getEasePermille());
+    }
+
+    @Test
+    public void applyReview_ignoresEarlyPractice() throws Exception {
+        Proto.Skill.Builder skillBuilder = Proto.Skill.newBuilder().setName("S");
+        SpacedRepetition.applyReview(skillBuilder, START);
+        SpacedRepetition.applyReview(skillBuilder, START + DAY / 2);
+        assertEquals(DAY, skillBuilder.getIntervalSecs());
+        assertEquals(START + DAY, skillBuilder.getNextDue());
+    }
+
+    @Test
+    public void applyReview_startsOverAfterLapse() throws Exception {
+        Proto.Skill.Builder skillBuilder = Proto.Skill.newBuilder().setName("S")
+                .setIntervalSecs(6 * DAY).setNextDue(START).setEasePermille(1400);
+        // More than a whole interval overdue.
+        SpacedRepetition.applyReview(skillBuilder, START + 7 * DAY);
+        assertEquals(DAY, skillBuilder.getIntervalSecs());
+        assertEquals(START + 8 * DAY, skillBuilder.getNextDue());
+        assertEquals(SpacedRepetition.MIN_EASE_PERMILLE, skillBuilder.getEasePermille());
+    }
+
+    @Test
+    public void getRank_ordersByDueDateThenPriority() throws Exception {
+        assertTrue(SpacedRepetition.getRank(START, Model.MIN_PRIORITY)
+                < SpacedRepetition.getRank(START + 1, Model.MAX_PRIORITY));
+        assertTrue(SpacedRepetition.getRank(START, Model.MAX_PRIORITY)
+                < SpacedRepetition.getRank(START, Model.MIN_PRIORITY));
+        assertEquals(0, SpacedRepetition.getDueDate(Proto.Skill.getDefaultInstance()));
+    }
+}